@@ -1,17 +1,41 @@
 package com.openclassrooms.tourguide;
 
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import com.openclassrooms.tourguide.cache.ETags;
+import com.openclassrooms.tourguide.cache.ResponseCache;
+import com.openclassrooms.tourguide.config.TourGuideProperties;
+import com.openclassrooms.tourguide.dto.AttractionVisitsDTO;
+import com.openclassrooms.tourguide.dto.LeaderboardEntryDTO;
 import com.openclassrooms.tourguide.dto.NearByAttractionDTO;
+import com.openclassrooms.tourguide.dto.VisitorDTO;
+import com.openclassrooms.tourguide.json.JsonProjection;
+import com.openclassrooms.tourguide.json.TourGuideJsonWriter;
+import com.openclassrooms.tourguide.nearby.NearbyQuery;
+import com.openclassrooms.tourguide.stream.SseUpdateSink;
+import com.openclassrooms.tourguide.stream.UserUpdateBroadcaster;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
-import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.UserState;
 import tripPricer.Provider;
 
 @RestController
@@ -19,6 +43,18 @@ public class TourGuideController {
 
 	@Autowired
 	TourGuideService tourGuideService;
+
+	@Autowired
+	ResponseCache responseCache;
+
+	@Autowired
+	TourGuideJsonWriter jsonWriter;
+
+	@Autowired
+	UserUpdateBroadcaster updateBroadcaster;
+
+	@Autowired
+	TourGuideProperties properties;
 	
     @RequestMapping("/")
     public String index() {
@@ -26,20 +62,120 @@ public class TourGuideController {
     }
     
     @RequestMapping("/getLocation") 
-    public VisitedLocation getLocation(@RequestParam String userName) {
-    	return tourGuideService.getUserLocation(getUser(userName));
+    public ResponseEntity<byte[]> getLocation(@RequestParam String userName,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    	User user = getUser(userName);
+    	UserState state = getLocatedState(user);
+    	return cachedResponse(user, "location", state, ifNoneMatch,
+    			() -> jsonWriter.visitedLocationToBytes(lastVisitedLocation(state)));
     }
 
+    /**
+     * Optional radius (miles), count and category (repeatable) parameters select the attractions, by default the
+     * 5 closest within the user's attraction proximity, or all of them within the radius when only a radius is given.
+     * Optional offset, limit and fields (comma separated) parameters select a page and the fields of the attractions,
+     * such a response is streamed instead of cached. Negative values answer 400.
+     */
     @RequestMapping("/getNearbyAttractions") 
-    public List<NearByAttractionDTO> getNearbyAttractions(@RequestParam String userName) {
+    public ResponseEntity<StreamingResponseBody> getNearbyAttractions(@RequestParam String userName,
+            @RequestParam(required = false) Double radius,
+            @RequestParam(required = false) Integer count,
+            @RequestParam(required = false) List<String> category,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         User user = getUser(userName);
-    	VisitedLocation visitedLocation = tourGuideService.getUserLocation(user);
-    	return tourGuideService.getNearByAttractions(user,visitedLocation);
+        UserState state = getLocatedState(user);
+        NearbyQuery query = badRequestIfInvalid(() -> NearbyQuery.of(state.getUserPreferences(), radius, count,
+        		category, TourGuideService.NEARBY_ATTRACTION_COUNT));
+        JsonProjection projection = badRequestIfInvalid(() -> JsonProjection.of(offset, limit, fields));
+        Supplier<List<NearByAttractionDTO>> attractions =
+        		() -> tourGuideService.getNearByAttractions(user, lastVisitedLocation(state), query);
+        // Each query has its own cache entries and ETags
+        String endpoint = radius == null && count == null && category == null
+        		? "nearbyAttractions"
+        		: "nearbyAttractions-" + ETags.digest(query.toString());
+    	return projectedResponse(user, endpoint, state, ifNoneMatch, projection,
+    			() -> jsonWriter.nearByAttractionsToBytes(attractions.get()),
+    			out -> jsonWriter.writeNearByAttractions(out, attractions.get(), projection));
     }
     
+    /**
+     * Optional offset, limit and fields (comma separated) parameters select a page and the fields of the rewards,
+     * such a response is streamed instead of cached. Negative values answer 400.
+     */
     @RequestMapping("/getRewards") 
-    public List<UserReward> getRewards(@RequestParam String userName) {
-    	return tourGuideService.getUserRewards(getUser(userName));
+    public ResponseEntity<StreamingResponseBody> getRewards(@RequestParam String userName,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    	User user = getUser(userName);
+    	UserState state = user.getState();
+    	JsonProjection projection = badRequestIfInvalid(() -> JsonProjection.of(offset, limit, fields));
+    	return projectedResponse(user, "rewards", state, ifNoneMatch, projection,
+    			() -> jsonWriter.userRewardsToBytes(state.getUserRewards()),
+    			out -> jsonWriter.writeUserRewards(out, state.getUserRewards(), projection));
+    }
+
+    /**
+     * Streams the user's new locations and rewards as server-sent events named location and reward,
+     * instead of polling /getLocation and /getRewards. A client too slow to keep up loses the oldest updates.
+     */
+    @RequestMapping(value = "/streamUpdates", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUpdates(@RequestParam String userName) {
+    	User user = getUser(userName);
+    	SseEmitter emitter = new SseEmitter(properties.getUpdates().getTimeout().toMillis());
+    	UserUpdateBroadcaster.Subscription subscription =
+    			updateBroadcaster.subscribe(user.getUserId(), new SseUpdateSink(emitter, jsonWriter));
+    	emitter.onCompletion(subscription::close);
+    	emitter.onTimeout(subscription::close);
+    	emitter.onError(e -> subscription.close());
+    	return emitter;
+    }
+
+    /**
+     * Locations of the user between from and to (ISO-8601 instants), by default over the last day, oldest first.
+     */
+    @RequestMapping("/getTrajectory")
+    public List<VisitedLocation> getTrajectory(@RequestParam String userName,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to) {
+    	Instant end = to != null ? to : Instant.now();
+    	Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+    	return tourGuideService.getTrajectory(getUser(userName), start, end);
+    }
+
+    /**
+     * Users who were near an attraction between from and to (ISO-8601 instants), by default over the last day:
+     * within radius miles, by default the reward proximity buffer, closest visit first.
+     */
+    @RequestMapping("/getVisitors")
+    public List<VisitorDTO> getVisitors(@RequestParam String attractionName,
+            @RequestParam(required = false) Double radius,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(defaultValue = "100") int limit) {
+    	Instant end = to != null ? to : Instant.now();
+    	Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+    	double radiusMiles = radius != null ? radius : properties.getRewards().getProximityBuffer();
+    	return tourGuideService.getVisitors(getAttraction(attractionName), radiusMiles, start, end, limit);
+    }
+
+    @RequestMapping("/getLeaderboard")
+    public List<LeaderboardEntryDTO> getLeaderboard(@RequestParam(defaultValue = "10") int limit) {
+    	return tourGuideService.getTopUsers(limit);
+    }
+
+    @RequestMapping("/getUserRewardPoints")
+    public long getUserRewardPoints(@RequestParam String userName) {
+    	return tourGuideService.getUserRewardPoints(getUser(userName));
+    }
+
+    @RequestMapping("/getMostVisitedAttractions")
+    public List<AttractionVisitsDTO> getMostVisitedAttractions(@RequestParam(defaultValue = "5") int limit) {
+    	return tourGuideService.getMostVisitedAttractions(limit);
     }
        
     @RequestMapping("/getTripDeals")
@@ -50,4 +186,72 @@ public class TourGuideController {
     private User getUser(String userName) {
     	return tourGuideService.getUser(userName);
     }
+
+    // An unknown attraction, e.g. a typo in the name, answers 404 instead of 500
+    private Attraction getAttraction(String attractionName) {
+    	try {
+    		return tourGuideService.getAttraction(attractionName);
+    	} catch (IllegalArgumentException e) {
+    		throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+    	}
+    }
+
+    /**
+     * Answers 304 when the client already has the response for the current version of the user's state,
+     * otherwise returns the cached serialized response for that version, computing it if needed.
+     * The payload is built from the given snapshot, so the body always matches the ETag version.
+     */
+    private ResponseEntity<byte[]> cachedResponse(User user, String endpoint, UserState state, String ifNoneMatch,
+            Supplier<byte[]> payload) {
+    	String etag = ETags.of(user.getUserId(), endpoint, state.getVersion());
+    	if (ETags.matches(ifNoneMatch, etag)) {
+    		return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    	}
+    	byte[] body = responseCache.get(user.getUserId(), endpoint, state.getVersion(), payload);
+    	return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Like cachedResponse for a full response, whose cached body is then written as is. A page or a field selection
+     * is written straight to the response output stream instead, with its own ETag.
+     */
+    private ResponseEntity<StreamingResponseBody> projectedResponse(User user, String endpoint, UserState state,
+            String ifNoneMatch, JsonProjection projection, Supplier<byte[]> payload,
+            Consumer<OutputStream> streamedPayload) {
+    	if (projection.isAll()) {
+    		ResponseEntity<byte[]> cached = cachedResponse(user, endpoint, state, ifNoneMatch, payload);
+    		byte[] body = cached.getBody();
+    		return new ResponseEntity<>(body == null ? null : out -> out.write(body), cached.getHeaders(),
+    				cached.getStatusCode());
+    	}
+    	String etag = ETags.of(user.getUserId(), endpoint + "-" + ETags.digest(projection.toString()),
+    			state.getVersion());
+    	if (ETags.matches(ifNoneMatch, etag)) {
+    		return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    	}
+    	return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON)
+    			.body(streamedPayload::accept);
+    }
+
+    // Invalid request parameters, e.g. a negative offset, answer 400 instead of 500
+    private static <T> T badRequestIfInvalid(Supplier<T> parameters) {
+    	try {
+    		return parameters.get();
+    	} catch (IllegalArgumentException e) {
+    		throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    	}
+    }
+
+    // Snapshot of a user having at least one location, tracking the user first if needed
+    private UserState getLocatedState(User user) {
+    	if (user.getVisitedLocations().isEmpty()) {
+    		tourGuideService.getUserLocation(user);
+    	}
+    	return user.getState();
+    }
+
+    private VisitedLocation lastVisitedLocation(UserState state) {
+    	List<VisitedLocation> visitedLocations = state.getVisitedLocations();
+    	return visitedLocations.get(visitedLocations.size() - 1);
+    }
 }
\ No newline at end of file
@@ -1,14 +1,35 @@
 package com.openclassrooms.tourguide;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cache.ResponseCache;
+import com.openclassrooms.tourguide.config.TourGuideProperties;
+import com.openclassrooms.tourguide.history.LocationHistoryStore;
+import com.openclassrooms.tourguide.json.TourGuideJsonWriter;
+import com.openclassrooms.tourguide.lifecycle.ExecutorRegistry;
+import com.openclassrooms.tourguide.recalculation.RewardRecalculationJob;
+import com.openclassrooms.tourguide.stream.UserUpdateBroadcaster;
+import tripPricer.TripPricer;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
 
 @Configuration
+@EnableConfigurationProperties(TourGuideProperties.class)
 public class TourGuideModule {
+
+	private final Logger logger = LoggerFactory.getLogger(TourGuideModule.class);
 	
 	@Bean
 	public GpsUtil getGpsUtil() {
@@ -16,13 +37,69 @@ public class TourGuideModule {
 	}
 	
 	@Bean
-	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+	public RewardsService getRewardsService(ExecutorRegistry executorRegistry, TourGuideProperties properties) {
+		return new RewardsService(getGpsUtil(), getRewardCentral(), executorRegistry, properties);
+	}
+
+	@Bean
+	public ExecutorRegistry getExecutorRegistry(TourGuideProperties properties) {
+		return new ExecutorRegistry(properties.getShutdown().getDrainTimeout());
 	}
 	
 	@Bean
 	public RewardCentral getRewardCentral() {
 		return new RewardCentral();
 	}
+
+	@Bean
+	public TripPricer getTripPricer() {
+		return new TripPricer();
+	}
+
+	@Bean
+	public ResponseCache getResponseCache(TourGuideProperties properties) {
+		return new ResponseCache(properties.getCache().getResponseMaxEntries());
+	}
+
+	@Bean(destroyMethod = "close")
+	public LocationHistoryStore getLocationHistoryStore(ExecutorRegistry executorRegistry,
+			TourGuideProperties properties) throws IOException {
+		String directory = properties.getHistory().getDirectory();
+		if (directory.isBlank()) {
+			return LocationHistoryStore.inMemory();
+		}
+		LocationHistoryStore store = LocationHistoryStore.mapped(Path.of(directory));
+		// Only flushed data survives a crash: we flush periodically, close flushes the rest on shutdown
+		long interval = properties.getHistory().getFlushInterval().toMillis();
+		executorRegistry.getScheduledExecutor("history-flush", 1).scheduleWithFixedDelay(() -> {
+			try {
+				store.flush();
+			} catch (IOException | RuntimeException e) {
+				logger.error("Location history flush failed", e);
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+		return store;
+	}
+
+	@Bean
+	public RewardRecalculationJob getRewardRecalculationJob(TourGuideService tourGuideService,
+			RewardsService rewardsService, ExecutorRegistry executorRegistry, TourGuideProperties properties) {
+		return new RewardRecalculationJob(tourGuideService, rewardsService, executorRegistry, properties);
+	}
+
+	@Bean(destroyMethod = "close")
+	public UserUpdateBroadcaster getUserUpdateBroadcaster(TourGuideService tourGuideService,
+			ExecutorRegistry executorRegistry, TourGuideProperties properties) {
+		UserUpdateBroadcaster broadcaster = new UserUpdateBroadcaster(
+				executorRegistry.getExecutor("updates", properties.getPools().getUpdates()),
+				properties.getUpdates().getBufferSize());
+		tourGuideService.getUserEventBus().subscribe(broadcaster);
+		return broadcaster;
+	}
+
+	@Bean
+	public TourGuideJsonWriter getTourGuideJsonWriter(ObjectMapper objectMapper) {
+		return new TourGuideJsonWriter(objectMapper.getFactory());
+	}
 	
 }
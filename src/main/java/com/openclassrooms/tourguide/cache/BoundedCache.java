@@ -0,0 +1,152 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Concurrent cache with a maximum number of entries, resizable at runtime.
+ * About an eighth of the entries is dropped when full: values are cheap to recompute, and this keeps lookups
+ * as fast as a plain ConcurrentHashMap.
+ */
+public class BoundedCache<K, V> {
+
+	private final Map<K, V> entries = new ConcurrentHashMap<>();
+	// Loads in progress of the slow loaders
+	private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+	private volatile int maxEntries;
+
+	public BoundedCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return The cached value, or the one computed by the loader, which runs at most once per key at a time
+	 */
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+		V value = entries.get(key);
+		if (value != null) {
+			return value;
+		}
+		if (entries.size() >= maxEntries) {
+			evict();
+		}
+		return entries.computeIfAbsent(key, loader);
+	}
+
+	/**
+	 * Like computeIfAbsent, for slow loaders such as remote calls. computeIfAbsent runs its loader under the lock
+	 * of a bin of the map, so that loads of other keys of the bin, and the resizes of the map, wait for it.
+	 * This loader runs outside of any lock, and concurrent loads of the same key still share a single call.
+	 * @return The cached value, or the one loaded
+	 */
+	public V load(K key, Function<? super K, ? extends V> loader) {
+		V value = entries.get(key);
+		if (value != null) {
+			return value;
+		}
+		CompletableFuture<V> load = new CompletableFuture<>();
+		CompletableFuture<V> inProgress = loading.putIfAbsent(key, load);
+		if (inProgress != null) {
+			try {
+				return inProgress.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof Error error) {
+					throw error;
+				}
+				throw e.getCause() instanceof RuntimeException cause ? cause : e;
+			}
+		}
+		try {
+			// We check again: a load may have completed since the first lookup
+			value = entries.get(key);
+			if (value == null) {
+				value = loader.apply(key);
+				put(key, value);
+			}
+			load.complete(value);
+			return value;
+		} catch (Throwable e) {
+			// Errors too: a load never completed would block the threads waiting for it for good
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			// Removed once cached, so that a following lookup finds either the value or the load
+			loading.remove(key, load);
+		}
+	}
+
+	/**
+	 * @return The cached value, null if there is none
+	 */
+	public V get(K key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * Caches a value, replacing the one of the same key.
+	 */
+	public void put(K key, V value) {
+		if (!entries.containsKey(key) && entries.size() >= maxEntries) {
+			evict();
+		}
+		entries.put(key, value);
+	}
+
+	public boolean containsKey(K key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Resizes the cache, dropping entries right away if it shrinks.
+	 */
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+		while (entries.size() > maxEntries) {
+			evict();
+		}
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	// Drops about an eighth of the entries, a run of the iteration order from a random position. Always starting
+	// from the first position would drop the keys of the first bins of the map over and over, and keep the others
+	private void evict() {
+		int toEvict = Math.max(1, maxEntries / 8);
+		int size = entries.size();
+		if (size == 0) {
+			return;
+		}
+		Iterator<K> iterator = entries.keySet().iterator();
+		for (int skip = ThreadLocalRandom.current().nextInt(size); skip > 0 && iterator.hasNext(); skip--) {
+			iterator.next();
+		}
+		toEvict = remove(iterator, toEvict);
+		// The run wraps around to the first position
+		remove(entries.keySet().iterator(), toEvict);
+	}
+
+	// @return The number of entries left to remove, when the iterator ended first
+	private static int remove(Iterator<?> iterator, int count) {
+		while (count > 0 && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			count--;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,58 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Builds and matches the ETags of the per-user read endpoints.
+ * An ETag combines the user, the endpoint and the version of the user's state, plus an instance epoch
+ * so that versions restarting from zero after a restart never match an old ETag.
+ */
+public final class ETags {
+
+	private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+	private ETags() {
+	}
+
+	public static String of(UUID userId, String endpoint, long version) {
+		return "\"" + endpoint + "-" + userId + "-" + EPOCH + "-" + version + "\"";
+	}
+
+	/**
+	 * @return SHA-256 digest of a canonical request variant, e.g. a query, to tell its cache entries and ETags
+	 * from the other variants of an endpoint. Unlike a hash code, two variants never share a digest in practice.
+	 */
+	public static String digest(String variant) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(variant.getBytes(StandardCharsets.UTF_8));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param ifNoneMatch Value of the If-None-Match request header, may be null
+	 * @return true if the header matches the ETag, i.e. the client copy is up to date
+	 */
+	public static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			String trimmed = candidate.trim();
+			if (trimmed.startsWith("W/")) {
+				trimmed = trimmed.substring(2);
+			}
+			if (trimmed.equals("*") || trimmed.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,103 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Serialized responses of the read endpoints, keyed by user and endpoint.
+ * An entry is valid for a single version of the user's state: any new location or reward bumps the version,
+ * so a stale entry is simply recomputed on the next request. Bounded like a {@link BoundedCache}.
+ */
+public class ResponseCache {
+
+	private final BoundedCache<Key, Entry> entries;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public ResponseCache(int maxEntries) {
+		this.entries = new BoundedCache<>(maxEntries);
+	}
+
+	/**
+	 * @param userId User the response belongs to
+	 * @param endpoint Name of the endpoint
+	 * @param version Version of the user's state the response is computed from
+	 * @param loader Computes the serialized response on a miss
+	 * @return The cached response for this version, or the freshly computed one
+	 */
+	public byte[] get(UUID userId, String endpoint, long version, Supplier<byte[]> loader) {
+		Key key = new Key(userId, endpoint);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.version == version) {
+			hits.increment();
+			return entry.body;
+		}
+		misses.increment();
+		byte[] body = loader.get();
+		entries.put(key, new Entry(version, body));
+		return body;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		entries.setMaxEntries(maxEntries);
+	}
+
+	public int getMaxEntries() {
+		return entries.getMaxEntries();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	private static final class Key {
+		private final UUID userId;
+		private final String endpoint;
+
+		private Key(UUID userId, String endpoint) {
+			this.userId = userId;
+			this.endpoint = endpoint;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) o;
+			return userId.equals(key.userId) && endpoint.equals(key.endpoint);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(userId, endpoint);
+		}
+	}
+
+	private static final class Entry {
+		private final long version;
+		private final byte[] body;
+
+		private Entry(long version, byte[] body) {
+			this.version = version;
+			this.body = body;
+		}
+	}
+}
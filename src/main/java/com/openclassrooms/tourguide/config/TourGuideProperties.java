@@ -0,0 +1,474 @@
+package com.openclassrooms.tourguide.config;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.hibernate.validator.constraints.time.DurationMin;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+/**
+ * Settings of the application, bound from the tourguide.* properties. Services created outside of Spring use
+ * the defaults below. The settings marked live can be changed at runtime through the tuning actuator endpoint.
+ * The bound values are validated: an invalid setting, e.g. a pool of 0 threads, fails the startup.
+ */
+@Validated
+@ConfigurationProperties(prefix = "tourguide")
+public class TourGuideProperties {
+
+	// Ensures minimum 50 threads or 2x available processors
+	public static final int DEFAULT_POOL_SIZE = Math.max(50, Runtime.getRuntime().availableProcessors() * 2);
+
+	/**
+	 * Synchronous processing and generated internal users when true.
+	 */
+	private boolean testMode = true;
+	@Valid
+	private final InternalUsers internalUsers = new InternalUsers();
+	@Valid
+	private final Pools pools = new Pools();
+	@Valid
+	private final Tracker tracker = new Tracker();
+	@Valid
+	private final Rewards rewards = new Rewards();
+	@Valid
+	private final Cache cache = new Cache();
+	@Valid
+	private final History history = new History();
+	@Valid
+	private final Recalculation recalculation = new Recalculation();
+	@Valid
+	private final Updates updates = new Updates();
+	@Valid
+	private final Tracing tracing = new Tracing();
+	@Valid
+	private final Shutdown shutdown = new Shutdown();
+
+	public boolean isTestMode() {
+		return testMode;
+	}
+
+	public void setTestMode(boolean testMode) {
+		this.testMode = testMode;
+	}
+
+	public InternalUsers getInternalUsers() {
+		return internalUsers;
+	}
+
+	public Pools getPools() {
+		return pools;
+	}
+
+	public Tracker getTracker() {
+		return tracker;
+	}
+
+	public Rewards getRewards() {
+		return rewards;
+	}
+
+	public Cache getCache() {
+		return cache;
+	}
+
+	public History getHistory() {
+		return history;
+	}
+
+	public Recalculation getRecalculation() {
+		return recalculation;
+	}
+
+	public Updates getUpdates() {
+		return updates;
+	}
+
+	public Tracing getTracing() {
+		return tracing;
+	}
+
+	public Shutdown getShutdown() {
+		return shutdown;
+	}
+
+	/**
+	 * Generation of the internal users of the test mode, read at startup. The same seed gives the same users.
+	 */
+	public static class InternalUsers {
+
+		public enum Distribution {
+			// Anywhere on the map
+			UNIFORM,
+			// Around the attractions, spreadMiles away on average
+			ATTRACTIONS
+		}
+
+		private long seed = 42;
+		@NotNull
+		private Distribution distribution = Distribution.UNIFORM;
+		@PositiveOrZero
+		private double spreadMiles = 50;
+		@PositiveOrZero
+		private int locationsPerUser = 3;
+		// Time of the most recent generated visits, the start of the current UTC day when not set
+		private Instant baseTime;
+
+		public long getSeed() {
+			return seed;
+		}
+
+		public void setSeed(long seed) {
+			this.seed = seed;
+		}
+
+		public Distribution getDistribution() {
+			return distribution;
+		}
+
+		public void setDistribution(Distribution distribution) {
+			this.distribution = distribution;
+		}
+
+		public double getSpreadMiles() {
+			return spreadMiles;
+		}
+
+		public void setSpreadMiles(double spreadMiles) {
+			this.spreadMiles = spreadMiles;
+		}
+
+		public int getLocationsPerUser() {
+			return locationsPerUser;
+		}
+
+		public void setLocationsPerUser(int locationsPerUser) {
+			this.locationsPerUser = locationsPerUser;
+		}
+
+		public Instant getBaseTime() {
+			return baseTime;
+		}
+
+		public void setBaseTime(Instant baseTime) {
+			this.baseTime = baseTime;
+		}
+	}
+
+	/**
+	 * Thread pool sizes, live except the fork-join parallelism.
+	 */
+	public static class Pools {
+		@Positive
+		private int tracking = DEFAULT_POOL_SIZE;
+		@Positive
+		private int rewards = DEFAULT_POOL_SIZE;
+		@Positive
+		private int rewardPrefetch = 16;
+		@Positive
+		private int updates = 4;
+		// Fork-join work is CPU bound, one thread per processor
+		@Positive
+		private int forkJoin = Runtime.getRuntime().availableProcessors();
+
+		public int getTracking() {
+			return tracking;
+		}
+
+		public void setTracking(int tracking) {
+			this.tracking = tracking;
+		}
+
+		public int getRewards() {
+			return rewards;
+		}
+
+		public void setRewards(int rewards) {
+			this.rewards = rewards;
+		}
+
+		public int getRewardPrefetch() {
+			return rewardPrefetch;
+		}
+
+		public void setRewardPrefetch(int rewardPrefetch) {
+			this.rewardPrefetch = rewardPrefetch;
+		}
+
+		public int getUpdates() {
+			return updates;
+		}
+
+		public void setUpdates(int updates) {
+			this.updates = updates;
+		}
+
+		public int getForkJoin() {
+			return forkJoin;
+		}
+
+		public void setForkJoin(int forkJoin) {
+			this.forkJoin = forkJoin;
+		}
+	}
+
+	/**
+	 * Delay between two tracking rounds, live.
+	 */
+	public static class Tracker {
+		@NotNull
+		@DurationMin(millis = 1)
+		private Duration pollingInterval = Duration.ofMinutes(5);
+
+		public Duration getPollingInterval() {
+			return pollingInterval;
+		}
+
+		public void setPollingInterval(Duration pollingInterval) {
+			this.pollingInterval = pollingInterval;
+		}
+	}
+
+	/**
+	 * Reward distances in miles and batching of the reward sweeps, live.
+	 */
+	public static class Rewards {
+		@Positive
+		private int proximityBuffer = 10;
+		@Positive
+		private int attractionProximityRange = 200;
+		private boolean spatialBatching = true;
+
+		public int getProximityBuffer() {
+			return proximityBuffer;
+		}
+
+		public void setProximityBuffer(int proximityBuffer) {
+			this.proximityBuffer = proximityBuffer;
+		}
+
+		public int getAttractionProximityRange() {
+			return attractionProximityRange;
+		}
+
+		public void setAttractionProximityRange(int attractionProximityRange) {
+			this.attractionProximityRange = attractionProximityRange;
+		}
+
+		public boolean isSpatialBatching() {
+			return spatialBatching;
+		}
+
+		public void setSpatialBatching(boolean spatialBatching) {
+			this.spatialBatching = spatialBatching;
+		}
+	}
+
+	/**
+	 * Maximum entries of the caches, live.
+	 */
+	public static class Cache {
+		@Positive
+		private int responseMaxEntries = 100_000;
+		@Positive
+		private int rewardPointsMaxEntries = 1_000_000;
+		@Positive
+		private int distanceMaxEntries = 100_000;
+		@Positive
+		private int nearbyMaxEntries = 100_000;
+
+		public int getResponseMaxEntries() {
+			return responseMaxEntries;
+		}
+
+		public void setResponseMaxEntries(int responseMaxEntries) {
+			this.responseMaxEntries = responseMaxEntries;
+		}
+
+		public int getRewardPointsMaxEntries() {
+			return rewardPointsMaxEntries;
+		}
+
+		public void setRewardPointsMaxEntries(int rewardPointsMaxEntries) {
+			this.rewardPointsMaxEntries = rewardPointsMaxEntries;
+		}
+
+		public int getDistanceMaxEntries() {
+			return distanceMaxEntries;
+		}
+
+		public void setDistanceMaxEntries(int distanceMaxEntries) {
+			this.distanceMaxEntries = distanceMaxEntries;
+		}
+
+		public int getNearbyMaxEntries() {
+			return nearbyMaxEntries;
+		}
+
+		public void setNearbyMaxEntries(int nearbyMaxEntries) {
+			this.nearbyMaxEntries = nearbyMaxEntries;
+		}
+	}
+
+	/**
+	 * Location history archiving and time-partitioned index, read at startup.
+	 */
+	public static class History {
+		@Positive
+		private int onHeapLocations = 32;
+		@NotNull
+		private String directory = "";
+		@NotNull
+		@DurationMin(millis = 1)
+		private Duration flushInterval = Duration.ofMinutes(1);
+		// Today and yesterday, so that the last 24 hours are always indexed, about 2.4 GB of heap for 100,000
+		// users tracked every 5 minutes: see LocationTimeline before raising it
+		@Positive
+		private int timelineDays = 2;
+
+		public int getOnHeapLocations() {
+			return onHeapLocations;
+		}
+
+		public void setOnHeapLocations(int onHeapLocations) {
+			this.onHeapLocations = onHeapLocations;
+		}
+
+		public int getTimelineDays() {
+			return timelineDays;
+		}
+
+		public void setTimelineDays(int timelineDays) {
+			this.timelineDays = timelineDays;
+		}
+
+		public String getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		public Duration getFlushInterval() {
+			return flushInterval;
+		}
+
+		public void setFlushInterval(Duration flushInterval) {
+			this.flushInterval = flushInterval;
+		}
+	}
+
+	/**
+	 * Background reward recalculation, read at startup. The throttle is changed through the recalculation endpoint.
+	 */
+	public static class Recalculation {
+		@Positive
+		private int partitions = 64;
+		@PositiveOrZero
+		private double usersPerSecond = 0;
+		@NotNull
+		private String checkpointDirectory = "";
+
+		public int getPartitions() {
+			return partitions;
+		}
+
+		public void setPartitions(int partitions) {
+			this.partitions = partitions;
+		}
+
+		public double getUsersPerSecond() {
+			return usersPerSecond;
+		}
+
+		public void setUsersPerSecond(double usersPerSecond) {
+			this.usersPerSecond = usersPerSecond;
+		}
+
+		public String getCheckpointDirectory() {
+			return checkpointDirectory;
+		}
+
+		public void setCheckpointDirectory(String checkpointDirectory) {
+			this.checkpointDirectory = checkpointDirectory;
+		}
+	}
+
+	/**
+	 * Streams of user updates, read at startup.
+	 */
+	public static class Updates {
+		@Positive
+		private int bufferSize = 256;
+		@NotNull
+		@DurationMin(millis = 1)
+		private Duration timeout = Duration.ofMinutes(30);
+
+		public int getBufferSize() {
+			return bufferSize;
+		}
+
+		public void setBufferSize(int bufferSize) {
+			this.bufferSize = bufferSize;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+	}
+
+	/**
+	 * Hot-path tracing, the sample rate is live.
+	 */
+	public static class Tracing {
+		@PositiveOrZero
+		@DecimalMax("1")
+		private double sampleRate = 0;
+		@PositiveOrZero
+		private long slowThresholdMs = 1000;
+
+		public double getSampleRate() {
+			return sampleRate;
+		}
+
+		public void setSampleRate(double sampleRate) {
+			this.sampleRate = sampleRate;
+		}
+
+		public long getSlowThresholdMs() {
+			return slowThresholdMs;
+		}
+
+		public void setSlowThresholdMs(long slowThresholdMs) {
+			this.slowThresholdMs = slowThresholdMs;
+		}
+	}
+
+	/**
+	 * Time given to in-flight work on shutdown, read at startup.
+	 */
+	public static class Shutdown {
+		@NotNull
+		@DurationMin(millis = 0)
+		private Duration drainTimeout = Duration.ofSeconds(30);
+
+		public Duration getDrainTimeout() {
+			return drainTimeout;
+		}
+
+		public void setDrainTimeout(Duration drainTimeout) {
+			this.drainTimeout = drainTimeout;
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.openclassrooms.tourguide.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.tourguide.cache.ResponseCache;
+import com.openclassrooms.tourguide.lifecycle.ExecutorRegistry;
+import com.openclassrooms.tourguide.recalculation.RewardRecalculationJob;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracing.Tracer;
+
+/**
+ * Actuator endpoint changing the live settings of {@link TourGuideProperties} under load:
+ * GET /actuator/tuning lists the current values, POST /actuator/tuning/{setting} with {"value": ...} changes one.
+ * Changes apply to the running components without dropping in-flight work, and are recorded in the properties.
+ */
+@Component
+@Endpoint(id = "tuning")
+public class TuningEndpoint {
+
+	private static final List<String> RESIZABLE_POOLS = List.of("tracking", "rewards", "reward-prefetch", "updates");
+
+	private final TourGuideProperties properties;
+	private final ExecutorRegistry executorRegistry;
+	private final TourGuideService tourGuideService;
+	private final RewardsService rewardsService;
+	private final ResponseCache responseCache;
+	private final RewardRecalculationJob recalculationJob;
+
+	public TuningEndpoint(TourGuideProperties properties, ExecutorRegistry executorRegistry,
+			TourGuideService tourGuideService, RewardsService rewardsService, ResponseCache responseCache,
+			RewardRecalculationJob recalculationJob) {
+		this.properties = properties;
+		this.executorRegistry = executorRegistry;
+		this.tourGuideService = tourGuideService;
+		this.rewardsService = rewardsService;
+		this.responseCache = responseCache;
+		this.recalculationJob = recalculationJob;
+	}
+
+	@ReadOperation
+	public Map<String, Object> settings() {
+		Map<String, Object> settings = new LinkedHashMap<>();
+		// Only the pools that can be resized, the others have a fixed size
+		Map<String, ThreadPoolExecutor> executors = executorRegistry.getExecutors();
+		for (String pool : RESIZABLE_POOLS) {
+			ThreadPoolExecutor executor = executors.get(pool);
+			if (executor != null) {
+				settings.put("pools." + pool, executor.getMaximumPoolSize());
+			}
+		}
+		settings.put("tracker.polling-interval", tourGuideService.tracker.getPollingInterval().toString());
+		settings.put("rewards.proximity-buffer", rewardsService.getProximityBuffer());
+		settings.put("rewards.attraction-proximity-range", rewardsService.getAttractionProximityRange());
+		settings.put("rewards.spatial-batching", rewardsService.isSpatialBatching());
+		settings.put("cache.response-max-entries", responseCache.getMaxEntries());
+		settings.put("cache.reward-points-max-entries", rewardsService.getRewardPointsCacheMaxEntries());
+		settings.put("cache.distance-max-entries", rewardsService.getDistanceCacheMaxEntries());
+		settings.put("cache.nearby-max-entries", tourGuideService.getNearbyAttractionsCacheMaxEntries());
+		settings.put("tracing.sample-rate", Tracer.getSampleRate());
+		return settings;
+	}
+
+	/**
+	 * @param setting Name of the setting, as listed by the read operation
+	 * @param value New value: a number, or a duration like 30s or PT30S for the polling interval
+	 * @return The settings after the change
+	 */
+	@WriteOperation
+	public Map<String, Object> update(@Selector String setting, String value) {
+		try {
+			apply(setting, value);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+		}
+		return settings();
+	}
+
+	private void apply(String setting, String value) {
+		switch (setting) {
+			case "pools.tracking" -> {
+				executorRegistry.resize("tracking", positive(value));
+				properties.getPools().setTracking(positive(value));
+			}
+			case "pools.rewards" -> {
+				executorRegistry.resize("rewards", positive(value));
+				properties.getPools().setRewards(positive(value));
+			}
+			case "pools.reward-prefetch" -> {
+				executorRegistry.resize("reward-prefetch", positive(value));
+				properties.getPools().setRewardPrefetch(positive(value));
+			}
+			case "pools.updates" -> {
+				executorRegistry.resize("updates", positive(value));
+				properties.getPools().setUpdates(positive(value));
+			}
+			case "tracker.polling-interval" -> {
+				Duration interval = DurationStyle.detectAndParse(value);
+				if (interval.isNegative() || interval.isZero()) {
+					throw new IllegalArgumentException("Polling interval must be positive: " + value);
+				}
+				tourGuideService.tracker.setPollingInterval(interval);
+				properties.getTracker().setPollingInterval(interval);
+			}
+			case "rewards.proximity-buffer" -> {
+				rewardsService.setProximityBuffer(positive(value));
+				properties.getRewards().setProximityBuffer(positive(value));
+				// Rewards earned before with the previous radius are kept, the users only earn the new ones.
+				// Started in the background: stopping a run in progress can take up to a minute
+				recalculationJob.startRunAsync();
+			}
+			case "rewards.attraction-proximity-range" -> {
+				rewardsService.setAttractionProximityRange(positive(value));
+				properties.getRewards().setAttractionProximityRange(positive(value));
+			}
+			case "rewards.spatial-batching" -> {
+				if (!value.equals("true") && !value.equals("false")) {
+					throw new IllegalArgumentException("Value must be true or false: " + value);
+				}
+				rewardsService.setSpatialBatching(Boolean.parseBoolean(value));
+				properties.getRewards().setSpatialBatching(Boolean.parseBoolean(value));
+			}
+			case "cache.response-max-entries" -> {
+				responseCache.setMaxEntries(positive(value));
+				properties.getCache().setResponseMaxEntries(positive(value));
+			}
+			case "cache.reward-points-max-entries" -> {
+				rewardsService.setRewardPointsCacheMaxEntries(positive(value));
+				properties.getCache().setRewardPointsMaxEntries(positive(value));
+			}
+			case "cache.distance-max-entries" -> {
+				rewardsService.setDistanceCacheMaxEntries(positive(value));
+				properties.getCache().setDistanceMaxEntries(positive(value));
+			}
+			case "cache.nearby-max-entries" -> {
+				tourGuideService.setNearbyAttractionsCacheMaxEntries(positive(value));
+				properties.getCache().setNearbyMaxEntries(positive(value));
+			}
+			case "tracing.sample-rate" -> {
+				double sampleRate = Double.parseDouble(value);
+				if (sampleRate < 0 || sampleRate > 1) {
+					throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + value);
+				}
+				Tracer.setSampleRate(sampleRate);
+				properties.getTracing().setSampleRate(sampleRate);
+			}
+			default -> throw new IllegalArgumentException("Unknown or read-only setting: " + setting);
+		}
+	}
+
+	private static int positive(String value) {
+		int number = Integer.parseInt(value.trim());
+		if (number < 1) {
+			throw new IllegalArgumentException("Value must be positive: " + value);
+		}
+		return number;
+	}
+}
@@ -0,0 +1,7 @@
+package com.openclassrooms.tourguide.dto;
+
+/**
+ * Data Transfer Object (DTO) representing how many rewarded visits an attraction received today and overall.
+ */
+public record AttractionVisitsDTO(String attractionName, long visitsToday, long totalVisits) {
+}
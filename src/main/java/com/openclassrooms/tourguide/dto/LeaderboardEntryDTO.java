@@ -0,0 +1,9 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.UUID;
+
+/**
+ * Data Transfer Object (DTO) representing a user's total reward points in the leaderboard.
+ */
+public record LeaderboardEntryDTO(UUID userId, String userName, long rewardPoints) {
+}
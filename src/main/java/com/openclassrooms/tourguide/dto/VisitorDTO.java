@@ -0,0 +1,11 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Data Transfer Object (DTO) representing a user who visited the surroundings of a place during a period.
+ */
+public record VisitorDTO(UUID userId, String userName, int visits, Date firstVisit, Date lastVisit,
+		double closestDistance) {
+}
@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide.helper;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import com.openclassrooms.tourguide.spatial.GeoMath;
+import gpsUtil.location.Location;
+
+/**
+ * Draws the locations of generated users. The locations only depend on the given random generator,
+ * so a seeded generator always draws the same locations.
+ */
+@FunctionalInterface
+public interface LocationDistribution {
+
+	double MAX_LATITUDE = 85.05112878;
+	double MILES_PER_DEGREE = GeoMath.MILES_PER_DEGREE_OF_LATITUDE;
+
+	Location next(SplittableRandom random);
+
+	/**
+	 * Uniformly random coordinates, between the latitudes of the Web Mercator projection.
+	 */
+	static LocationDistribution uniform() {
+		return random -> new Location(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE), random.nextDouble(-180, 180));
+	}
+
+	/**
+	 * Locations gathered around places, e.g. the attractions: each location is drawn around a random place
+	 * with a gaussian spread.
+	 * @param spreadMiles Standard deviation of the distance to the place
+	 */
+	static LocationDistribution around(List<? extends Location> places, double spreadMiles) {
+		if (places.isEmpty()) {
+			throw new IllegalArgumentException("No place to gather the locations around");
+		}
+		List<Location> centers = List.copyOf(places);
+		double spreadDegrees = spreadMiles / MILES_PER_DEGREE;
+		return random -> {
+			Location center = centers.get(random.nextInt(centers.size()));
+			double latitude = center.latitude + random.nextGaussian() * spreadDegrees;
+			double longitude = center.longitude + random.nextGaussian() * spreadDegrees;
+			return new Location(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)),
+					((longitude + 540) % 360) - 180);
+		};
+	}
+}
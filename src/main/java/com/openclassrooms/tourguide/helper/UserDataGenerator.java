@@ -0,0 +1,81 @@
+package com.openclassrooms.tourguide.helper;
+
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.openclassrooms.tourguide.user.User;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Generates the internal test users from a seed: the user of a given index always gets the same id, locations
+ * and visit times for the same seed, distribution and base time. Each user draws from its own generator, derived
+ * from the seed and its index, so users are generated in parallel and in any order with the same result,
+ * and runs of different commits can be compared on the same population.
+ */
+public final class UserDataGenerator {
+
+	private static final long MILLIS_PER_DAY = 86_400_000L;
+	// Visits are spread over the days before the base time
+	private static final int HISTORY_DAYS = 30;
+
+	private final long seed;
+	private final LocationDistribution distribution;
+	private final int locationsPerUser;
+	private final long baseTimeMillis;
+
+	/**
+	 * @param baseTimeMillis Time of the most recent visits
+	 */
+	public UserDataGenerator(long seed, LocationDistribution distribution, int locationsPerUser, long baseTimeMillis) {
+		this.seed = seed;
+		this.distribution = distribution;
+		this.locationsPerUser = locationsPerUser;
+		this.baseTimeMillis = baseTimeMillis;
+	}
+
+	/**
+	 * @return The user of this index, named internalUser followed by the index
+	 */
+	public User generate(int index) {
+		SplittableRandom random = new SplittableRandom(mix(seed, index));
+		UUID userId = randomUuid(random);
+		String userName = "internalUser" + index;
+		User user = new User(userId, userName, "000", userName + "@tourGuide.com");
+		for (int i = 0; i < locationsPerUser; i++) {
+			Location location = distribution.next(random);
+			long time = baseTimeMillis - random.nextInt(HISTORY_DAYS) * MILLIS_PER_DAY;
+			user.addToVisitedLocations(new VisitedLocation(userId, location, new Date(time)));
+		}
+		return user;
+	}
+
+	/**
+	 * Generates the users of indexes 0 to count - 1 on the given pool.
+	 * @return The users, in index order
+	 */
+	public List<User> generate(int count, ForkJoinPool pool) {
+		// The parallel stream runs in the pool it is started from
+		return pool.submit(() -> IntStream.range(0, count).parallel().mapToObj(this::generate).toList()).join();
+	}
+
+	// Random version 4 UUID, drawn from the user's generator instead of SecureRandom
+	private static UUID randomUuid(SplittableRandom random) {
+		long most = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long least = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(most, least);
+	}
+
+	// Seed of the generator of a user: the murmur3 finalizer of the seed and index, so close indexes
+	// get unrelated generators
+	private static long mix(long seed, int index) {
+		long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return z ^ (z >>> 33);
+	}
+}
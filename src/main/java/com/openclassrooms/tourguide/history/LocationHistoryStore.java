@@ -0,0 +1,387 @@
+package com.openclassrooms.tourguide.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Location history of the users, stored off-heap so that it doesn't weigh on the garbage collector.
+ * Locations are fixed-width records (latitude, longitude, visit time) in blocks of 32, each user having a chain
+ * of blocks. Blocks are carved out of large direct buffers, or of a memory-mapped file to keep the history across
+ * restarts. On-heap usage only grows with the number of users, never with the number of locations.
+ * Each user gets a dense slot number; appends to a slot are serialized, reads are lock-free and see every location
+ * whose append completed.
+ */
+public final class LocationHistoryStore implements Closeable {
+
+	// Record: latitude and longitude (doubles), then the visit time (epoch millis)
+	private static final int RECORD_BYTES = 24;
+	private static final int RECORDS_PER_BLOCK = 32;
+	// Block: number of the next block of the same user, then the records
+	private static final int BLOCK_BYTES = Long.BYTES + RECORDS_PER_BLOCK * RECORD_BYTES;
+	private static final int BLOCKS_PER_CHUNK = 16_384;
+	private static final long CHUNK_BYTES = (long) BLOCK_BYTES * BLOCKS_PER_CHUNK;
+	private static final int MAX_CHUNKS = 8_192;
+	private static final long NO_BLOCK = -1;
+
+	// Per-slot metadata lives in fixed-size pages, so that it never moves once created
+	private static final int SLOTS_PER_PAGE = 4_096;
+	private static final int MAX_PAGES = 16_384;
+	private static final int LOCK_STRIPES = 256;
+
+	private static final String DATA_FILE = "locations.dat";
+	private static final String INDEX_FILE = "locations.idx";
+	private static final int INDEX_MAGIC = 0x54474c48;
+	private static final int INDEX_VERSION = 1;
+
+	private final Path directory;
+	private final FileChannel channel;
+	private final AtomicReferenceArray<ByteBuffer> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+	private final AtomicLong allocatedBlocks = new AtomicLong();
+
+	private final Map<UUID, Integer> slots = new ConcurrentHashMap<>();
+	private final AtomicInteger slotCount = new AtomicInteger();
+	private final AtomicReferenceArray<SlotPage> pages = new AtomicReferenceArray<>(MAX_PAGES);
+	private final Object[] locks = new Object[LOCK_STRIPES];
+
+	private LocationHistoryStore(Path directory, FileChannel channel) {
+		this.directory = directory;
+		this.channel = channel;
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * @return A store in direct buffers, lost when the application stops
+	 */
+	public static LocationHistoryStore inMemory() {
+		return new LocationHistoryStore(null, null);
+	}
+
+	/**
+	 * Opens a store backed by memory-mapped files in the directory, reloading the history saved by the last
+	 * {@link #flush()} or {@link #close()}: locations appended since are lost on a crash, so the store is
+	 * meant to be flushed periodically.
+	 */
+	public static LocationHistoryStore mapped(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		FileChannel channel = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		LocationHistoryStore store = new LocationHistoryStore(directory, channel);
+		Path index = directory.resolve(INDEX_FILE);
+		if (Files.exists(index)) {
+			store.load(index);
+		}
+		return store;
+	}
+
+	public void append(UUID userId, VisitedLocation visitedLocation) {
+		append(userId, visitedLocation.location.latitude, visitedLocation.location.longitude,
+				visitedLocation.timeVisited.getTime());
+	}
+
+	public void append(UUID userId, double latitude, double longitude, long timeVisitedMillis) {
+		int slot = slotOf(userId);
+		SlotPage page = pages.get(slot / SLOTS_PER_PAGE);
+		int i = slot % SLOTS_PER_PAGE;
+		synchronized (locks[slot % LOCK_STRIPES]) {
+			int count = page.counts.get(i);
+			long block;
+			if (count % RECORDS_PER_BLOCK == 0) {
+				block = allocateBlock();
+				if (count == 0) {
+					page.firstBlocks[i] = block;
+				} else {
+					chunk(page.lastBlocks[i]).putLong(offset(page.lastBlocks[i]), block);
+				}
+				page.lastBlocks[i] = block;
+			} else {
+				block = page.lastBlocks[i];
+			}
+			ByteBuffer chunk = chunk(block);
+			int offset = offset(block) + Long.BYTES + (count % RECORDS_PER_BLOCK) * RECORD_BYTES;
+			chunk.putDouble(offset, latitude);
+			chunk.putDouble(offset + Double.BYTES, longitude);
+			chunk.putLong(offset + 2 * Double.BYTES, timeVisitedMillis);
+			// Published after the record: readers only read the records below the count
+			page.counts.set(i, count + 1);
+		}
+	}
+
+	/**
+	 * @return Number of locations stored for the user
+	 */
+	public int size(UUID userId) {
+		Integer slot = slots.get(userId);
+		return slot == null ? 0 : pages.get(slot / SLOTS_PER_PAGE).counts.get(slot % SLOTS_PER_PAGE);
+	}
+
+	/**
+	 * Scans the user's locations, oldest first, without allocating.
+	 * @return Index of the first location matching the predicate, or -1
+	 */
+	public int findFirst(UUID userId, LocationPredicate predicate) {
+		Integer slot = slots.get(userId);
+		if (slot == null) {
+			return -1;
+		}
+		SlotPage page = pages.get(slot / SLOTS_PER_PAGE);
+		int i = slot % SLOTS_PER_PAGE;
+		int count = page.counts.get(i);
+		long block = page.firstBlocks[i];
+		for (int index = 0; index < count; block = nextBlock(block)) {
+			ByteBuffer chunk = chunk(block);
+			int offset = offset(block) + Long.BYTES;
+			int end = Math.min(count, index + RECORDS_PER_BLOCK);
+			for (; index < end; index++, offset += RECORD_BYTES) {
+				if (predicate.test(chunk.getDouble(offset), chunk.getDouble(offset + Double.BYTES),
+						chunk.getLong(offset + 2 * Double.BYTES))) {
+					return index;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The location at the index, rebuilt on-heap
+	 */
+	public VisitedLocation get(UUID userId, int index) {
+		if (index < 0 || index >= size(userId)) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		int slot = slots.get(userId);
+		long block = pages.get(slot / SLOTS_PER_PAGE).firstBlocks[slot % SLOTS_PER_PAGE];
+		for (int skipped = RECORDS_PER_BLOCK; skipped <= index; skipped += RECORDS_PER_BLOCK) {
+			block = nextBlock(block);
+		}
+		return read(userId, chunk(block), offset(block) + Long.BYTES + (index % RECORDS_PER_BLOCK) * RECORD_BYTES);
+	}
+
+	/**
+	 * @return All the locations of the user, oldest first, rebuilt on-heap
+	 */
+	public List<VisitedLocation> getAll(UUID userId) {
+		Integer slot = slots.get(userId);
+		if (slot == null) {
+			return List.of();
+		}
+		SlotPage page = pages.get(slot / SLOTS_PER_PAGE);
+		int i = slot % SLOTS_PER_PAGE;
+		int count = page.counts.get(i);
+		List<VisitedLocation> visitedLocations = new ArrayList<>(count);
+		long block = page.firstBlocks[i];
+		for (int index = 0; index < count; block = nextBlock(block)) {
+			ByteBuffer chunk = chunk(block);
+			int offset = offset(block) + Long.BYTES;
+			int end = Math.min(count, index + RECORDS_PER_BLOCK);
+			for (; index < end; index++, offset += RECORD_BYTES) {
+				visitedLocations.add(read(userId, chunk, offset));
+			}
+		}
+		return visitedLocations;
+	}
+
+	public int getUserCount() {
+		return slots.size();
+	}
+
+	/**
+	 * @return Off-heap bytes used by the allocated blocks
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBlocks.get() * BLOCK_BYTES;
+	}
+
+	public boolean isPersistent() {
+		return channel != null;
+	}
+
+	/**
+	 * Writes the mapped data to disk, then the index of the users' blocks. Does nothing for an in-memory store.
+	 * Appends go on during a flush, the index only covers the locations appended before it.
+	 */
+	public synchronized void flush() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		// Slots first: the blocks they reference are allocated before the count is read
+		List<long[]> entries = new ArrayList<>(slots.size());
+		for (Map.Entry<UUID, Integer> slot : slots.entrySet()) {
+			entries.add(snapshot(slot.getKey(), slot.getValue()));
+		}
+		long blocks = allocatedBlocks.get();
+		for (int c = 0; c < MAX_CHUNKS && chunks.get(c) != null; c++) {
+			((MappedByteBuffer) chunks.get(c)).force();
+		}
+
+		Path index = directory.resolve(INDEX_FILE);
+		Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(INDEX_VERSION);
+			out.writeLong(blocks);
+			out.writeInt(slotCount.get());
+			out.writeInt(entries.size());
+			for (long[] entry : entries) {
+				for (long value : entry) {
+					out.writeLong(value);
+				}
+			}
+		}
+		Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			flush();
+			channel.close();
+		}
+	}
+
+	private int slotOf(UUID userId) {
+		Integer slot = slots.get(userId);
+		return slot != null ? slot : slots.computeIfAbsent(userId, id -> newSlot());
+	}
+
+	private int newSlot() {
+		int slot = slotCount.getAndIncrement();
+		SlotPage page = ensurePage(slot / SLOTS_PER_PAGE);
+		page.firstBlocks[slot % SLOTS_PER_PAGE] = NO_BLOCK;
+		page.lastBlocks[slot % SLOTS_PER_PAGE] = NO_BLOCK;
+		return slot;
+	}
+
+	private SlotPage ensurePage(int pageIndex) {
+		if (pageIndex >= MAX_PAGES) {
+			throw new IllegalStateException("Location history is full: too many users");
+		}
+		SlotPage page = pages.get(pageIndex);
+		if (page == null) {
+			pages.compareAndSet(pageIndex, null, new SlotPage());
+			page = pages.get(pageIndex);
+		}
+		return page;
+	}
+
+	// Copy of a slot's metadata, consistent as it is read under the slot's lock
+	private long[] snapshot(UUID userId, int slot) {
+		SlotPage page = pages.get(slot / SLOTS_PER_PAGE);
+		int i = slot % SLOTS_PER_PAGE;
+		synchronized (locks[slot % LOCK_STRIPES]) {
+			return new long[] { userId.getMostSignificantBits(), userId.getLeastSignificantBits(), slot,
+					page.counts.get(i), page.firstBlocks[i], page.lastBlocks[i] };
+		}
+	}
+
+	private void load(Path index) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+			if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+				throw new IOException("Unsupported location history index: " + index);
+			}
+			long blocks = in.readLong();
+			allocatedBlocks.set(blocks);
+			for (int c = 0; (long) c * BLOCKS_PER_CHUNK < blocks; c++) {
+				ensureChunk(c);
+			}
+			slotCount.set(in.readInt());
+			int entries = in.readInt();
+			for (int e = 0; e < entries; e++) {
+				UUID userId = new UUID(in.readLong(), in.readLong());
+				int slot = (int) in.readLong();
+				int count = (int) in.readLong();
+				SlotPage page = ensurePage(slot / SLOTS_PER_PAGE);
+				int i = slot % SLOTS_PER_PAGE;
+				page.firstBlocks[i] = in.readLong();
+				page.lastBlocks[i] = in.readLong();
+				page.counts.set(i, count);
+				slots.put(userId, slot);
+			}
+		}
+	}
+
+	private long allocateBlock() {
+		// Checked before the block is taken, so failed appends on a full store leave the count at the capacity
+		long block;
+		do {
+			block = allocatedBlocks.get();
+			if (block / BLOCKS_PER_CHUNK >= MAX_CHUNKS) {
+				throw new IllegalStateException("Location history is full: " + getAllocatedBytes() + " bytes");
+			}
+		} while (!allocatedBlocks.compareAndSet(block, block + 1));
+		ensureChunk((int) (block / BLOCKS_PER_CHUNK));
+		chunk(block).putLong(offset(block), NO_BLOCK);
+		return block;
+	}
+
+	private void ensureChunk(int chunkIndex) {
+		if (chunks.get(chunkIndex) == null) {
+			synchronized (chunks) {
+				if (chunks.get(chunkIndex) == null) {
+					chunks.set(chunkIndex, createChunk(chunkIndex));
+				}
+			}
+		}
+	}
+
+	private ByteBuffer createChunk(int chunkIndex) {
+		if (channel == null) {
+			return ByteBuffer.allocateDirect((int) CHUNK_BYTES);
+		}
+		try {
+			return channel.map(FileChannel.MapMode.READ_WRITE, chunkIndex * CHUNK_BYTES, CHUNK_BYTES);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private ByteBuffer chunk(long block) {
+		return chunks.get((int) (block / BLOCKS_PER_CHUNK));
+	}
+
+	private static int offset(long block) {
+		return (int) (block % BLOCKS_PER_CHUNK) * BLOCK_BYTES;
+	}
+
+	private long nextBlock(long block) {
+		return chunk(block).getLong(offset(block));
+	}
+
+	private static VisitedLocation read(UUID userId, ByteBuffer chunk, int offset) {
+		return new VisitedLocation(userId,
+				new Location(chunk.getDouble(offset), chunk.getDouble(offset + Double.BYTES)),
+				new Date(chunk.getLong(offset + 2 * Double.BYTES)));
+	}
+
+	private static final class SlotPage {
+		private final AtomicIntegerArray counts = new AtomicIntegerArray(SLOTS_PER_PAGE);
+		private final long[] firstBlocks = new long[SLOTS_PER_PAGE];
+		private final long[] lastBlocks = new long[SLOTS_PER_PAGE];
+	}
+}
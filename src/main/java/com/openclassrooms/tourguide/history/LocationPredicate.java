@@ -0,0 +1,10 @@
+package com.openclassrooms.tourguide.history;
+
+/**
+ * Condition on a stored location, given as primitives so that scanning the store doesn't allocate.
+ */
+@FunctionalInterface
+public interface LocationPredicate {
+
+	boolean test(double latitude, double longitude, long timeVisitedMillis);
+}
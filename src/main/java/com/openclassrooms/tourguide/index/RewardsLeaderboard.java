@@ -0,0 +1,182 @@
+package com.openclassrooms.tourguide.index;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.openclassrooms.tourguide.dto.AttractionVisitsDTO;
+import com.openclassrooms.tourguide.dto.LeaderboardEntryDTO;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserEvent;
+import com.openclassrooms.tourguide.user.UserEventListener;
+import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.UserState;
+
+/**
+ * Aggregate reward indexes maintained incrementally from RewardEarned events, so that leaderboard queries
+ * never iterate over the user population:
+ * per-user point totals, a leaderboard sorted by points in a concurrent skip list,
+ * and per-attraction visit counts (overall and per day) with a ranking of the attractions sorted the same way.
+ */
+public class RewardsLeaderboard implements UserEventListener {
+
+	// Number of days of per-day visit counts kept
+	private static final int RETAINED_DAYS = 7;
+
+	private static final Comparator<LeaderboardEntryDTO> BY_POINTS_DESCENDING = Comparator
+			.comparingLong(LeaderboardEntryDTO::rewardPoints).reversed()
+			.thenComparing(LeaderboardEntryDTO::userId);
+
+	private final Map<UUID, LeaderboardEntryDTO> userTotals = new ConcurrentHashMap<>();
+	private final NavigableSet<LeaderboardEntryDTO> leaderboard = new ConcurrentSkipListSet<>(BY_POINTS_DESCENDING);
+	private static final Comparator<AttractionVisitsDTO> BY_VISITS_DESCENDING = Comparator
+			.comparingLong(AttractionVisitsDTO::visitsToday)
+			.thenComparingLong(AttractionVisitsDTO::totalVisits).reversed()
+			.thenComparing(AttractionVisitsDTO::attractionName);
+
+	private final Map<String, LongAdder> totalVisits = new ConcurrentHashMap<>();
+	private final Map<LocalDate, Map<String, LongAdder>> dailyVisits = new ConcurrentHashMap<>();
+	// Current visit counts of each attraction, and the same entries sorted for the day of the ranking
+	private final Map<String, AttractionVisitsDTO> attractionVisits = new ConcurrentHashMap<>();
+	private final NavigableSet<AttractionVisitsDTO> attractionRanking = new ConcurrentSkipListSet<>(
+			BY_VISITS_DESCENDING);
+	private volatile LocalDate rankingDay = LocalDate.now(ZoneOffset.UTC);
+
+	@Override
+	public void onEvent(User user, UserEvent event, UserState state) {
+		if (event instanceof UserEvent.RewardEarned rewardEarned) {
+			addReward(user, rewardEarned.userReward());
+		} else if (event instanceof UserEvent.Compacted compacted) {
+			// A replayed ledger starting with a snapshot
+			for (UserReward userReward : compacted.state().getUserRewards()) {
+				addReward(user, userReward);
+			}
+		}
+	}
+
+	/**
+	 * Indexes the rewards a user already has, e.g. when the user is registered.
+	 */
+	public void addUser(User user) {
+		for (UserReward userReward : user.getUserRewards()) {
+			addReward(user, userReward);
+		}
+	}
+
+	/**
+	 * @return The users with the most reward points, best first. O(log n + limit)
+	 */
+	public List<LeaderboardEntryDTO> getTopUsers(int limit) {
+		List<LeaderboardEntryDTO> top = new ArrayList<>(Math.min(limit, 100));
+		Set<UUID> seen = new HashSet<>();
+		Iterator<LeaderboardEntryDTO> iterator = leaderboard.iterator();
+		while (top.size() < limit && iterator.hasNext()) {
+			LeaderboardEntryDTO entry = iterator.next();
+			// A user being updated briefly has its old and new entries: we keep the first, the higher one
+			if (seen.add(entry.userId())) {
+				top.add(entry);
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * @return Total reward points of a user, 0 if the user has no reward. O(1)
+	 */
+	public long getUserRewardPoints(UUID userId) {
+		LeaderboardEntryDTO entry = userTotals.get(userId);
+		return entry == null ? 0 : entry.rewardPoints();
+	}
+
+	/**
+	 * @return The attractions with the most rewarded visits today (UTC), most visited first. O(log n + limit),
+	 * the ranking is only rebuilt on the first read of a new day
+	 */
+	public List<AttractionVisitsDTO> getMostVisitedAttractions(int limit) {
+		LocalDate today = LocalDate.now(ZoneOffset.UTC);
+		if (!today.equals(rankingDay)) {
+			rerank(today);
+		}
+		List<AttractionVisitsDTO> top = new ArrayList<>(Math.min(limit, 100));
+		Set<String> seen = new HashSet<>();
+		Iterator<AttractionVisitsDTO> iterator = attractionRanking.iterator();
+		while (top.size() < limit && iterator.hasNext()) {
+			AttractionVisitsDTO entry = iterator.next();
+			if (seen.add(entry.attractionName())) {
+				top.add(entry);
+			}
+		}
+		return top;
+	}
+
+	private void addReward(User user, UserReward userReward) {
+		// Per-user compute serializes updates of the same user, the skip list entry is replaced atomically for it
+		userTotals.compute(user.getUserId(), (userId, previous) -> {
+			long points = (previous == null ? 0 : previous.rewardPoints()) + userReward.getRewardPoints();
+			LeaderboardEntryDTO entry = new LeaderboardEntryDTO(userId, user.getUserName(), points);
+			// Add before removing, so concurrent readers never miss the user
+			leaderboard.add(entry);
+			if (previous != null && !previous.equals(entry)) {
+				leaderboard.remove(previous);
+			}
+			return entry;
+		});
+
+		String attractionName = userReward.attraction.attractionName;
+		totalVisits.computeIfAbsent(attractionName, name -> new LongAdder()).increment();
+		LocalDate day = LocalDate.ofInstant(userReward.visitedLocation.timeVisited.toInstant(), ZoneOffset.UTC);
+		LocalDate oldestRetainedDay = LocalDate.now(ZoneOffset.UTC).minusDays(RETAINED_DAYS);
+		if (day.isBefore(oldestRetainedDay)) {
+			updateRanking(attractionName);
+			return;
+		}
+		Map<String, LongAdder> visits = dailyVisits.get(day);
+		if (visits == null) {
+			// A new day starts: the days that are no longer retained are dropped
+			dailyVisits.keySet().removeIf(retained -> retained.isBefore(oldestRetainedDay));
+			visits = dailyVisits.computeIfAbsent(day, d -> new ConcurrentHashMap<>());
+		}
+		visits.computeIfAbsent(attractionName, name -> new LongAdder()).increment();
+		updateRanking(attractionName);
+	}
+
+	// Yesterday's counts of the ranking are stale: every attraction is ranked again on today's counts
+	private synchronized void rerank(LocalDate today) {
+		if (today.equals(rankingDay)) {
+			return;
+		}
+		rankingDay = today;
+		for (String attractionName : totalVisits.keySet()) {
+			updateRanking(attractionName);
+		}
+	}
+
+	// Per-attraction compute serializes the updates of an attraction, its entry is replaced like a user's.
+	// The day is read inside, so an update racing with a rerank never writes back the previous day's counts
+	private void updateRanking(String attractionName) {
+		attractionVisits.compute(attractionName, (name, previous) -> {
+			Map<String, LongAdder> visits = dailyVisits.getOrDefault(rankingDay, Map.of());
+			AttractionVisitsDTO entry = new AttractionVisitsDTO(name, sum(visits.get(name)), sum(totalVisits.get(name)));
+			attractionRanking.add(entry);
+			if (previous != null && !previous.equals(entry)) {
+				attractionRanking.remove(previous);
+			}
+			return entry;
+		});
+	}
+
+	private static long sum(LongAdder adder) {
+		return adder == null ? 0 : adder.sum();
+	}
+}
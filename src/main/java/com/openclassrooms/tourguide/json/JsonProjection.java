@@ -0,0 +1,60 @@
+package com.openclassrooms.tourguide.json;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Page and top-level fields of a list written by {@link TourGuideJsonWriter}.
+ * The default projection writes every element with all its fields.
+ */
+public class JsonProjection {
+
+	public static final JsonProjection ALL = new JsonProjection(0, Integer.MAX_VALUE, Set.of());
+
+	private final int offset;
+	private final int limit;
+	private final Set<String> fields;
+
+	private JsonProjection(int offset, int limit, Set<String> fields) {
+		this.offset = offset;
+		this.limit = limit;
+		this.fields = fields;
+	}
+
+	/**
+	 * @param offset Index of the first element written
+	 * @param limit Maximum number of elements written, null for no limit
+	 * @param fields Comma separated top-level fields to write, null or empty for all fields
+	 */
+	public static JsonProjection of(int offset, Integer limit, String fields) {
+		if (offset < 0 || (limit != null && limit < 0)) {
+			throw new IllegalArgumentException("offset and limit must be positive");
+		}
+		Set<String> fieldSet = fields == null || fields.isBlank() ? Set.of()
+				: Arrays.stream(fields.split(",")).map(String::trim).filter(f -> !f.isEmpty())
+						.collect(Collectors.toUnmodifiableSet());
+		return new JsonProjection(offset, limit == null ? Integer.MAX_VALUE : limit, fieldSet);
+	}
+
+	public boolean isAll() {
+		return offset == 0 && limit == Integer.MAX_VALUE && fields.isEmpty();
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public boolean includes(String field) {
+		return fields.isEmpty() || fields.contains(field);
+	}
+
+	@Override
+	public String toString() {
+		return "offset=" + offset + "&limit=" + limit + "&fields=" + String.join(",", fields.stream().sorted().toList());
+	}
+}
@@ -0,0 +1,192 @@
+package com.openclassrooms.tourguide.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.openclassrooms.tourguide.dto.NearByAttractionDTO;
+import com.openclassrooms.tourguide.user.UserReward;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Hand-written JSON writers for the large per-user payloads. They write field by field with the Jackson streaming
+ * generator, straight to the output stream, instead of letting the ObjectMapper introspect the object graph.
+ * The generator works on buffers recycled by the JsonFactory, so a request only allocates its output.
+ *
+ * The JSON produced is the same as the ObjectMapper one (dates in ISO-8601, UTC).
+ */
+public class TourGuideJsonWriter {
+
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSxxx")
+			.withZone(ZoneOffset.UTC);
+
+	private final JsonFactory jsonFactory;
+
+	public TourGuideJsonWriter(JsonFactory jsonFactory) {
+		this.jsonFactory = jsonFactory;
+	}
+
+	public void writeUserRewards(OutputStream out, List<UserReward> userRewards, JsonProjection projection) {
+		write(out, generator -> {
+			generator.writeStartArray();
+			int end = end(userRewards.size(), projection);
+			for (int i = projection.getOffset(); i < end; i++) {
+				writeUserReward(generator, userRewards.get(i), projection);
+			}
+			generator.writeEndArray();
+		});
+	}
+
+	public void writeNearByAttractions(OutputStream out, List<NearByAttractionDTO> attractions,
+			JsonProjection projection) {
+		write(out, generator -> {
+			generator.writeStartArray();
+			int end = end(attractions.size(), projection);
+			for (int i = projection.getOffset(); i < end; i++) {
+				writeNearByAttraction(generator, attractions.get(i), projection);
+			}
+			generator.writeEndArray();
+		});
+	}
+
+	public void writeVisitedLocation(OutputStream out, VisitedLocation visitedLocation) {
+		write(out, generator -> writeVisitedLocation(generator, visitedLocation));
+	}
+
+	public byte[] userRewardsToBytes(List<UserReward> userRewards) {
+		return toBytes(out -> writeUserRewards(out, userRewards, JsonProjection.ALL));
+	}
+
+	public byte[] nearByAttractionsToBytes(List<NearByAttractionDTO> attractions) {
+		return toBytes(out -> writeNearByAttractions(out, attractions, JsonProjection.ALL));
+	}
+
+	public byte[] visitedLocationToBytes(VisitedLocation visitedLocation) {
+		return toBytes(out -> writeVisitedLocation(out, visitedLocation));
+	}
+
+	public byte[] userRewardToBytes(UserReward userReward) {
+		return toBytes(out -> write(out, generator -> writeUserReward(generator, userReward, JsonProjection.ALL)));
+	}
+
+	private void writeUserReward(JsonGenerator generator, UserReward userReward, JsonProjection projection)
+			throws IOException {
+		generator.writeStartObject();
+		if (projection.includes("visitedLocation")) {
+			generator.writeFieldName("visitedLocation");
+			writeVisitedLocation(generator, userReward.visitedLocation);
+		}
+		if (projection.includes("attraction")) {
+			generator.writeFieldName("attraction");
+			writeAttraction(generator, userReward.attraction);
+		}
+		if (projection.includes("rewardPoints")) {
+			generator.writeNumberField("rewardPoints", userReward.getRewardPoints());
+		}
+		generator.writeEndObject();
+	}
+
+	private void writeVisitedLocation(JsonGenerator generator, VisitedLocation visitedLocation) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("userId", visitedLocation.userId.toString());
+		generator.writeFieldName("location");
+		writeLocation(generator, visitedLocation.location);
+		writeDateField(generator, "timeVisited", visitedLocation.timeVisited);
+		generator.writeEndObject();
+	}
+
+	// Like the ObjectMapper, an Attraction used as a location is written with all its fields
+	private void writeLocation(JsonGenerator generator, Location location) throws IOException {
+		if (location instanceof Attraction attraction) {
+			writeAttraction(generator, attraction);
+			return;
+		}
+		generator.writeStartObject();
+		generator.writeNumberField("longitude", location.longitude);
+		generator.writeNumberField("latitude", location.latitude);
+		generator.writeEndObject();
+	}
+
+	private void writeAttraction(JsonGenerator generator, Attraction attraction) throws IOException {
+		generator.writeStartObject();
+		generator.writeNumberField("longitude", attraction.longitude);
+		generator.writeNumberField("latitude", attraction.latitude);
+		generator.writeStringField("attractionName", attraction.attractionName);
+		generator.writeStringField("city", attraction.city);
+		generator.writeStringField("state", attraction.state);
+		generator.writeStringField("attractionId", attraction.attractionId.toString());
+		generator.writeEndObject();
+	}
+
+	private void writeNearByAttraction(JsonGenerator generator, NearByAttractionDTO attraction,
+			JsonProjection projection) throws IOException {
+		generator.writeStartObject();
+		if (projection.includes("attractionName")) {
+			generator.writeStringField("attractionName", attraction.getAttractionName());
+		}
+		if (projection.includes("attractionLatitude")) {
+			generator.writeNumberField("attractionLatitude", attraction.getAttractionLatitude());
+		}
+		if (projection.includes("attractionLongitude")) {
+			generator.writeNumberField("attractionLongitude", attraction.getAttractionLongitude());
+		}
+		if (projection.includes("userLatitude")) {
+			generator.writeNumberField("userLatitude", attraction.getUserLatitude());
+		}
+		if (projection.includes("userLongitude")) {
+			generator.writeNumberField("userLongitude", attraction.getUserLongitude());
+		}
+		if (projection.includes("distance")) {
+			generator.writeNumberField("distance", attraction.getDistance());
+		}
+		if (projection.includes("rewardPoints")) {
+			generator.writeNumberField("rewardPoints", attraction.getRewardPoints());
+		}
+		generator.writeEndObject();
+	}
+
+	private void writeDateField(JsonGenerator generator, String name, Date date) throws IOException {
+		if (date == null) {
+			generator.writeNullField(name);
+		} else {
+			generator.writeStringField(name, DATE_FORMAT.format(date.toInstant()));
+		}
+	}
+
+	private static int end(int size, JsonProjection projection) {
+		return (int) Math.min(size, (long) projection.getOffset() + projection.getLimit());
+	}
+
+	private void write(OutputStream out, JsonWriting writing) {
+		// The generator is not closing the target stream, which belongs to the caller
+		try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)
+				.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+			writing.write(generator);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private byte[] toBytes(Consumer<OutputStream> writing) {
+		try (ByteArrayBuilder out = new ByteArrayBuilder()) {
+			writing.accept(out);
+			return out.toByteArray();
+		}
+	}
+
+	@FunctionalInterface
+	private interface JsonWriting {
+		void write(JsonGenerator generator) throws IOException;
+	}
+}
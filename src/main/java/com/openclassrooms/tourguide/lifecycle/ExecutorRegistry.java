@@ -0,0 +1,241 @@
+package com.openclassrooms.tourguide.lifecycle;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * The thread pools of the application, by name. Services get their pools here instead of creating their own,
+ * so that pools are shared by every instance of a service, use named daemon threads, show up in the health
+ * endpoint and are drained together on shutdown.
+ * In the Spring context the registry is a lifecycle bean stopped after the web server and the tracker: requests
+ * in flight can still submit work, then queued work gets until the drain timeout to finish, for all the pools
+ * together.
+ */
+public class ExecutorRegistry implements SmartLifecycle {
+
+	// Stopped after the web server (DEFAULT_PHASE - 2048), itself stopped after the TourGuideService
+	public static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+	private static final ExecutorRegistry SHARED = new ExecutorRegistry(Duration.ofSeconds(30));
+
+	private final Logger logger = LoggerFactory.getLogger(ExecutorRegistry.class);
+	private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+	private final Map<String, ForkJoinPool> forkJoinPools = new ConcurrentHashMap<>();
+	private final Duration drainTimeout;
+	private volatile boolean running = true;
+
+	/**
+	 * @param drainTimeout Time given to the queued and running tasks to complete on shutdown
+	 */
+	public ExecutorRegistry(Duration drainTimeout) {
+		this.drainTimeout = drainTimeout;
+	}
+
+	/**
+	 * @return Registry of the services created outside of Spring, never drained: its threads are daemons
+	 */
+	public static ExecutorRegistry shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @return The fixed-size pool with this name, created on first use
+	 */
+	public ThreadPoolExecutor getExecutor(String name, int threads) {
+		return getExecutor(name, () -> new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>()));
+	}
+
+	/**
+	 * @return The scheduled pool with this name, created on first use. Its delayed and periodic tasks
+	 * are cancelled on shutdown.
+	 */
+	public ScheduledThreadPoolExecutor getScheduledExecutor(String name, int threads) {
+		return (ScheduledThreadPoolExecutor) getExecutor(name, () -> {
+			ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(threads);
+			scheduler.setRemoveOnCancelPolicy(true);
+			scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+			return scheduler;
+		});
+	}
+
+	/**
+	 * @param factory Creates the pool on first use, or when the previous pool with this name was shut down
+	 * @return The pool with this name, running on named daemon threads
+	 */
+	public ThreadPoolExecutor getExecutor(String name, Supplier<ThreadPoolExecutor> factory) {
+		ThreadPoolExecutor executor = executors.get(name);
+		if (executor != null && !executor.isShutdown()) {
+			return executor;
+		}
+		return executors.compute(name, (key, existing) -> {
+			if (existing != null && !existing.isShutdown()) {
+				return existing;
+			}
+			ThreadPoolExecutor created = factory.get();
+			created.setThreadFactory(daemonThreads(name));
+			return created;
+		});
+	}
+
+	/**
+	 * @return The fork-join pool with this name, created on first use or when the previous one was shut down,
+	 * running on named daemon threads
+	 */
+	public ForkJoinPool getForkJoinPool(String name, int parallelism) {
+		ForkJoinPool pool = forkJoinPools.get(name);
+		if (pool != null && !pool.isShutdown()) {
+			return pool;
+		}
+		return forkJoinPools.compute(name, (key, existing) -> {
+			if (existing != null && !existing.isShutdown()) {
+				return existing;
+			}
+			AtomicInteger threadNumber = new AtomicInteger();
+			return new ForkJoinPool(parallelism, forkJoinPool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+				thread.setName(name + "-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}, null, false);
+		});
+	}
+
+	/**
+	 * Changes the number of threads of a pool. Running and queued tasks are kept: when shrinking,
+	 * the extra threads end once idle.
+	 * @throws IllegalArgumentException if there is no pool with this name
+	 */
+	public void resize(String name, int threads) {
+		ThreadPoolExecutor executor = executors.get(name);
+		if (executor == null) {
+			throw new IllegalArgumentException("Unknown executor: " + name);
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("Executor size must be positive: " + threads);
+		}
+		// The core size can never exceed the maximum size, so the order depends on the direction
+		synchronized (executor) {
+			if (threads > executor.getMaximumPoolSize()) {
+				executor.setMaximumPoolSize(threads);
+				executor.setCorePoolSize(threads);
+			} else {
+				executor.setCorePoolSize(threads);
+				executor.setMaximumPoolSize(threads);
+			}
+		}
+	}
+
+	/**
+	 * @return Read-only view of the pools, by name
+	 */
+	public Map<String, ThreadPoolExecutor> getExecutors() {
+		return Collections.unmodifiableMap(executors);
+	}
+
+	/**
+	 * @return Read-only view of the fork-join pools, by name
+	 */
+	public Map<String, ForkJoinPool> getForkJoinPools() {
+		return Collections.unmodifiableMap(forkJoinPools);
+	}
+
+	public Duration getDrainTimeout() {
+		return drainTimeout;
+	}
+
+	/**
+	 * Shuts down every pool and waits until their tasks complete, for the given time at most.
+	 * Producers are drained before their consumers: first the scheduled pools, e.g. the tracking round,
+	 * then the other pools, then the fork-join pools their tasks split work on.
+	 * The tasks still queued at the deadline are dropped and the running ones interrupted.
+	 * @return true if every pool completed its tasks in time
+	 */
+	public boolean drain(Duration timeout) {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		try {
+			boolean drained = drainExecutors(true, deadline);
+			drained &= drainExecutors(false, deadline);
+			forkJoinPools.values().forEach(ForkJoinPool::shutdown);
+			for (Map.Entry<String, ForkJoinPool> entry : forkJoinPools.entrySet()) {
+				if (!entry.getValue().awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+					entry.getValue().shutdownNow();
+					logger.warn("Fork-join pool " + entry.getKey() + " not drained in time, running tasks cancelled");
+					drained = false;
+				}
+			}
+			return drained;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+			forkJoinPools.values().forEach(ForkJoinPool::shutdownNow);
+			return false;
+		}
+	}
+
+	private boolean drainExecutors(boolean scheduled, long deadline) throws InterruptedException {
+		List<Map.Entry<String, ThreadPoolExecutor>> drained = executors.entrySet().stream()
+				.filter(entry -> entry.getValue() instanceof ScheduledThreadPoolExecutor == scheduled)
+				.toList();
+		drained.forEach(entry -> entry.getValue().shutdown());
+		boolean terminated = true;
+		for (Map.Entry<String, ThreadPoolExecutor> entry : drained) {
+			ThreadPoolExecutor executor = entry.getValue();
+			if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				List<Runnable> dropped = executor.shutdownNow();
+				logger.warn("Executor " + entry.getKey() + " not drained in time: " + dropped.size()
+						+ " queued tasks dropped, " + executor.getActiveCount() + " running tasks interrupted");
+				terminated = false;
+			}
+		}
+		return terminated;
+	}
+
+	@Override
+	public void start() {
+		running = true;
+	}
+
+	@Override
+	public void stop() {
+		logger.info("Draining executors " + executors.keySet() + " and fork-join pools " + forkJoinPools.keySet()
+				+ " within " + drainTimeout);
+		drain(drainTimeout);
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return PHASE;
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger threadNumber = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
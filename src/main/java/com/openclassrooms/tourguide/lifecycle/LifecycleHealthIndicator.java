@@ -0,0 +1,84 @@
+package com.openclassrooms.tourguide.lifecycle;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.Tracker;
+
+/**
+ * "lifecycle" component of the actuator health: state of the tracker and of every registered executor and fork-join pool.
+ * Out of service while shutting down, down if an executor was shut down while the application runs.
+ */
+@Component
+public class LifecycleHealthIndicator implements HealthIndicator {
+
+	private final TourGuideService tourGuideService;
+	private final ExecutorRegistry executorRegistry;
+
+	public LifecycleHealthIndicator(TourGuideService tourGuideService, ExecutorRegistry executorRegistry) {
+		this.tourGuideService = tourGuideService;
+		this.executorRegistry = executorRegistry;
+	}
+
+	@Override
+	public Health health() {
+		Tracker tracker = tourGuideService.tracker;
+		Map<String, Object> trackerDetails = new LinkedHashMap<>();
+		trackerDetails.put("tracking", tracker.isTracking());
+		trackerDetails.put("roundRunning", tracker.isRoundRunning());
+		if (tracker.getLastRoundStartMillis() > 0) {
+			trackerDetails.put("lastRoundStart", Instant.ofEpochMilli(tracker.getLastRoundStartMillis()).toString());
+			trackerDetails.put("lastRoundDurationMs", tracker.getLastRoundDurationMillis());
+			trackerDetails.put("lastRoundUsers", tracker.getLastRoundUsers());
+			trackerDetails.put("lastRoundFailures", tracker.getLastRoundFailures());
+		}
+
+		boolean executorShutDown = false;
+		Map<String, Object> executorDetails = new LinkedHashMap<>();
+		for (Map.Entry<String, ThreadPoolExecutor> entry : executorRegistry.getExecutors().entrySet()) {
+			ThreadPoolExecutor executor = entry.getValue();
+			Map<String, Object> details = new LinkedHashMap<>();
+			details.put("poolSize", executor.getPoolSize());
+			details.put("maximumPoolSize", executor.getMaximumPoolSize());
+			details.put("activeThreads", executor.getActiveCount());
+			details.put("queuedTasks", executor.getQueue().size());
+			details.put("completedTasks", executor.getCompletedTaskCount());
+			details.put("shutdown", executor.isShutdown());
+			executorDetails.put(entry.getKey(), details);
+			executorShutDown |= executor.isShutdown();
+		}
+
+		Map<String, Object> forkJoinDetails = new LinkedHashMap<>();
+		for (Map.Entry<String, ForkJoinPool> entry : executorRegistry.getForkJoinPools().entrySet()) {
+			ForkJoinPool pool = entry.getValue();
+			Map<String, Object> details = new LinkedHashMap<>();
+			details.put("parallelism", pool.getParallelism());
+			details.put("poolSize", pool.getPoolSize());
+			details.put("activeThreads", pool.getActiveThreadCount());
+			details.put("queuedTasks", pool.getQueuedTaskCount());
+			details.put("steals", pool.getStealCount());
+			details.put("shutdown", pool.isShutdown());
+			forkJoinDetails.put(entry.getKey(), details);
+			executorShutDown |= pool.isShutdown();
+		}
+
+		Health.Builder health;
+		if (!tourGuideService.isRunning() || !executorRegistry.isRunning()) {
+			health = Health.outOfService();
+		} else if (executorShutDown) {
+			health = Health.down();
+		} else {
+			health = Health.up();
+		}
+		return health.withDetail("tracker", trackerDetails).withDetail("executors", executorDetails)
+				.withDetail("forkJoinPools", forkJoinDetails).build();
+	}
+}
@@ -0,0 +1,9 @@
+package com.openclassrooms.tourguide.nearby;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * An attraction found by a {@link NearbyQuery}, with its distance to the searched location.
+ */
+public record NearbyMatch(Attraction attraction, double distanceMiles) {
+}
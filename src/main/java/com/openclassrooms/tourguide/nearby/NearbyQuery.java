@@ -0,0 +1,68 @@
+package com.openclassrooms.tourguide.nearby;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.openclassrooms.tourguide.user.UserPreferences;
+
+/**
+ * A nearby attractions search: the attractions within a radius, closest first, optionally restricted to categories.
+ * @param radiusMiles Maximum distance to the attractions, {@link #UNBOUNDED} for any distance
+ * @param limit Maximum number of attractions returned, {@link #NO_LIMIT} for all of them
+ * @param categories Categories the attractions must belong to, empty for any attraction
+ */
+public record NearbyQuery(double radiusMiles, int limit, Set<String> categories) {
+
+	public static final double UNBOUNDED = Double.POSITIVE_INFINITY;
+	public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+	public NearbyQuery {
+		if (radiusMiles < 0 || limit < 0) {
+			throw new IllegalArgumentException("Negative radius or limit");
+		}
+		categories = categories == null ? Set.of() : Set.copyOf(categories);
+	}
+
+	/**
+	 * @return The limit closest attractions within the user's attraction proximity preference
+	 */
+	public static NearbyQuery forUser(UserPreferences preferences, int limit) {
+		return new NearbyQuery(radiusOf(preferences), limit, Set.of());
+	}
+
+	/**
+	 * Query of a nearby attractions request, each missing parameter falling back to the user's preferences or defaults.
+	 * Without limit, all the attractions within the radius are returned when a radius is given,
+	 * otherwise the defaultLimit closest ones.
+	 */
+	public static NearbyQuery of(UserPreferences preferences, Double radiusMiles, Integer limit,
+			Collection<String> categories, int defaultLimit) {
+		double radius = radiusMiles != null ? radiusMiles : radiusOf(preferences);
+		int count = limit != null ? limit : radiusMiles != null ? NO_LIMIT : defaultLimit;
+		return new NearbyQuery(radius, count, categories == null ? Set.of() : Set.copyOf(categories));
+	}
+
+	/**
+	 * @return Canonical form of the query, the same for equal queries whatever the order of the categories
+	 */
+	@Override
+	public String toString() {
+		return "radius=" + radiusMiles + "&limit=" + limit + "&categories=" + categories.stream()
+				.map(category -> URLEncoder.encode(category, StandardCharsets.UTF_8))
+				.sorted()
+				.collect(Collectors.joining(","));
+	}
+
+	public boolean matchesCategory(String category) {
+		return categories.isEmpty() || (category != null && categories.contains(category));
+	}
+
+	// The preference defaults to Integer.MAX_VALUE, which stands for any distance
+	private static double radiusOf(UserPreferences preferences) {
+		int proximity = preferences.getAttractionProximity();
+		return proximity == Integer.MAX_VALUE ? UNBOUNDED : proximity;
+	}
+}
@@ -0,0 +1,9 @@
+package com.openclassrooms.tourguide.nearby;
+
+import gpsUtil.location.Location;
+
+/**
+ * One search of a bulk nearby search: the attractions matching the query around the location.
+ */
+public record NearbyRequest(Location location, NearbyQuery query) {
+}
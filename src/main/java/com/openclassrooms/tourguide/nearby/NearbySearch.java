@@ -0,0 +1,177 @@
+package com.openclassrooms.tourguide.nearby;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.openclassrooms.tourguide.rules.RewardRuleTable;
+import com.openclassrooms.tourguide.spatial.GeoMath;
+import gpsUtil.location.Location;
+
+/**
+ * Answers {@link NearbyQuery} over the attractions of a {@link RewardRuleTable}.
+ * The closest attractions are kept in a bounded max-heap, so the search costs O(n log k) instead of a full sort,
+ * and attractions farther in latitude alone than the radius, or than the current k-th closest, are skipped
+ * without computing their distance.
+ * The heap lives in primitive arrays reused by the searches of a thread, so scanning an attraction allocates
+ * nothing: a search only allocates the matches it returns.
+ */
+public final class NearbySearch {
+
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	private NearbySearch() {
+	}
+
+	/**
+	 * @return The matching attractions, closest first
+	 */
+	public static List<NearbyMatch> search(RewardRuleTable table, Location location, NearbyQuery query) {
+		return search(table, location, query, 0, table.size());
+	}
+
+	/**
+	 * Same search restricted to the attractions of the table between from, inclusive, and to, exclusive.
+	 * The results of consecutive ranges are combined with {@link #merge}.
+	 * @return The matching attractions of the range, closest first
+	 */
+	public static List<NearbyMatch> search(RewardRuleTable table, Location location, NearbyQuery query, int from,
+			int to) {
+		int capacity = Math.min(query.limit(), to - from);
+		if (capacity == 0) {
+			return List.of();
+		}
+		// Max-heap on the distance: the root is the farthest of the closest attractions found so far.
+		// A search runs to completion on its thread, so the scratch arrays are never shared.
+		// We don't keep the arrays of the rare unlimited searches around on every thread.
+		Scratch scratch = capacity <= Scratch.MAX_CAPACITY ? SCRATCH.get() : new Scratch(capacity);
+		scratch.ensureCapacity(capacity);
+		double[] heapDistances = scratch.distances;
+		int[] heapIndexes = scratch.indexes;
+		int heapSize = 0;
+
+		for (int i = from; i < to; i++) {
+			if (!query.matchesCategory(table.getCategory(i))) {
+				continue;
+			}
+			double bound = heapSize == capacity ? Math.min(query.radiusMiles(), heapDistances[0]) : query.radiusMiles();
+			double latitudeMiles = Math.abs(table.getAttraction(i).latitude - location.latitude)
+					* GeoMath.MILES_PER_DEGREE_OF_LATITUDE;
+			if (latitudeMiles > bound) {
+				continue;
+			}
+			double distance = table.distance(i, location);
+			if (distance > query.radiusMiles()) {
+				continue;
+			}
+			if (heapSize < capacity) {
+				heapDistances[heapSize] = distance;
+				heapIndexes[heapSize] = i;
+				siftUp(heapDistances, heapIndexes, heapSize++);
+			} else if (distance < heapDistances[0]) {
+				heapDistances[0] = distance;
+				heapIndexes[0] = i;
+				siftDown(heapDistances, heapIndexes, 0, heapSize);
+			}
+		}
+
+		// We empty the heap from the farthest attraction, filling the result from its end
+		NearbyMatch[] matches = new NearbyMatch[heapSize];
+		for (int last = heapSize - 1; last >= 0; last--) {
+			matches[last] = new NearbyMatch(table.getAttraction(heapIndexes[0]), heapDistances[0]);
+			heapDistances[0] = heapDistances[last];
+			heapIndexes[0] = heapIndexes[last];
+			siftDown(heapDistances, heapIndexes, 0, last);
+		}
+		return List.of(matches);
+	}
+
+	/**
+	 * @param left Results of a search, closest first
+	 * @param right Results of another search, closest first
+	 * @return The closest results of both, at most limit, closest first
+	 */
+	public static List<NearbyMatch> merge(List<NearbyMatch> left, List<NearbyMatch> right, int limit) {
+		if (right.isEmpty() && left.size() <= limit) {
+			return left;
+		}
+		if (left.isEmpty() && right.size() <= limit) {
+			return right;
+		}
+		int size = (int) Math.min(limit, (long) left.size() + right.size());
+		List<NearbyMatch> merged = new ArrayList<>(size);
+		int l = 0;
+		int r = 0;
+		while (merged.size() < size) {
+			if (r == right.size() || (l < left.size() && left.get(l).distanceMiles() <= right.get(r).distanceMiles())) {
+				merged.add(left.get(l++));
+			} else {
+				merged.add(right.get(r++));
+			}
+		}
+		return List.copyOf(merged);
+	}
+
+	// Heap arrays of a thread, grown to the largest capacity it searched with
+	private static final class Scratch {
+		private static final int MAX_CAPACITY = 1024;
+
+		private double[] distances;
+		private int[] indexes;
+
+		private Scratch() {
+			this(16);
+		}
+
+		private Scratch(int capacity) {
+			distances = new double[capacity];
+			indexes = new int[capacity];
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > distances.length) {
+				int length = Math.min(MAX_CAPACITY, Math.max(capacity, distances.length * 2));
+				distances = new double[length];
+				indexes = new int[length];
+			}
+		}
+	}
+
+	private static void siftUp(double[] distances, int[] indexes, int position) {
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (distances[parent] >= distances[position]) {
+				return;
+			}
+			swap(distances, indexes, parent, position);
+			position = parent;
+		}
+	}
+
+	private static void siftDown(double[] distances, int[] indexes, int position, int size) {
+		while (true) {
+			int largest = position;
+			int left = 2 * position + 1;
+			int right = left + 1;
+			if (left < size && distances[left] > distances[largest]) {
+				largest = left;
+			}
+			if (right < size && distances[right] > distances[largest]) {
+				largest = right;
+			}
+			if (largest == position) {
+				return;
+			}
+			swap(distances, indexes, position, largest);
+			position = largest;
+		}
+	}
+
+	private static void swap(double[] distances, int[] indexes, int a, int b) {
+		double distance = distances[a];
+		distances[a] = distances[b];
+		distances[b] = distance;
+		int index = indexes[a];
+		indexes[a] = indexes[b];
+		indexes[b] = index;
+	}
+}
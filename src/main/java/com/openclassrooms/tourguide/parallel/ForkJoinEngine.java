@@ -0,0 +1,209 @@
+package com.openclassrooms.tourguide.parallel;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs work over users x attractions on a dedicated fork-join pool. The work is split in two dimensions:
+ * by users first, then by attractions once a block holds a single user, until the blocks are small enough.
+ * The engine measures the time spent per (user, attraction) pair: it sizes the blocks from it, and runs
+ * small workloads in the calling thread, where forking would cost more than it saves.
+ * The calling thread waits for the result, so a pool thread of another executor never competes with
+ * the common pool.
+ */
+public class ForkJoinEngine {
+
+	/**
+	 * Processes the attractions of the range [from, to) for an item.
+	 */
+	@FunctionalInterface
+	public interface RangeTask<T> {
+		void process(T item, int from, int to);
+	}
+
+	/**
+	 * Computes the result of the attractions of the range [from, to) for an item.
+	 */
+	@FunctionalInterface
+	public interface RangeFunction<T, R> {
+		R apply(T item, int from, int to);
+	}
+
+	/**
+	 * Combines the results of two consecutive ranges of attractions for an item.
+	 */
+	@FunctionalInterface
+	public interface RangeMerge<T, R> {
+		R merge(T item, R left, R right);
+	}
+
+	// Workloads estimated below this duration run in the calling thread
+	private static final long SEQUENTIAL_THRESHOLD_NANOS = 200_000;
+	// Estimated duration of a block run without further splitting
+	private static final long LEAF_NANOS = 50_000;
+	private static final double INITIAL_NANOS_PER_PAIR = 1_000;
+	// Weight of the latest measure in the moving average of the time per pair
+	private static final double SMOOTHING = 0.1;
+
+	private final ForkJoinPool pool;
+	private volatile double nanosPerPair = INITIAL_NANOS_PER_PAIR;
+	private final LongAdder sequentialRuns = new LongAdder();
+	private final LongAdder parallelRuns = new LongAdder();
+
+	public ForkJoinEngine(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Runs the task over every item and every attraction of [0, attractionCount), each pair exactly once.
+	 * A task may be called concurrently for the same item, with disjoint ranges.
+	 */
+	public <T> void forEach(List<T> items, int attractionCount, RangeTask<T> task) {
+		map(items, attractionCount, (item, from, to) -> {
+			task.process(item, from, to);
+			return null;
+		}, (item, left, right) -> null);
+	}
+
+	/**
+	 * Computes a result per item over the attractions of [0, attractionCount). When the attractions of an item
+	 * are split, the results of consecutive ranges are combined with merge.
+	 * @return The results, in the order of the items
+	 */
+	@SuppressWarnings("unchecked")
+	public <T, R> List<R> map(List<T> items, int attractionCount, RangeFunction<T, R> function,
+			RangeMerge<T, R> merge) {
+		Object[] results = new Object[items.size()];
+		long pairs = (long) items.size() * attractionCount;
+		if (pairs == 0) {
+			return (List<R>) Arrays.asList(results);
+		}
+		double perPair = nanosPerPair;
+		long leafPairs = Math.max(1, (long) (LEAF_NANOS / perPair));
+		Block<T, R> block = new Block<>(items, function, merge, results, 0, items.size(), attractionCount, leafPairs);
+		if (pairs * perPair < SEQUENTIAL_THRESHOLD_NANOS || pool.getParallelism() == 1) {
+			sequentialRuns.increment();
+			block.runLeaf();
+		} else if (ForkJoinTask.getPool() == pool) {
+			// Already in the engine, e.g. nested work: the block forks in the current pool
+			parallelRuns.increment();
+			block.invoke();
+		} else {
+			parallelRuns.increment();
+			pool.invoke(block);
+		}
+		return (List<R>) Arrays.asList(results);
+	}
+
+	/**
+	 * @return Moving average of the time spent per (item, attraction) pair, in nanoseconds
+	 */
+	public double getNanosPerPair() {
+		return nanosPerPair;
+	}
+
+	public long getSequentialRuns() {
+		return sequentialRuns.sum();
+	}
+
+	public long getParallelRuns() {
+		return parallelRuns.sum();
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	// Concurrent updates may lose a measure, which doesn't matter for an average
+	private void record(long pairs, long nanos) {
+		double measured = (double) nanos / pairs;
+		nanosPerPair = nanosPerPair * (1 - SMOOTHING) + measured * SMOOTHING;
+	}
+
+	// The items [userFrom, userTo) against all attractions
+	private final class Block<T, R> extends RecursiveAction {
+		private final List<T> items;
+		private final RangeFunction<T, R> function;
+		private final RangeMerge<T, R> merge;
+		private final Object[] results;
+		private final int userFrom;
+		private final int userTo;
+		private final int attractionCount;
+		private final long leafPairs;
+
+		private Block(List<T> items, RangeFunction<T, R> function, RangeMerge<T, R> merge, Object[] results,
+				int userFrom, int userTo, int attractionCount, long leafPairs) {
+			this.items = items;
+			this.function = function;
+			this.merge = merge;
+			this.results = results;
+			this.userFrom = userFrom;
+			this.userTo = userTo;
+			this.attractionCount = attractionCount;
+			this.leafPairs = leafPairs;
+		}
+
+		@Override
+		protected void compute() {
+			int users = userTo - userFrom;
+			if ((long) users * attractionCount <= leafPairs) {
+				runLeaf();
+			} else if (users > 1) {
+				int middle = (userFrom + userTo) >>> 1;
+				invokeAll(new Block<>(items, function, merge, results, userFrom, middle, attractionCount, leafPairs),
+						new Block<>(items, function, merge, results, middle, userTo, attractionCount, leafPairs));
+			} else {
+				results[userFrom] = new AttractionRange<>(items.get(userFrom), function, merge, 0, attractionCount,
+						leafPairs).compute();
+			}
+		}
+
+		private void runLeaf() {
+			long start = System.nanoTime();
+			for (int user = userFrom; user < userTo; user++) {
+				results[user] = function.apply(items.get(user), 0, attractionCount);
+			}
+			record((long) (userTo - userFrom) * attractionCount, System.nanoTime() - start);
+		}
+	}
+
+	// The attractions [from, to) of a single item
+	private final class AttractionRange<T, R> extends RecursiveTask<R> {
+		private final T item;
+		private final RangeFunction<T, R> function;
+		private final RangeMerge<T, R> merge;
+		private final int from;
+		private final int to;
+		private final long leafPairs;
+
+		private AttractionRange(T item, RangeFunction<T, R> function, RangeMerge<T, R> merge, int from, int to,
+				long leafPairs) {
+			this.item = item;
+			this.function = function;
+			this.merge = merge;
+			this.from = from;
+			this.to = to;
+			this.leafPairs = leafPairs;
+		}
+
+		@Override
+		protected R compute() {
+			if (to - from <= leafPairs) {
+				long start = System.nanoTime();
+				R result = function.apply(item, from, to);
+				record(to - from, System.nanoTime() - start);
+				return result;
+			}
+			int middle = (from + to) >>> 1;
+			AttractionRange<T, R> right = new AttractionRange<>(item, function, merge, middle, to, leafPairs);
+			right.fork();
+			R left = new AttractionRange<>(item, function, merge, from, middle, leafPairs).compute();
+			return merge.merge(item, left, right.join());
+		}
+	}
+}
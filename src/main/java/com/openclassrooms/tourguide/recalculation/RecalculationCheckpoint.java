@@ -0,0 +1,150 @@
+package com.openclassrooms.tourguide.recalculation;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Progress of a reward recalculation run: the partitions of users already recalculated, and totals.
+ * The rules of the run are kept with it, as a run can only be resumed with the same rules.
+ * Immutable: each completed partition gives a new checkpoint, written to disk atomically so that a crash
+ * leaves either the previous checkpoint or the new one.
+ */
+public final class RecalculationCheckpoint {
+
+	private final String runId;
+	private final long startedAtMillis;
+	// Description of the reward rules the run recalculates with, see RewardRuleSet.describe
+	private final String rules;
+	private final int partitions;
+	private final BitSet completedPartitions;
+	private final long usersProcessed;
+	private final long rewardsEarned;
+
+	private RecalculationCheckpoint(String runId, long startedAtMillis, String rules, int partitions,
+			BitSet completedPartitions, long usersProcessed, long rewardsEarned) {
+		this.runId = runId;
+		this.startedAtMillis = startedAtMillis;
+		this.rules = rules;
+		this.partitions = partitions;
+		this.completedPartitions = completedPartitions;
+		this.usersProcessed = usersProcessed;
+		this.rewardsEarned = rewardsEarned;
+	}
+
+	/**
+	 * @param rules Description of the reward rules of the run
+	 * @return Checkpoint of a new run, with no partition completed
+	 */
+	public static RecalculationCheckpoint start(int partitions, String rules) {
+		if (partitions < 1) {
+			throw new IllegalArgumentException("Partition count must be positive: " + partitions);
+		}
+		return new RecalculationCheckpoint(UUID.randomUUID().toString(), System.currentTimeMillis(), rules,
+				partitions, new BitSet(partitions), 0, 0);
+	}
+
+	/**
+	 * @return The checkpoint with this partition completed too
+	 */
+	public RecalculationCheckpoint withCompletedPartition(int partition, long partitionUsers, long partitionRewards) {
+		BitSet completed = (BitSet) completedPartitions.clone();
+		completed.set(partition);
+		return new RecalculationCheckpoint(runId, startedAtMillis, rules, partitions, completed,
+				usersProcessed + partitionUsers, rewardsEarned + partitionRewards);
+	}
+
+	public String getRunId() {
+		return runId;
+	}
+
+	public long getStartedAtMillis() {
+		return startedAtMillis;
+	}
+
+	/**
+	 * @return Description of the reward rules of the run, null for a checkpoint written before they were kept
+	 */
+	public String getRules() {
+		return rules;
+	}
+
+	public int getPartitions() {
+		return partitions;
+	}
+
+	public boolean isCompleted(int partition) {
+		return completedPartitions.get(partition);
+	}
+
+	public int getCompletedPartitions() {
+		return completedPartitions.cardinality();
+	}
+
+	public boolean isComplete() {
+		return completedPartitions.cardinality() == partitions;
+	}
+
+	public long getUsersProcessed() {
+		return usersProcessed;
+	}
+
+	public long getRewardsEarned() {
+		return rewardsEarned;
+	}
+
+	/**
+	 * Writes the checkpoint to a temporary file, then moves it over the file.
+	 */
+	public void write(Path file) {
+		Properties properties = new Properties();
+		properties.setProperty("runId", runId);
+		properties.setProperty("startedAt", Long.toString(startedAtMillis));
+		properties.setProperty("rules", rules);
+		properties.setProperty("partitions", Integer.toString(partitions));
+		properties.setProperty("completed", Base64.getEncoder().encodeToString(completedPartitions.toByteArray()));
+		properties.setProperty("usersProcessed", Long.toString(usersProcessed));
+		properties.setProperty("rewardsEarned", Long.toString(rewardsEarned));
+		try {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+			try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+				properties.store(writer, "Reward recalculation checkpoint");
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot write recalculation checkpoint " + file, e);
+		}
+	}
+
+	/**
+	 * @return The checkpoint written to the file, or null if there is none
+	 */
+	public static RecalculationCheckpoint read(Path file) {
+		if (!Files.exists(file)) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot read recalculation checkpoint " + file, e);
+		}
+		return new RecalculationCheckpoint(properties.getProperty("runId"),
+				Long.parseLong(properties.getProperty("startedAt")),
+				properties.getProperty("rules"),
+				Integer.parseInt(properties.getProperty("partitions")),
+				BitSet.valueOf(Base64.getDecoder().decode(properties.getProperty("completed"))),
+				Long.parseLong(properties.getProperty("usersProcessed")),
+				Long.parseLong(properties.getProperty("rewardsEarned")));
+	}
+}
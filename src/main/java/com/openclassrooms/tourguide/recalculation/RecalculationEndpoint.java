@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide.recalculation;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint driving the {@link RewardRecalculationJob}: GET /actuator/recalculation shows its progress,
+ * POST /actuator/recalculation/{action} with action start, pause or resume controls it, and throttle
+ * with {"usersPerSecond": ...} limits its rate.
+ */
+@Component
+@Endpoint(id = "recalculation")
+public class RecalculationEndpoint {
+
+	private final RewardRecalculationJob job;
+
+	public RecalculationEndpoint(RewardRecalculationJob job) {
+		this.job = job;
+	}
+
+	@ReadOperation
+	public RecalculationStatus status() {
+		return job.getStatus();
+	}
+
+	@WriteOperation
+	public RecalculationStatus control(@Selector String action, @Nullable Double usersPerSecond) {
+		return switch (action) {
+			case "start" -> job.startRun();
+			case "pause" -> job.pause();
+			case "resume" -> job.resume();
+			case "throttle" -> {
+				if (usersPerSecond == null || usersPerSecond < 0) {
+					throw new InvalidEndpointRequestException("usersPerSecond must be positive or 0",
+							"usersPerSecond must be positive or 0");
+				}
+				yield job.throttle(usersPerSecond);
+			}
+			default -> throw new InvalidEndpointRequestException("Unknown action: " + action, "Unknown action: " + action);
+		};
+	}
+}
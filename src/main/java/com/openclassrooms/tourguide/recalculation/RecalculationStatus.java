@@ -0,0 +1,15 @@
+package com.openclassrooms.tourguide.recalculation;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of the reward recalculation job, as shown by the recalculation actuator endpoint.
+ * @param runId Identifier of the current or last run, null if none ran
+ * @param usersProcessed Users of the completed partitions, plus those of the partition in progress
+ * @param failures Users whose recalculation failed in this run: their partitions stay to be done
+ * @param usersPerSecond Throttle of the job, 0 when unlimited
+ */
+public record RecalculationStatus(RewardRecalculationJob.State state, String runId, Instant startedAt,
+		int partitions, int completedPartitions, long usersProcessed, long rewardsEarned, long failures,
+		double usersPerSecond) {
+}
@@ -0,0 +1,406 @@
+package com.openclassrooms.tourguide.recalculation;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import com.openclassrooms.tourguide.config.TourGuideProperties;
+import com.openclassrooms.tourguide.lifecycle.ExecutorRegistry;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Recalculates the rewards of every user in the background, after the reward rules changed.
+ * Users are split in partitions by user name, so the same user always falls in the same partition, and each completed
+ * partition is checkpointed: a run stopped by a shutdown or a crash resumes at startup with the partitions left.
+ * The job can be paused, resumed and throttled while running. Recalculating a user twice is harmless, as an
+ * attraction already rewarded is skipped, so a partition interrupted midway is simply done again.
+ * A checkpoint is only resumed with the rules it was written with: when the rules changed since, e.g. the
+ * proximity buffer of the configuration, the run starts over with the current rules.
+ */
+public class RewardRecalculationJob implements SmartLifecycle {
+
+	public enum State { IDLE, RUNNING, PAUSED, STOPPING }
+
+	private static final String CHECKPOINT_FILE = "recalculation.checkpoint";
+
+	private final Logger logger = LoggerFactory.getLogger(RewardRecalculationJob.class);
+	private final TourGuideService tourGuideService;
+	private final RewardsService rewardsService;
+	private final ExecutorRegistry executorRegistry;
+	private final ExecutorService coordinator;
+	private final int partitions;
+	// Null when checkpoints are only kept in memory
+	private final Path checkpointFile;
+
+	private final Object monitor = new Object();
+	private volatile State state = State.IDLE;
+	private volatile RecalculationCheckpoint checkpoint;
+	private volatile double usersPerSecond;
+	private final AtomicLong partitionUsers = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private Future<?> run;
+	// Incremented by each launch, so that a run still stopping never takes over the state of the next one
+	private volatile int generation;
+	private volatile boolean running;
+
+	// Pacing of the throttle, only used by the coordinator thread
+	private long nextUserNanos;
+
+	public RewardRecalculationJob(TourGuideService tourGuideService, RewardsService rewardsService,
+			ExecutorRegistry executorRegistry, TourGuideProperties properties) {
+		this.tourGuideService = tourGuideService;
+		this.rewardsService = rewardsService;
+		this.executorRegistry = executorRegistry;
+		this.coordinator = executorRegistry.getExecutor("reward-recalculation", 1);
+		TourGuideProperties.Recalculation recalculation = properties.getRecalculation();
+		this.partitions = recalculation.getPartitions();
+		this.usersPerSecond = recalculation.getUsersPerSecond();
+		String directory = recalculation.getCheckpointDirectory();
+		this.checkpointFile = directory.isBlank() ? null : Path.of(directory).resolve(CHECKPOINT_FILE);
+		this.checkpoint = checkpointFile == null ? null : readCheckpoint(checkpointFile);
+	}
+
+	/**
+	 * Starts a new run over every user, from the first partition. A run in progress is stopped first:
+	 * its remaining partitions would be recalculated with rules that changed again.
+	 */
+	public synchronized RecalculationStatus startRun() {
+		stopRun(Duration.ofMinutes(1));
+		launchNew();
+		return getStatus();
+	}
+
+	/**
+	 * Like startRun, without waiting for the run in progress to stop, e.g. from a request thread.
+	 * @return Completes with the status once the new run is started
+	 */
+	public CompletableFuture<RecalculationStatus> startRunAsync() {
+		// Not on the coordinator: startRun waits for the run the coordinator is busy with
+		return CompletableFuture.supplyAsync(this::startRun, executorRegistry.getExecutor("recalculation-restarts", 1))
+				.whenComplete((status, e) -> {
+					if (e != null) {
+						logger.error("Reward recalculation could not be started", e);
+					}
+				});
+	}
+
+	/**
+	 * Pauses the run after the users being recalculated.
+	 */
+	public RecalculationStatus pause() {
+		synchronized (monitor) {
+			if (state == State.RUNNING) {
+				state = State.PAUSED;
+				logger.info("Reward recalculation paused");
+			}
+		}
+		return getStatus();
+	}
+
+	/**
+	 * Resumes a paused run, or the partitions left by an interrupted or failed run.
+	 */
+	public synchronized RecalculationStatus resume() {
+		synchronized (monitor) {
+			if (state == State.PAUSED) {
+				state = State.RUNNING;
+				monitor.notifyAll();
+				logger.info("Reward recalculation resumed");
+				return getStatus();
+			}
+		}
+		RecalculationCheckpoint current = checkpoint;
+		if (state == State.IDLE && current != null && !current.isComplete()) {
+			resumeOrRestart(current);
+		}
+		return getStatus();
+	}
+
+	/**
+	 * @param usersPerSecond Maximum users recalculated per second, 0 for no limit
+	 */
+	public RecalculationStatus throttle(double usersPerSecond) {
+		if (usersPerSecond < 0 || Double.isNaN(usersPerSecond)) {
+			throw new IllegalArgumentException("Users per second must be positive or 0: " + usersPerSecond);
+		}
+		this.usersPerSecond = usersPerSecond;
+		return getStatus();
+	}
+
+	public RecalculationStatus getStatus() {
+		RecalculationCheckpoint current = checkpoint;
+		if (current == null) {
+			return new RecalculationStatus(state, null, null, partitions, 0, 0, 0, failures.get(), usersPerSecond);
+		}
+		long inProgress = state == State.IDLE ? 0 : partitionUsers.get();
+		return new RecalculationStatus(state, current.getRunId(), Instant.ofEpochMilli(current.getStartedAtMillis()),
+				current.getPartitions(), current.getCompletedPartitions(), current.getUsersProcessed() + inProgress,
+				current.getRewardsEarned(), failures.get(), usersPerSecond);
+	}
+
+	/**
+	 * @return true while a run is in progress, paused or not
+	 */
+	public boolean isActive() {
+		return state != State.IDLE;
+	}
+
+	/**
+	 * Waits for the current run to end.
+	 * @return true if no run is in progress anymore
+	 */
+	public boolean awaitIdle(Duration timeout) {
+		Future<?> current;
+		synchronized (this) {
+			current = run;
+		}
+		if (current == null) {
+			return true;
+		}
+		try {
+			current.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			logger.error("Reward recalculation failed", e.getCause());
+		} catch (TimeoutException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Resumes the run left unfinished by the previous process, if any.
+	 */
+	@Override
+	public synchronized void start() {
+		running = true;
+		RecalculationCheckpoint current = checkpoint;
+		if (state == State.IDLE && current != null && !current.isComplete()) {
+			resumeOrRestart(current);
+		}
+	}
+
+	/**
+	 * Stops the run after the users being recalculated. The completed partitions are checkpointed already.
+	 */
+	@Override
+	public synchronized void stop() {
+		stopRun(executorRegistry.getDrainTimeout());
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	private void stopRun(Duration timeout) {
+		synchronized (monitor) {
+			if (state == State.IDLE) {
+				return;
+			}
+			state = State.STOPPING;
+			monitor.notifyAll();
+		}
+		if (!awaitIdle(timeout)) {
+			logger.warn("Reward recalculation still stopping after " + timeout);
+		}
+	}
+
+	private void resumeOrRestart(RecalculationCheckpoint current) {
+		String rules = rewardsService.getRewardRules().describe();
+		if (rules.equals(current.getRules())) {
+			logger.info("Resuming reward recalculation " + current.getRunId() + ": " + current.getCompletedPartitions()
+					+ " of " + current.getPartitions() + " partitions done");
+			launch(current);
+		} else {
+			// Its completed partitions were recalculated with other rules, so they are not done for the current ones
+			logger.warn("Reward rules changed since reward recalculation " + current.getRunId() + " was checkpointed,"
+					+ " starting over: " + current.getRules() + " then, " + rules + " now");
+			launchNew();
+		}
+	}
+
+	private void launchNew() {
+		RecalculationCheckpoint started = RecalculationCheckpoint.start(partitions,
+				rewardsService.getRewardRules().describe());
+		save(started);
+		launch(started);
+	}
+
+	private void launch(RecalculationCheckpoint start) {
+		int launched;
+		synchronized (monitor) {
+			launched = ++generation;
+			state = State.RUNNING;
+		}
+		failures.set(0);
+		checkpoint = start;
+		run = coordinator.submit(() -> {
+			try {
+				runPartitions(start, launched);
+			} catch (RuntimeException e) {
+				logger.error("Reward recalculation " + start.getRunId() + " failed", e);
+			} finally {
+				synchronized (monitor) {
+					if (generation == launched) {
+						state = State.IDLE;
+					}
+				}
+			}
+		});
+	}
+
+	private void runPartitions(RecalculationCheckpoint start, int launched) {
+		List<List<User>> partitioned = partition(tourGuideService.getAllUsers(), start.getPartitions());
+		RecalculationCheckpoint current = start;
+		logger.info("Reward recalculation " + start.getRunId() + " started, " + current.getCompletedPartitions()
+				+ " of " + current.getPartitions() + " partitions done");
+		for (int partition = 0; partition < current.getPartitions(); partition++) {
+			if (current.isCompleted(partition)) {
+				continue;
+			}
+			long failuresBefore = failures.get();
+			long rewards = recalculatePartition(partitioned.get(partition), launched);
+			if (rewards < 0 || generation != launched) {
+				logger.info("Reward recalculation " + start.getRunId() + " stopped at partition " + partition);
+				return;
+			}
+			// A partition with failures stays to be done, by a later resume
+			if (failures.get() == failuresBefore) {
+				current = current.withCompletedPartition(partition, partitioned.get(partition).size(), rewards);
+				save(current);
+			}
+		}
+		if (current.isComplete()) {
+			logger.info("Reward recalculation " + start.getRunId() + " completed: " + current.getUsersProcessed()
+					+ " users, " + current.getRewardsEarned() + " rewards earned");
+		} else {
+			logger.warn("Reward recalculation " + start.getRunId() + " ended with " + failures.get()
+					+ " failures, " + (current.getPartitions() - current.getCompletedPartitions()) + " partitions left");
+		}
+	}
+
+	/**
+	 * Recalculates the users of a partition on the rewards pool, at most one per thread of the pool at a time.
+	 * @return Rewards earned, or -1 if the run was stopped before the end of the partition
+	 */
+	private long recalculatePartition(List<User> users, int launched) {
+		ThreadPoolExecutor workers = executorRegistry.getExecutors().get("rewards");
+		int slots = workers == null ? 1 : Math.max(1, workers.getMaximumPoolSize());
+		Semaphore inFlight = new Semaphore(slots);
+		AtomicLong rewards = new AtomicLong();
+		partitionUsers.set(0);
+		boolean stopped = false;
+		try {
+			for (User user : users) {
+				if (!awaitRunning(launched)) {
+					stopped = true;
+					break;
+				}
+				pace();
+				inFlight.acquire();
+				Runnable task = () -> {
+					try {
+						int before = user.getUserRewards().size();
+						rewardsService.recalculateRewards(user);
+						rewards.addAndGet(user.getUserRewards().size() - before);
+					} catch (RuntimeException e) {
+						failures.incrementAndGet();
+						logger.error("Reward recalculation failed for " + user.getUserName(), e);
+					} finally {
+						partitionUsers.incrementAndGet();
+						inFlight.release();
+					}
+				};
+				if (workers == null) {
+					task.run();
+				} else {
+					workers.execute(task);
+				}
+			}
+			// We wait for the users in flight, so that the checkpoint never counts unfinished work
+			inFlight.acquire(slots);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		} catch (RejectedExecutionException e) {
+			// The pool is shutting down
+			return -1;
+		}
+		return stopped ? -1 : rewards.get();
+	}
+
+	// Blocks while paused, returns false when stopping or replaced by a newer run
+	private boolean awaitRunning(int launched) throws InterruptedException {
+		synchronized (monitor) {
+			while (state == State.PAUSED && generation == launched) {
+				monitor.wait();
+			}
+			return state == State.RUNNING && generation == launched;
+		}
+	}
+
+	private void pace() throws InterruptedException {
+		double rate = usersPerSecond;
+		long now = System.nanoTime();
+		if (rate <= 0) {
+			nextUserNanos = now;
+			return;
+		}
+		if (nextUserNanos < now) {
+			nextUserNanos = now;
+		}
+		TimeUnit.NANOSECONDS.sleep(nextUserNanos - now);
+		nextUserNanos += (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+	}
+
+	// An unreadable checkpoint only loses the progress of the last run, it must not prevent the startup
+	private RecalculationCheckpoint readCheckpoint(Path file) {
+		try {
+			return RecalculationCheckpoint.read(file);
+		} catch (RuntimeException e) {
+			logger.warn("Ignoring unreadable recalculation checkpoint " + file, e);
+			return null;
+		}
+	}
+
+	private void save(RecalculationCheckpoint completed) {
+		checkpoint = completed;
+		if (checkpointFile != null) {
+			completed.write(checkpointFile);
+		}
+	}
+
+	// String hash codes are specified, so a user keeps its partition across restarts
+	private static List<List<User>> partition(List<User> users, int partitions) {
+		List<List<User>> partitioned = new ArrayList<>(partitions);
+		for (int i = 0; i < partitions; i++) {
+			partitioned.add(new ArrayList<>());
+		}
+		for (User user : users) {
+			partitioned.get(Math.floorMod(user.getUserName().hashCode(), partitions)).add(user);
+		}
+		return partitioned;
+	}
+}
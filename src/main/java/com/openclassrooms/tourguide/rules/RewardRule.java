@@ -0,0 +1,61 @@
+package com.openclassrooms.tourguide.rules;
+
+import java.time.Duration;
+
+/**
+ * Conditions for a visit to earn an attraction's reward, and how the reward points are weighted.
+ * Immutable: the with methods return modified copies.
+ */
+public final class RewardRule {
+
+	private final double radiusMiles;
+	private final Duration timeWindow;
+	private final double pointsMultiplier;
+
+	private RewardRule(double radiusMiles, Duration timeWindow, double pointsMultiplier) {
+		this.radiusMiles = radiusMiles;
+		this.timeWindow = timeWindow;
+		this.pointsMultiplier = pointsMultiplier;
+	}
+
+	/**
+	 * @param radiusMiles Maximum distance between the visited location and the attraction
+	 * @return Rule without time window and with a points multiplier of 1
+	 */
+	public static RewardRule withinMiles(double radiusMiles) {
+		return new RewardRule(radiusMiles, null, 1);
+	}
+
+	public RewardRule withRadiusMiles(double radiusMiles) {
+		return new RewardRule(radiusMiles, timeWindow, pointsMultiplier);
+	}
+
+	/**
+	 * @param timeWindow Only visits younger than this count, null for any visit
+	 */
+	public RewardRule withTimeWindow(Duration timeWindow) {
+		return new RewardRule(radiusMiles, timeWindow, pointsMultiplier);
+	}
+
+	public RewardRule withPointsMultiplier(double pointsMultiplier) {
+		return new RewardRule(radiusMiles, timeWindow, pointsMultiplier);
+	}
+
+	public double getRadiusMiles() {
+		return radiusMiles;
+	}
+
+	public Duration getTimeWindow() {
+		return timeWindow;
+	}
+
+	public double getPointsMultiplier() {
+		return pointsMultiplier;
+	}
+
+	@Override
+	public String toString() {
+		return "RewardRule[radiusMiles=" + radiusMiles + ", timeWindow=" + timeWindow + ", pointsMultiplier="
+				+ pointsMultiplier + "]";
+	}
+}
@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide.rules;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * The reward rules: a default rule, rules per attraction category and rules per attraction.
+ * The most specific rule applies: attraction, then category, then default.
+ * Immutable: the with methods return modified copies. Compiled into a {@link RewardRuleTable} for evaluation.
+ */
+public final class RewardRuleSet {
+
+	private final RewardRule defaultRule;
+	private final Map<String, RewardRule> categoryRules;
+	private final Map<String, RewardRule> attractionRules;
+	private final Map<String, String> attractionCategories;
+
+	private RewardRuleSet(RewardRule defaultRule, Map<String, RewardRule> categoryRules,
+			Map<String, RewardRule> attractionRules, Map<String, String> attractionCategories) {
+		this.defaultRule = defaultRule;
+		this.categoryRules = categoryRules;
+		this.attractionRules = attractionRules;
+		this.attractionCategories = attractionCategories;
+	}
+
+	public static RewardRuleSet withDefaultRule(RewardRule defaultRule) {
+		return new RewardRuleSet(defaultRule, Map.of(), Map.of(), Map.of());
+	}
+
+	public RewardRuleSet withDefault(RewardRule defaultRule) {
+		return new RewardRuleSet(defaultRule, categoryRules, attractionRules, attractionCategories);
+	}
+
+	public RewardRuleSet withCategoryRule(String category, RewardRule rule) {
+		return new RewardRuleSet(defaultRule, put(categoryRules, category, rule), attractionRules,
+				attractionCategories);
+	}
+
+	public RewardRuleSet withAttractionRule(String attractionName, RewardRule rule) {
+		return new RewardRuleSet(defaultRule, categoryRules, put(attractionRules, attractionName, rule),
+				attractionCategories);
+	}
+
+	/**
+	 * Puts an attraction in a category, e.g. "theme park" or "museum".
+	 */
+	public RewardRuleSet withAttractionCategory(String attractionName, String category) {
+		return new RewardRuleSet(defaultRule, categoryRules, attractionRules,
+				put(attractionCategories, attractionName, category));
+	}
+
+	public RewardRule getDefaultRule() {
+		return defaultRule;
+	}
+
+	/**
+	 * @return Category of the attraction, or null if it has none
+	 */
+	public String getCategory(String attractionName) {
+		return attractionCategories.get(attractionName);
+	}
+
+	/**
+	 * @return The most specific rule for the attraction
+	 */
+	public RewardRule ruleFor(Attraction attraction) {
+		RewardRule rule = attractionRules.get(attraction.attractionName);
+		if (rule == null) {
+			String category = attractionCategories.get(attraction.attractionName);
+			rule = category == null ? null : categoryRules.get(category);
+		}
+		return rule == null ? defaultRule : rule;
+	}
+
+	/**
+	 * @return Canonical description of the rules, the same for rule sets built in any order, e.g. to tell whether
+	 * a checkpointed recalculation ran with the current rules
+	 */
+	public String describe() {
+		return "default=" + defaultRule + "; categories=" + new TreeMap<>(categoryRules) + "; attractions="
+				+ new TreeMap<>(attractionRules) + "; attractionCategories=" + new TreeMap<>(attractionCategories);
+	}
+
+	public RewardRuleTable compile(List<Attraction> attractions) {
+		return new RewardRuleTable(this, attractions);
+	}
+
+	private static <V> Map<String, V> put(Map<String, V> map, String key, V value) {
+		Map<String, V> copy = new HashMap<>(map);
+		copy.put(key, value);
+		return Map.copyOf(copy);
+	}
+}
@@ -0,0 +1,134 @@
+package com.openclassrooms.tourguide.rules;
+
+import java.util.List;
+
+import com.openclassrooms.tourguide.spatial.GeoMath;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * A {@link RewardRuleSet} compiled for a list of attractions: the rule thresholds and the trigonometry of each
+ * attraction's coordinates are precomputed in arrays indexed like the attraction list.
+ * Evaluating a visit is then plain arithmetic, without allocation or map lookup.
+ * Immutable, so a table can be swapped atomically while calculations are in progress.
+ */
+public final class RewardRuleTable {
+
+	// Time windows of rules without one
+	private static final long NO_WINDOW = Long.MAX_VALUE;
+
+	private final RewardRuleSet ruleSet;
+	private final List<Attraction> attractions;
+	private final double[] radiusMiles;
+	private final long[] windowMillis;
+	private final double[] pointsMultipliers;
+	private final String[] categories;
+	private final double[] sinLatitudes;
+	private final double[] cosLatitudes;
+	private final double[] longitudes;
+	private final double maxRadiusMiles;
+
+	RewardRuleTable(RewardRuleSet ruleSet, List<Attraction> attractions) {
+		this.ruleSet = ruleSet;
+		this.attractions = List.copyOf(attractions);
+		int size = attractions.size();
+		radiusMiles = new double[size];
+		windowMillis = new long[size];
+		pointsMultipliers = new double[size];
+		categories = new String[size];
+		sinLatitudes = new double[size];
+		cosLatitudes = new double[size];
+		longitudes = new double[size];
+		double maxRadius = 0;
+		for (int i = 0; i < size; i++) {
+			Attraction attraction = attractions.get(i);
+			RewardRule rule = ruleSet.ruleFor(attraction);
+			radiusMiles[i] = rule.getRadiusMiles();
+			windowMillis[i] = rule.getTimeWindow() == null ? NO_WINDOW : rule.getTimeWindow().toMillis();
+			pointsMultipliers[i] = rule.getPointsMultiplier();
+			categories[i] = ruleSet.getCategory(attraction.attractionName);
+			double latitude = Math.toRadians(attraction.latitude);
+			sinLatitudes[i] = Math.sin(latitude);
+			cosLatitudes[i] = Math.cos(latitude);
+			longitudes[i] = Math.toRadians(attraction.longitude);
+			maxRadius = Math.max(maxRadius, rule.getRadiusMiles());
+		}
+		maxRadiusMiles = maxRadius;
+	}
+
+	public RewardRuleSet getRuleSet() {
+		return ruleSet;
+	}
+
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	public int size() {
+		return attractions.size();
+	}
+
+	public Attraction getAttraction(int index) {
+		return attractions.get(index);
+	}
+
+	/**
+	 * @return Category of the attraction, or null if it has none
+	 */
+	public String getCategory(int index) {
+		return categories[index];
+	}
+
+	public double getRadiusMiles(int index) {
+		return radiusMiles[index];
+	}
+
+	/**
+	 * @return The largest radius of all rules, an upper bound for any reward eligibility check
+	 */
+	public double getMaxRadiusMiles() {
+		return maxRadiusMiles;
+	}
+
+	/**
+	 * @param nowMillis Current time, the reference of the time windows
+	 * @return true if the visit is close enough to the attraction, and recent enough, to earn its reward
+	 */
+	public boolean isEligible(int index, VisitedLocation visitedLocation, long nowMillis) {
+		return isEligible(index, visitedLocation.location.latitude, visitedLocation.location.longitude,
+				visitedLocation.timeVisited.getTime(), nowMillis);
+	}
+
+	/**
+	 * Same as {@link #isEligible(int, VisitedLocation, long)} for a visit given as primitives, e.g. an off-heap record.
+	 */
+	public boolean isEligible(int index, double latitude, double longitude, long timeVisitedMillis, long nowMillis) {
+		long window = windowMillis[index];
+		if (window != NO_WINDOW && timeVisitedMillis < nowMillis - window) {
+			return false;
+		}
+		return distance(index, latitude, longitude) <= radiusMiles[index];
+	}
+
+	/**
+	 * @return Reward points of the attraction weighted by its rule's multiplier
+	 */
+	public int applyMultiplier(int index, int rewardPoints) {
+		double multiplier = pointsMultipliers[index];
+		return multiplier == 1 ? rewardPoints : (int) Math.round(rewardPoints * multiplier);
+	}
+
+	/**
+	 * Same distance as RewardsService.getDistance, with the attraction side precomputed.
+	 * @return Distance in statute miles between the attraction and the location
+	 */
+	public double distance(int index, Location location) {
+		return distance(index, location.latitude, location.longitude);
+	}
+
+	public double distance(int index, double latitudeDegrees, double longitudeDegrees) {
+		return GeoMath.distance(sinLatitudes[index], cosLatitudes[index], longitudes[index], latitudeDegrees,
+				longitudeDegrees);
+	}
+}
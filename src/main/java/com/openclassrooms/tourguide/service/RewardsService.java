@@ -1,9 +1,35 @@
 package com.openclassrooms.tourguide.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import com.openclassrooms.tourguide.cache.BoundedCache;
+import com.openclassrooms.tourguide.config.TourGuideProperties;
+import com.openclassrooms.tourguide.history.LocationHistoryStore;
+import com.openclassrooms.tourguide.lifecycle.ExecutorRegistry;
+import com.openclassrooms.tourguide.nearby.NearbyMatch;
+import com.openclassrooms.tourguide.nearby.NearbyQuery;
+import com.openclassrooms.tourguide.nearby.NearbyRequest;
+import com.openclassrooms.tourguide.nearby.NearbySearch;
+import com.openclassrooms.tourguide.parallel.ForkJoinEngine;
+import com.openclassrooms.tourguide.rules.RewardRule;
+import com.openclassrooms.tourguide.rules.RewardRuleSet;
+import com.openclassrooms.tourguide.rules.RewardRuleTable;
+import com.openclassrooms.tourguide.spatial.CellCandidates;
+import com.openclassrooms.tourguide.spatial.GeoMath;
+import com.openclassrooms.tourguide.spatial.HilbertGrid;
+import com.openclassrooms.tourguide.tracing.Span;
+import com.openclassrooms.tourguide.tracing.Tracer;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
@@ -14,34 +40,61 @@ import com.openclassrooms.tourguide.user.UserReward;
 
 @Service
 public class RewardsService {
-    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+	private Logger logger = LoggerFactory.getLogger(RewardsService.class);
 
-	// Proximity configuration
-    private int defaultProximityBuffer = 10;
-	private int proximityBuffer = defaultProximityBuffer;
-	private int attractionProximityRange = 200;
+	// Proximity configuration, in miles
+    private final int defaultProximityBuffer;
+	private volatile int attractionProximityRange;
 
 	// External service dependencies
 	private final GpsUtil gpsUtil;
 	private final RewardCentral rewardsCentral;
 
 	// Test mode flag (synchronous processing when true)
-	boolean testMode = true;
+	boolean testMode;
 
-	// Thread pool for parallel processing: ensures minimum 50 threads or 2x available processors
-	private static final int THREAD_POOL_SIZE = Math.max(50, Runtime.getRuntime().availableProcessors() * 2);
-	private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+	// Thread pool for parallel processing, sized by the tourguide.pools.rewards property
+	private final ThreadPoolExecutor executor;
+
+	// Splits users x attractions work on its own fork-join pool, sized by the tourguide.pools.fork-join property
+	private final ForkJoinEngine forkJoinEngine;
+
+	// Reward points prefetching: number of closest attractions warmed up per location, and a small bounded pool
+	// dropping the oldest pending prefetch when saturated, so that prefetching never delays tracking
+	private static final int PREFETCH_ATTRACTION_COUNT = 5;
+	private static final int PREFETCH_QUEUE_CAPACITY = 10_000;
+	private final ThreadPoolExecutor prefetchExecutor;
+	private final Set<String> pendingPrefetches = ConcurrentHashMap.newKeySet();
+	private volatile boolean prefetchEnabled = true;
 
 	// Concurrent caches to improve performance and reduce redundant calculations
 	// Distance cache to prevents recalculating distances for same location pairs
-	private final ConcurrentHashMap<String, Double> distanceCache = new ConcurrentHashMap<>();
+	private final BoundedCache<String, Double> distanceCache;
 
 	// Reward points cache to prevents redundant calls to RewardCentral if calculated already
-	private final ConcurrentHashMap<String, Integer> rewardPointsCache = new ConcurrentHashMap<>();
+	private final BoundedCache<String, Integer> rewardPointsCache;
 
 	// Preloaded attractions list to avoid repeated fetching
 	private final List<Attraction> attractions;
 
+	// Reward rules compiled for the attractions. Replaced as a whole when the rules change, and read once
+	// per calculation, so a rule change never affects a calculation in progress
+	private volatile RewardRuleTable ruleTable;
+
+	// Archive of the locations no longer kept on the users, null when locations are never archived
+	private volatile LocationHistoryStore locationHistory;
+
+	// Spatial batching of the reward sweeps: users are ordered by the cell of their latest location, cells of
+	// about 0.35 by 0.7 degrees, and their locations only checked against the candidate attractions of their cells
+	private static final HilbertGrid SWEEP_GRID = new HilbertGrid(9);
+	private volatile boolean spatialBatching;
+	private volatile CellCandidates cellCandidates;
+
+	// Status of an attraction for the user being processed in a spatial batch
+	private static final byte UNCHECKED = 0;
+	private static final byte TO_EARN = 1;
+	private static final byte EARNED = 2;
+
 	/**
 	 * Retrieves cached distance between two locations or calculates it if not present.
 	 * @param loc1 First location
@@ -56,11 +109,33 @@ public class RewardsService {
 
 	// Constructor with attraction preloaded to avoid repeated fetching
 	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
+		this(gpsUtil, rewardCentral, ExecutorRegistry.shared(), new TourGuideProperties());
+	}
+
+	/**
+	 * Creates the service with its pools taken from the given registry, configured by the given properties.
+	 */
+	@Autowired
+	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, ExecutorRegistry executorRegistry,
+			TourGuideProperties properties) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsCentral = rewardCentral;
+		this.testMode = properties.isTestMode();
+		this.defaultProximityBuffer = properties.getRewards().getProximityBuffer();
+		this.attractionProximityRange = properties.getRewards().getAttractionProximityRange();
+		this.spatialBatching = properties.getRewards().isSpatialBatching();
+		this.distanceCache = new BoundedCache<>(properties.getCache().getDistanceMaxEntries());
+		this.rewardPointsCache = new BoundedCache<>(properties.getCache().getRewardPointsMaxEntries());
+		this.executor = executorRegistry.getExecutor("rewards", properties.getPools().getRewards());
+		int prefetchPoolSize = properties.getPools().getRewardPrefetch();
+		this.prefetchExecutor = executorRegistry.getExecutor("reward-prefetch",
+				() -> createPrefetchExecutor(prefetchPoolSize));
+		this.forkJoinEngine = new ForkJoinEngine(
+				executorRegistry.getForkJoinPool("rewards-fork-join", properties.getPools().getForkJoin()));
 
 		// Preload attractions to avoid repeated calls
 		this.attractions = gpsUtil.getAttractions();
+		this.ruleTable = RewardRuleSet.withDefaultRule(RewardRule.withinMiles(defaultProximityBuffer)).compile(attractions);
 	}
 
 	/**
@@ -68,126 +143,518 @@ public class RewardsService {
 	 * @param user User to process rewards for
 	 */
 	public void calculateRewards(User user) {
-		List<VisitedLocation> userLocations = new ArrayList<>(user.getVisitedLocations());
+		try (Span span = Tracer.startTrace("calculateRewards", user.getUserId())) {
+			// Immutable snapshots of the locations and the rules, safe to use while they change
+			List<VisitedLocation> userLocations = user.getVisitedLocations();
+			RewardRuleTable table = ruleTable;
+			long now = System.currentTimeMillis();
+
+			// Conditional parallelization: sequential for tests, for production the engine splits the attractions
+			// only when they are worth it, so a user processed by a sweep batch usually stays on the batch's thread
+			if (testMode) {
+				for (int i = 0; i < table.size(); i++) {
+					processAttraction(user, userLocations, table, i, now);
+				}
+			} else {
+				// The engine only runs the eligibility scan, pure CPU work sized for its pool. The reward points
+				// are fetched afterwards on the calling thread, so RewardCentral never blocks an engine thread
+				VisitedLocation[] eligible = new VisitedLocation[table.size()];
+				IntConsumer scan = Tracer.wrap(i -> eligible[i] = findEligibleLocation(user, userLocations, table, i, now));
+				forkJoinEngine.forEach(List.of(user), table.size(), (ignored, from, to) -> {
+					for (int i = from; i < to; i++) {
+						scan.accept(i);
+					}
+				});
+				for (int i = 0; i < eligible.length; i++) {
+					if (eligible[i] != null) {
+						addReward(user, table, i, eligible[i]);
+					}
+				}
+			}
+		}
+	}
 
-		// Conditional parallelization: sequential for tests, parallel for production
-		if (testMode) {
-			attractions.forEach(attraction -> processAttraction(user, userLocations, attraction));
-		} else {
-			attractions.parallelStream().forEach(attraction -> processAttraction(user, userLocations, attraction));
+	/**
+	 * Like calculateRewards, over the whole history of the user: the archived locations first, scanned off-heap,
+	 * then the ones kept on the user. calculateRewards only sees the latter, which is enough when it runs on
+	 * every new location, but not after a rule change.
+	 * @param user User to process rewards for
+	 */
+	public void recalculateRewards(User user) {
+		LocationHistoryStore history = locationHistory;
+		if (history == null) {
+			calculateRewards(user);
+			return;
+		}
+		try (Span span = Tracer.startTrace("recalculateRewards", user.getUserId())) {
+			// Locations are archived before leaving the user, so the snapshot and the archive together miss none
+			List<VisitedLocation> userLocations = user.getVisitedLocations();
+			RewardRuleTable table = ruleTable;
+			long now = System.currentTimeMillis();
+			UUID userId = user.getUserId();
+			for (int i = 0; i < table.size(); i++) {
+				Attraction attraction = table.getAttraction(i);
+				if (user.getState().hasRewardFor(attraction.attractionName)) {
+					continue;
+				}
+				int index = i;
+				int archived = history.findFirst(userId,
+						(latitude, longitude, time) -> table.isEligible(index, latitude, longitude, time, now));
+				if (archived >= 0) {
+					addReward(user, table, i, history.get(userId, archived));
+				} else {
+					processAttraction(user, userLocations, table, i, now);
+				}
+			}
 		}
 	}
 
 	/**
-	 * Processes a single attraction for reward eligibility.
+	 * Processes a single attraction for reward eligibility, without allocating unless a reward is earned.
 	 * Optimization: Checks if user hasn't already earned reward for this attraction.
 	 */
-	private void processAttraction(User user, List<VisitedLocation> userLocations, Attraction attraction) {
-		// We check if the attraction isn't visited already
-		if (user.getUserRewards().stream().noneMatch(r ->
-				r.attraction.attractionName.equals(attraction.attractionName))) {
+	private void processAttraction(User user, List<VisitedLocation> userLocations, RewardRuleTable table, int index,
+			long now) {
+		VisitedLocation visitedLocation = findEligibleLocation(user, userLocations, table, index, now);
+		if (visitedLocation != null) {
+			addReward(user, table, index, visitedLocation);
+		}
+	}
 
-			// We loop on all visited locations by user, then we add the first location under proximityBuffer range
-			for (VisitedLocation visitedLocation : userLocations) {
-				if (getCachedDistance(attraction, visitedLocation.location) <= proximityBuffer) {
-					user.addUserReward(new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user)));
-					break; // We add only the first location under proximityBuffer range
+	/**
+	 * @return The first location matching the rule of the attraction, null when there is none or when the
+	 * attraction is already rewarded. Never calls RewardCentral
+	 */
+	private VisitedLocation findEligibleLocation(User user, List<VisitedLocation> userLocations, RewardRuleTable table,
+			int index, long now) {
+		try (Span span = Tracer.startSpan("processAttraction")) {
+			// We check if the attraction isn't visited already
+			if (user.getState().hasRewardFor(table.getAttraction(index).attractionName)) {
+				return null;
+			}
+			// We loop on all visited locations by user, then we return the first location matching the attraction's rule
+			for (int i = 0; i < userLocations.size(); i++) {
+				VisitedLocation visitedLocation = userLocations.get(i);
+				if (table.isEligible(index, visitedLocation, now)) {
+					return visitedLocation;
 				}
 			}
+			return null;
 		}
 	}
 
+	// Fetches the reward points of an eligible attraction and rewards the user with it
+	private void addReward(User user, RewardRuleTable table, int index, VisitedLocation visitedLocation) {
+		Attraction attraction = table.getAttraction(index);
+		int rewardPoints = table.applyMultiplier(index, getRewardPoints(attraction, user));
+		user.addUserReward(new UserReward(visitedLocation, attraction, rewardPoints));
+	}
+
 	/**
 	 * Processes rewards calculation for multiple users in parallel batches.
+	 * With spatial batching, users are first ordered along a Hilbert curve by their latest location, so that
+	 * a batch holds neighbours sharing the candidate attractions of their cells.
+	 * Interrupting the calling thread cancels the batches not completed yet, and returns with the interrupt
+	 * status set.
 	 * @param users List of users to process
 	 */
 	public void calculateRewardsForUsers(List<User> users) {
-		// We use CountDownLatch to manage parallel task completion
-		CountDownLatch latch = new CountDownLatch(users.size());
+		CellCandidates candidates = spatialBatching ? cellCandidates() : null;
+		List<User> orderedUsers = candidates == null ? users : orderByCell(users, candidates.getGrid());
+
+		// We use CountDownLatch to manage parallel task completion, counted down per user to report the progress
+		CountDownLatch latch = new CountDownLatch(orderedUsers.size());
 
 		// Determine batch size to prevent overwhelming the thread pool
-		int batchSize = Math.max(1, users.size() / THREAD_POOL_SIZE);
+		int batchSize = Math.max(1, orderedUsers.size() / executor.getMaximumPoolSize());
 
 		// Process users in batches for efficient parallel processing
-		for (int i = 0; i < users.size(); i += batchSize) {
-			int end = Math.min(i + batchSize, users.size());
-			List<User> batch = users.subList(i, end);
+		List<Future<?>> batches = new ArrayList<>();
+		for (int i = 0; i < orderedUsers.size(); i += batchSize) {
+			int end = Math.min(i + batchSize, orderedUsers.size());
+			List<User> batch = orderedUsers.subList(i, end);
 
 			// We submit batch task processing
-			executor.submit(() -> {
+			batches.add(executor.submit(() -> {
+				AtomicInteger processed = new AtomicInteger();
+				Runnable userDone = () -> {
+					processed.incrementAndGet();
+					latch.countDown();
+				};
 				try {
-					for (User user : batch) {
-						calculateRewards(user);
+					if (candidates == null) {
+						for (User user : batch) {
+							// A cancelled batch stops at the next user
+							if (Thread.currentThread().isInterrupted()) {
+								break;
+							}
+							calculateRewards(user);
+							userDone.run();
+						}
+					} else {
+						calculateRewardsInCells(batch, candidates, userDone);
 					}
+				} catch (RuntimeException e) {
+					// A submitted task would swallow the exception
+					logger.error("Reward calculation failed for a batch of " + batch.size() + " users", e);
 				} finally {
-					// Count down latch for each processed user
-					// We liberate the ressources
-					for (int j = 0; j < batch.size(); j++) {
+					// We count down the users the batch did not get to, so the latch never waits for them
+					for (int j = processed.get(); j < batch.size(); j++) {
 						latch.countDown();
 					}
 				}
-			});
+			}));
 		}
 
-		// Wait for all tasks to complete with a timeout
+		// We wait for every task, however long it takes: giving up would return with users not processed.
+		// Progress is logged so that a slow sweep is not mistaken for a stuck one. Interrupting the caller
+		// is the way out, e.g. on a hung RewardCentral: the batches not completed are cancelled
 		try {
-			latch.await(20, TimeUnit.MINUTES);  // Fail-safe timeout in 20 minutes
+			while (!latch.await(1, TimeUnit.MINUTES)) {
+				logger.info("Reward calculation in progress, " + latch.getCount() + " of " + orderedUsers.size()
+						+ " users left");
+			}
 		} catch (InterruptedException e) {
+			batches.forEach(batch -> batch.cancel(true));
+			logger.warn("Reward calculation interrupted, " + latch.getCount() + " of " + orderedUsers.size()
+					+ " users left");
 			Thread.currentThread().interrupt();
 		}
 	}
 
+	/**
+	 * Same result as calculateRewards on each user, but each location is only checked against the candidate
+	 * attractions of its cell. Locations are visited in order, so each attraction is still rewarded with its
+	 * first eligible location.
+	 */
+	private void calculateRewardsInCells(List<User> batch, CellCandidates candidates, Runnable userDone) {
+		RewardRuleTable table = candidates.getTable();
+		HilbertGrid grid = candidates.getGrid();
+		long now = System.currentTimeMillis();
+		byte[] statuses = new byte[table.size()];
+		// Neighbouring users mostly share their cell, so we keep the last one at hand
+		int lastCell = -1;
+		int[] cellAttractions = null;
+		for (User user : batch) {
+			if (Thread.currentThread().isInterrupted()) {
+				return;
+			}
+			try (Span span = Tracer.startTrace("calculateRewards", user.getUserId())) {
+				Arrays.fill(statuses, UNCHECKED);
+				List<VisitedLocation> userLocations = user.getVisitedLocations();
+				for (int i = 0; i < userLocations.size(); i++) {
+					VisitedLocation visitedLocation = userLocations.get(i);
+					int cell = grid.cell(visitedLocation.location.latitude, visitedLocation.location.longitude);
+					if (cell != lastCell) {
+						cellAttractions = candidates.forCell(cell);
+						lastCell = cell;
+					}
+					for (int index : cellAttractions) {
+						if (statuses[index] == UNCHECKED) {
+							boolean earned = user.getState().hasRewardFor(table.getAttraction(index).attractionName);
+							statuses[index] = earned ? EARNED : TO_EARN;
+						}
+						if (statuses[index] == TO_EARN && table.isEligible(index, visitedLocation, now)) {
+							addReward(user, table, index, visitedLocation);
+							statuses[index] = EARNED;
+						}
+					}
+				}
+			}
+			userDone.run();
+		}
+	}
+
+	// Candidates of the current rules, rebuilt after a rule change
+	private CellCandidates cellCandidates() {
+		RewardRuleTable table = ruleTable;
+		CellCandidates candidates = cellCandidates;
+		if (candidates == null || candidates.getTable() != table) {
+			candidates = new CellCandidates(table, SWEEP_GRID);
+			cellCandidates = candidates;
+		}
+		return candidates;
+	}
+
+	// Sorts the users by the cell of their latest location, users without location last
+	private static List<User> orderByCell(List<User> users, HilbertGrid grid) {
+		// We sort primitive keys holding the cell in the high half and the position in the list in the low half
+		long[] keys = new long[users.size()];
+		for (int i = 0; i < keys.length; i++) {
+			List<VisitedLocation> visitedLocations = users.get(i).getVisitedLocations();
+			long cell = Integer.MAX_VALUE;
+			if (!visitedLocations.isEmpty()) {
+				Location location = visitedLocations.get(visitedLocations.size() - 1).location;
+				cell = grid.cell(location.latitude, location.longitude);
+			}
+			keys[i] = (cell << 32) | i;
+		}
+		Arrays.sort(keys);
+		User[] orderedUsers = new User[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			orderedUsers[i] = users.get((int) keys[i]);
+		}
+		return Arrays.asList(orderedUsers);
+	}
+
 	/**
 	 * Retrieves cached reward points or fetches from RewardCentral.
 	 * @return Reward points for (attraction, user) pair
 	 */
 	public int getRewardPoints(Attraction attraction, User user) {
 		// A unique key to store cached reward points by pairs of (Attraction, user)
-		String key = attraction.attractionId + "_" + user.getUserId();
+		String key = rewardPointsKey(attraction, user);
 
-		return rewardPointsCache.computeIfAbsent(key, k ->
-				rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId()));
+		try (Span span = Tracer.startSpan("getRewardPoints")) {
+			// RewardCentral is slow: it is called outside of the cache's locks, not to delay the other pairs
+			return rewardPointsCache.load(key, k -> {
+				try (Span rewardCentralSpan = Tracer.startSpan("rewardCentral.getAttractionRewardPoints")) {
+					return fetchRewardPoints(attraction, user);
+				}
+			});
+		}
+	}
+
+	// RewardCentral blocks: on a fork-join thread, e.g. a caller in a parallel stream, the pool is told so that
+	// it can start a spare thread instead of losing one of its CPU-sized workers for the whole call
+	private int fetchRewardPoints(Attraction attraction, User user) {
+		if (!ForkJoinTask.inForkJoinPool()) {
+			return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+		}
+		RewardPointsBlocker blocker = new RewardPointsBlocker(attraction, user);
+		try {
+			ForkJoinPool.managedBlock(blocker);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while fetching reward points", e);
+		}
+		return blocker.rewardPoints;
+	}
+
+	private final class RewardPointsBlocker implements ForkJoinPool.ManagedBlocker {
+		private final Attraction attraction;
+		private final User user;
+		private int rewardPoints;
+		private boolean done;
+
+		private RewardPointsBlocker(Attraction attraction, User user) {
+			this.attraction = attraction;
+			this.user = user;
+		}
+
+		@Override
+		public boolean block() {
+			rewardPoints = rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+			done = true;
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return done;
+		}
 	}
 
 	/**
-	 * Calculates distance between two points using Haversine formula.
-	 * @return Distance in statute miles
+	 * Returns the closest attractions to a location, sorted by distance.
+	 * @param location Reference location
+	 * @param count Maximum number of attractions to return
+	 * @return Up to count attractions, closest first
 	 */
-	public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
+	public List<Attraction> getClosestAttractions(Location location, int count) {
+		return findNearbyAttractions(location, new NearbyQuery(NearbyQuery.UNBOUNDED, count, Set.of())).stream()
+				.map(NearbyMatch::attraction)
+				.toList();
+	}
+
+	/**
+	 * Searches the attractions around a location, with the categories of the current reward rules.
+	 * @return The attractions matching the query, closest first, with their distance
+	 */
+	public List<NearbyMatch> findNearbyAttractions(Location location, NearbyQuery query) {
+		return NearbySearch.search(ruleTable, location, query);
+	}
 
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                               + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+	/**
+	 * Searches the attractions around many locations at once, on the fork-join engine: split by request,
+	 * then by attractions for a large catalog.
+	 * @return The results of each request, in the order of the requests
+	 */
+	public List<List<NearbyMatch>> findNearbyAttractions(List<NearbyRequest> requests) {
+		RewardRuleTable table = ruleTable;
+		return forkJoinEngine.map(requests, table.size(),
+				(request, from, to) -> NearbySearch.search(table, request.location(), request.query(), from, to),
+				(request, left, right) -> NearbySearch.merge(left, right, request.query().limit()));
+	}
 
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+	/**
+	 * @return Engine running the users x attractions work of this service
+	 */
+	public ForkJoinEngine getForkJoinEngine() {
+		return forkJoinEngine;
 	}
 
-	// Cached method for checking attraction proximity
-	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
-		return getCachedDistance(attraction, location) <= attractionProximityRange;
+	/**
+	 * Asynchronously loads the reward points of the attractions closest to a location,
+	 * so that a following nearby attractions request finds them cached.
+	 * Already cached or pending pairs are skipped, and the oldest pending prefetch is dropped when the pool is saturated.
+	 * @param user User whose reward points are loaded
+	 * @param location Latest location of the user
+	 */
+	public void prefetchRewardPoints(User user, Location location) {
+		if (!prefetchEnabled) {
+			return;
+		}
+		NearbyQuery query = NearbyQuery.forUser(user.getUserPreferences(), PREFETCH_ATTRACTION_COUNT);
+		for (NearbyMatch match : findNearbyAttractions(location, query)) {
+			Attraction attraction = match.attraction();
+			String key = rewardPointsKey(attraction, user);
+			if (!rewardPointsCache.containsKey(key) && pendingPrefetches.add(key)) {
+				prefetchExecutor.execute(() -> {
+					try {
+						getRewardPoints(attraction, user);
+					} catch (RuntimeException e) {
+						logger.debug("Reward points prefetch failed for " + key, e);
+					} finally {
+						pendingPrefetches.remove(key);
+					}
+				});
+			}
+		}
 	}
 
-	// Cached method for checking proximity to a specific attraction
-	private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-		return getCachedDistance(attraction, visitedLocation.location) <= proximityBuffer;
+	/**
+	 * Prefetches reward points around the last location of every user active since the given date.
+	 * Used as a warmup job at startup, returns immediately.
+	 * @param users Users to warm up
+	 * @param activeSince Users whose last location is older are skipped
+	 * @return Number of users whose reward points are being prefetched
+	 */
+	public int warmUpRewardPoints(List<User> users, Date activeSince) {
+		int warmedUp = 0;
+		for (User user : users) {
+			List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+			if (visitedLocations.isEmpty()) {
+				continue;
+			}
+			VisitedLocation lastLocation = user.getLastVisitedLocation();
+			if (!lastLocation.timeVisited.before(activeSince)) {
+				prefetchRewardPoints(user, lastLocation.location);
+				warmedUp++;
+			}
+		}
+		return warmedUp;
+	}
+
+	/**
+	 * Enables or disables reward points prefetching (enabled by default).
+	 */
+	public void setPrefetchEnabled(boolean prefetchEnabled) {
+		this.prefetchEnabled = prefetchEnabled;
+	}
+
+	private String rewardPointsKey(Attraction attraction, User user) {
+		return attraction.attractionId + "_" + user.getUserId();
 	}
 
+	private static ThreadPoolExecutor createPrefetchExecutor(int poolSize) {
+		ThreadPoolExecutor prefetchExecutor = new ThreadPoolExecutor(poolSize, poolSize,
+				30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(PREFETCH_QUEUE_CAPACITY),
+				new ThreadPoolExecutor.DiscardOldestPolicy());
+		// Idle prefetch threads are released
+		prefetchExecutor.allowCoreThreadTimeOut(true);
+		return prefetchExecutor;
+	}
+
+	/**
+	 * Calculates the great-circle distance between two points, see {@link GeoMath}.
+	 * @return Distance in statute miles
+	 */
+	public double getDistance(Location loc1, Location loc2) {
+		return GeoMath.distance(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude);
+	}
+
+	// Cached method for checking attraction proximity
+	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
+		return getCachedDistance(attraction, location) <= attractionProximityRange;
+	}
 
 	// Getter for preloaded attractions
 	public List<Attraction> getAttractions() {
 		return attractions;
 	}
 
-	public void setProximityBuffer(int proximityBuffer) {
-		this.proximityBuffer = proximityBuffer;
+	/**
+	 * @param locationHistory Archive of the users' older locations, scanned by recalculateRewards
+	 */
+	public void setLocationHistory(LocationHistoryStore locationHistory) {
+		this.locationHistory = locationHistory;
+	}
+
+	/**
+	 * Replaces the reward rules. The rules are compiled, then swapped atomically:
+	 * calculations in progress finish with the previous rules.
+	 */
+	public synchronized void setRewardRules(RewardRuleSet ruleSet) {
+		ruleTable = ruleSet.compile(attractions);
+	}
+
+	public RewardRuleSet getRewardRules() {
+		return ruleTable.getRuleSet();
+	}
+
+	/**
+	 * Changes the radius of the default reward rule.
+	 */
+	public synchronized void setProximityBuffer(int proximityBuffer) {
+		RewardRuleSet ruleSet = getRewardRules();
+		setRewardRules(ruleSet.withDefault(ruleSet.getDefaultRule().withRadiusMiles(proximityBuffer)));
+	}
+
+	public synchronized void setDefaultProximityBuffer() {
+		setProximityBuffer(defaultProximityBuffer);
+	}
+
+	/**
+	 * @return Radius of the default reward rule, in miles
+	 */
+	public double getProximityBuffer() {
+		return getRewardRules().getDefaultRule().getRadiusMiles();
+	}
+
+	/**
+	 * Enables or disables the spatial batching of calculateRewardsForUsers.
+	 */
+	public void setSpatialBatching(boolean spatialBatching) {
+		this.spatialBatching = spatialBatching;
+	}
+
+	public boolean isSpatialBatching() {
+		return spatialBatching;
+	}
+
+	public void setAttractionProximityRange(int attractionProximityRange) {
+		this.attractionProximityRange = attractionProximityRange;
+	}
+
+	public int getAttractionProximityRange() {
+		return attractionProximityRange;
+	}
+
+	public void setRewardPointsCacheMaxEntries(int maxEntries) {
+		rewardPointsCache.setMaxEntries(maxEntries);
+	}
+
+	public int getRewardPointsCacheMaxEntries() {
+		return rewardPointsCache.getMaxEntries();
+	}
+
+	public void setDistanceCacheMaxEntries(int maxEntries) {
+		distanceCache.setMaxEntries(maxEntries);
 	}
 
-	public void setDefaultProximityBuffer() {
-		proximityBuffer = defaultProximityBuffer;
+	public int getDistanceCacheMaxEntries() {
+		return distanceCache.getMaxEntries();
 	}
 
 }
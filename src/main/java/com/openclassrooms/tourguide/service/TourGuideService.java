@@ -1,17 +1,40 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.cache.BoundedCache;
+import com.openclassrooms.tourguide.config.TourGuideProperties;
+import com.openclassrooms.tourguide.dto.AttractionVisitsDTO;
+import com.openclassrooms.tourguide.dto.LeaderboardEntryDTO;
 import com.openclassrooms.tourguide.dto.NearByAttractionDTO;
+import com.openclassrooms.tourguide.dto.VisitorDTO;
+import com.openclassrooms.tourguide.nearby.NearbyMatch;
+import com.openclassrooms.tourguide.nearby.NearbyQuery;
+import com.openclassrooms.tourguide.nearby.NearbyRequest;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.LocationDistribution;
+import com.openclassrooms.tourguide.helper.UserDataGenerator;
+import com.openclassrooms.tourguide.history.LocationHistoryStore;
+import com.openclassrooms.tourguide.index.LocationTimeline;
+import com.openclassrooms.tourguide.index.RewardsLeaderboard;
+import com.openclassrooms.tourguide.lifecycle.ExecutorRegistry;
+import com.openclassrooms.tourguide.tracing.Span;
+import com.openclassrooms.tourguide.tracing.Tracer;
 import com.openclassrooms.tourguide.tracker.Tracker;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserEventBus;
+import com.openclassrooms.tourguide.user.UserRegistry;
 import com.openclassrooms.tourguide.user.UserReward;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.IntStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
@@ -21,26 +44,52 @@ import tripPricer.Provider;
 import tripPricer.TripPricer;
 
 @Service
-public class TourGuideService {
+public class TourGuideService implements SmartLifecycle {
 	private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
 	private final GpsUtil gpsUtil;
 	private final RewardsService rewardsService;
-	private final TripPricer tripPricer = new TripPricer();
+	private final TripPricer tripPricer;
 	public final Tracker tracker;
 
 	// Test mode flag (synchronous processing when true)
-	boolean testMode = true;
+	boolean testMode;
 
-	// Thread pool for parallel processing: ensures minimum 50 threads or 2x available processors
-	private static final int THREAD_POOL_SIZE = Math.max(50, Runtime.getRuntime().availableProcessors() * 2);
-	private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+	// Thread pool for parallel processing, sized by the tourguide.pools.tracking property
+	private final TourGuideProperties properties;
+	private final ExecutorRegistry executorRegistry;
+	private final ExecutorService executor;
+	private volatile boolean running;
 
-	// Preloaded attractions to avoid repeated fetching
-	private final List<Attraction> attractions;
+	// Number of attractions returned by getNearByAttractions by default
+	public static final int NEARBY_ATTRACTION_COUNT = 5;
+
+	// Users seen within this period are considered active by the reward points warmup
+	private static final long ACTIVE_USER_DAYS = 7;
+
+	// Events of registered users are published on this bus, feeding the aggregate indexes
+	private final UserEventBus userEventBus = new UserEventBus();
+	private final RewardsLeaderboard rewardsLeaderboard = new RewardsLeaderboard();
+	private final LocationTimeline locationTimeline;
+
+	// Last nearby attractions computed per user, with the location they were computed for
+	private final BoundedCache<UUID, NearbyAttractions> nearbyAttractionsMemo;
+
+	// Off-heap archive of the older locations, null to keep every location on the users
+	private volatile LocationHistoryStore locationHistory;
+	// Locations kept on each user once older ones are archived
+	private volatile int onHeapLocations = Integer.MAX_VALUE;
 
 	// Allows manual control of reward processing used for testing
 	private boolean disableAutoRewardCalculation = false;
 
+	public void setNearbyAttractionsCacheMaxEntries(int maxEntries) {
+		nearbyAttractionsMemo.setMaxEntries(maxEntries);
+	}
+
+	public int getNearbyAttractionsCacheMaxEntries() {
+		return nearbyAttractionsMemo.getMaxEntries();
+	}
+
 	/**
 	 * Controls automatic reward calculation during location tracking.
 	 * @param disableAutoRewardCalculation When true, skips reward processing (used for performance testing).
@@ -50,11 +99,39 @@ public class TourGuideService {
 	}
 
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+		this(gpsUtil, rewardsService, new TripPricer());
+	}
+
+	/**
+	 * Creates the service with an explicit TripPricer, so load tests can plug in a fake implementation.
+	 */
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer) {
+		this(gpsUtil, rewardsService, tripPricer, ExecutorRegistry.shared());
+	}
+
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer,
+			ExecutorRegistry executorRegistry) {
+		this(gpsUtil, rewardsService, tripPricer, executorRegistry, new TourGuideProperties());
+	}
+
+	/**
+	 * Creates the service with its pools taken from the given registry, configured by the given properties.
+	 * The tracker only starts with the service's lifecycle, see {@link #start()}.
+	 */
+	@Autowired
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer,
+			ExecutorRegistry executorRegistry, TourGuideProperties properties) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsService = rewardsService;
-
-		// Preload attractions one time to avoid repeated calls
-		this.attractions = rewardsService.getAttractions();
+		this.tripPricer = tripPricer;
+		this.properties = properties;
+		this.testMode = properties.isTestMode();
+		this.executorRegistry = executorRegistry;
+		this.executor = executorRegistry.getExecutor("tracking", properties.getPools().getTracking());
+		this.nearbyAttractionsMemo = new BoundedCache<>(properties.getCache().getNearbyMaxEntries());
+		userEventBus.subscribe(rewardsLeaderboard);
+		this.locationTimeline = new LocationTimeline(properties.getHistory().getTimelineDays());
+		userEventBus.subscribe(locationTimeline);
 
 		Locale.setDefault(Locale.US);
 
@@ -64,8 +141,68 @@ public class TourGuideService {
 			initializeInternalUsers();
 			logger.debug("Finished initializing users");
 		}
-		tracker = new Tracker(this);
-		addShutDownHook();
+		tracker = new Tracker(this, executorRegistry.getScheduledExecutor("tracker", 1));
+		tracker.setPollingInterval(properties.getTracker().getPollingInterval());
+	}
+
+	/**
+	 * Starts the tracker.
+	 */
+	@Override
+	public void start() {
+		tracker.startTracking();
+		running = true;
+	}
+
+	/**
+	 * Stops the tracker and waits for its current round, within the registry's drain timeout.
+	 * Reward calculations still queued are drained afterwards, with the executors.
+	 */
+	@Override
+	public void stop() {
+		if (!tracker.stopTracking(executorRegistry.getDrainTimeout())) {
+			logger.warn("Tracking round still running after " + executorRegistry.getDrainTimeout());
+		}
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Archives the older locations of the users in the store, keeping between onHeapLocations and twice as many
+	 * locations on each user, so that the heap doesn't grow with the location history.
+	 */
+	public void setLocationHistory(LocationHistoryStore locationHistory, int onHeapLocations) {
+		this.onHeapLocations = Math.max(1, onHeapLocations);
+		this.locationHistory = locationHistory;
+		rewardsService.setLocationHistory(locationHistory);
+	}
+
+	/**
+	 * Archives in the store, keeping the number of locations of the tourguide.history.on-heap-locations property.
+	 */
+	@Autowired(required = false)
+	public void setLocationHistory(LocationHistoryStore locationHistory) {
+		setLocationHistory(locationHistory, properties.getHistory().getOnHeapLocations());
+	}
+
+	/**
+	 * @return All the locations of the user, the archived ones first, oldest first
+	 */
+	public List<VisitedLocation> getLocationHistory(User user) {
+		LocationHistoryStore history = locationHistory;
+		if (history == null) {
+			return user.getVisitedLocations();
+		}
+		// Under the archiving lock, so that no location is moved between the two reads
+		synchronized (user) {
+			List<VisitedLocation> all = new ArrayList<>(history.getAll(user.getUserId()));
+			all.addAll(user.getVisitedLocations());
+			return all;
+		}
 	}
 
 	public List<UserReward> getUserRewards(User user) {
@@ -83,17 +220,114 @@ public class TourGuideService {
 	}
 
 	public User getUser(String userName) {
-		return internalUserMap.get(userName);
+		return userRegistry.getByName(userName);
+	}
+
+	public User getUser(UUID userId) {
+		return userRegistry.getById(userId);
 	}
 
+	/**
+	 * @return Read-only view of the users registered so far, without copy
+	 */
 	public List<User> getAllUsers() {
-		return new ArrayList<>(internalUserMap.values());
+		return userRegistry.asList();
 	}
 
 	public void addUser(User user) {
-		if (!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
+		if (userRegistry.add(user) >= 0) {
+			registerUser(user);
+		}
+	}
+
+	/**
+	 * Registers many users at once, skipping those whose name or id is taken.
+	 * @return Number of users registered
+	 */
+	public int addUsers(Collection<User> users) {
+		List<User> added = userRegistry.addAll(users);
+		added.forEach(this::registerUser);
+		return added.size();
+	}
+
+	/**
+	 * @return The registered users, with their slots and indexes
+	 */
+	public UserRegistry getUserRegistry() {
+		return userRegistry;
+	}
+
+	/**
+	 * @return Bus publishing the events of all registered users
+	 */
+	public UserEventBus getUserEventBus() {
+		return userEventBus;
+	}
+
+	/**
+	 * @return The users with the most reward points, best first
+	 */
+	public List<LeaderboardEntryDTO> getTopUsers(int limit) {
+		return rewardsLeaderboard.getTopUsers(limit);
+	}
+
+	/**
+	 * @return Total reward points of the user, read from the leaderboard index
+	 */
+	public long getUserRewardPoints(User user) {
+		return rewardsLeaderboard.getUserRewardPoints(user.getUserId());
+	}
+
+	/**
+	 * @return The attractions with the most rewarded visits today, most visited first
+	 */
+	public List<AttractionVisitsDTO> getMostVisitedAttractions(int limit) {
+		return rewardsLeaderboard.getMostVisitedAttractions(limit);
+	}
+
+	/**
+	 * Locations of the user between from and to, read from the time-partitioned index, so the older locations
+	 * archived off the user are included within the index retention.
+	 * @return The locations, oldest first
+	 */
+	public List<VisitedLocation> getTrajectory(User user, Instant from, Instant to) {
+		return locationTimeline.getTrajectory(user.getUserId(), from.toEpochMilli(), to.toEpochMilli());
+	}
+
+	/**
+	 * Users who were within radiusMiles of the location between from and to, read from the time-partitioned index.
+	 * @return At most limit users, the closest visit first
+	 */
+	public List<VisitorDTO> getVisitors(Location location, double radiusMiles, Instant from, Instant to, int limit) {
+		List<LocationTimeline.Visitor> visitors = locationTimeline.getVisitors(location, radiusMiles,
+				from.toEpochMilli(), to.toEpochMilli());
+		List<VisitorDTO> visitorDTOs = new ArrayList<>(Math.min(limit, visitors.size()));
+		for (LocationTimeline.Visitor visitor : visitors.subList(0, Math.min(limit, visitors.size()))) {
+			User user = getUser(visitor.userId());
+			visitorDTOs.add(new VisitorDTO(visitor.userId(), user == null ? null : user.getUserName(), visitor.visits(),
+					new Date(visitor.firstVisitMillis()), new Date(visitor.lastVisitMillis()), visitor.closestMiles()));
 		}
+		return visitorDTOs;
+	}
+
+	/**
+	 * @return The attraction with this name
+	 * @throws IllegalArgumentException If there is none
+	 */
+	public Attraction getAttraction(String attractionName) {
+		for (Attraction attraction : rewardsService.getAttractions()) {
+			if (attraction.attractionName.equals(attractionName)) {
+				return attraction;
+			}
+		}
+		throw new IllegalArgumentException("Unknown attraction: " + attractionName);
+	}
+
+	// Connects the user to the event bus and indexes its existing rewards and locations
+	private void registerUser(User user) {
+		user.setEventListener(userEventBus);
+		rewardsLeaderboard.addUser(user);
+		locationTimeline.addUser(user);
 	}
 
 	public List<Provider> getTripDeals(User user) {
@@ -110,18 +344,49 @@ public class TourGuideService {
 	 * @return Newly recorded VisitedLocation
 	 */
 	public VisitedLocation trackUserLocation(User user) {
-		VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-		user.addToVisitedLocations(visitedLocation);
-
-		if (!disableAutoRewardCalculation) {
-			if (testMode) {
-				rewardsService.calculateRewards(user); // Synchronous for test reproducibility
-			} else {
-				CompletableFuture.runAsync(() -> rewardsService.calculateRewards(user), executor);
+		try (Span span = Tracer.startTrace("trackUserLocation", user.getUserId())) {
+			VisitedLocation visitedLocation;
+			try (Span gpsSpan = Tracer.startSpan("gpsUtil.getUserLocation")) {
+				visitedLocation = gpsUtil.getUserLocation(user.getUserId());
+			}
+			user.addToVisitedLocations(visitedLocation);
+			archiveLocations(user);
+
+			// Warm up reward points of the attractions around the new location for getNearByAttractions
+			rewardsService.prefetchRewardPoints(user, visitedLocation.location);
+
+			if (!disableAutoRewardCalculation) {
+				if (testMode) {
+					rewardsService.calculateRewards(user); // Synchronous for test reproducibility
+				} else {
+					CompletableFuture.runAsync(Tracer.wrap(() -> rewardsService.calculateRewards(user)), executor);
+				}
 			}
+
+			return visitedLocation;
 		}
+	}
 
-		return visitedLocation;
+	// Moves the oldest locations of the user to the archive once the user has more than twice onHeapLocations
+	private void archiveLocations(User user) {
+		LocationHistoryStore history = locationHistory;
+		int limit = onHeapLocations;
+		if (history == null || user.getVisitedLocations().size() <= 2 * limit) {
+			return;
+		}
+		// Rare, so a lock on the user is enough to keep two threads from archiving the same locations
+		synchronized (user) {
+			List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+			if (visitedLocations.size() <= 2 * limit) {
+				return;
+			}
+			int count = visitedLocations.size() - limit;
+			// Stored before they leave the user, so readers always find them on one side or the other
+			for (int i = 0; i < count; i++) {
+				history.append(user.getUserId(), visitedLocations.get(i));
+			}
+			user.archiveOldestVisitedLocations(count);
+		}
 	}
 
 	/**
@@ -136,47 +401,95 @@ public class TourGuideService {
 	}
 
 	/**
-	 * Retrieves the 5 closest attractions to the user's last known location.
+	 * Retrieves the 5 closest attractions to the user's last known location, within the user's attraction proximity.
 	 * @return List of DTOs containing attraction details, calculated distances, and reward points
 	 */
 	public List<NearByAttractionDTO> getNearByAttractions(User user, VisitedLocation visitedLocation) {
+		return getNearByAttractions(user, visitedLocation,
+				NearbyQuery.forUser(user.getUserPreferences(), NEARBY_ATTRACTION_COUNT));
+	}
+
+	/**
+	 * Searches the attractions around a visited location of the user.
+	 * Reward points are only fetched for the returned attractions.
+	 * @param query Radius, number and categories of the attractions
+	 * @return The matching attractions, closest first
+	 */
+	public List<NearByAttractionDTO> getNearByAttractions(User user, VisitedLocation visitedLocation, NearbyQuery query) {
 
 		double userLat = visitedLocation.location.latitude;
 		double userLong = visitedLocation.location.longitude;
 
-		// Stream based processing with sorting and limiting
-		return attractions.stream()
-				.map(attraction -> {
-					// we use cached distance calculation from RewardsService
-					double distance = rewardsService.getCachedDistance(attraction, visitedLocation.location);
-					// we use cached reward points from RewardsService
-					int rewardPoints = rewardsService.getRewardPoints(attraction, user);
-
-					// Returns a NearByAttractionDTO with this attraction's information
-					return new NearByAttractionDTO(
-							attraction.attractionName,
-							attraction.latitude,
-							attraction.longitude,
-							userLat,
-							userLong,
-							distance,
-							rewardPoints
-					);
-				})
-				// Then we sort by distance
-				.sorted(Comparator.comparingDouble(NearByAttractionDTO::getDistance))
-				// We limit the result to top 5 NearByAttractionDTOs
-				.limit(5)
-				// We convert the stream to a list
-				.toList();
+		// The result only depends on the location and the query, so it is reused until the user moves
+		NearbyAttractions memo = nearbyAttractionsMemo.get(user.getUserId());
+		if (memo != null && memo.latitude() == userLat && memo.longitude() == userLong && memo.query().equals(query)) {
+			return memo.attractions();
+		}
+
+		List<NearByAttractionDTO> nearByAttractions = toNearByAttractions(user, visitedLocation,
+				rewardsService.findNearbyAttractions(visitedLocation.location, query));
+		nearbyAttractionsMemo.put(user.getUserId(), new NearbyAttractions(userLat, userLong, query, nearByAttractions));
+		return nearByAttractions;
 	}
 
-	private void addShutDownHook() {
-		Runtime.getRuntime().addShutdownHook(new Thread() {
-			public void run() {
-				tracker.stopTracking();
+	/**
+	 * Nearby attractions of many users at once, around their last location, searched in parallel by the
+	 * fork-join engine of the RewardsService. Users without location are skipped.
+	 * @return The attractions of each user, by user name, in the order of the users
+	 */
+	public Map<String, List<NearByAttractionDTO>> getNearByAttractions(List<User> users) {
+		List<User> located = new ArrayList<>(users.size());
+		List<VisitedLocation> visitedLocations = new ArrayList<>(users.size());
+		List<NearbyRequest> requests = new ArrayList<>(users.size());
+		for (User user : users) {
+			List<VisitedLocation> userLocations = user.getVisitedLocations();
+			if (userLocations.isEmpty()) {
+				continue;
 			}
-		});
+			VisitedLocation visitedLocation = userLocations.get(userLocations.size() - 1);
+			located.add(user);
+			visitedLocations.add(visitedLocation);
+			requests.add(new NearbyRequest(visitedLocation.location,
+					NearbyQuery.forUser(user.getUserPreferences(), NEARBY_ATTRACTION_COUNT)));
+		}
+
+		List<List<NearbyMatch>> matches = rewardsService.findNearbyAttractions(requests);
+		Map<String, List<NearByAttractionDTO>> nearByAttractions = new LinkedHashMap<>();
+		for (int i = 0; i < located.size(); i++) {
+			nearByAttractions.put(located.get(i).getUserName(),
+					toNearByAttractions(located.get(i), visitedLocations.get(i), matches.get(i)));
+		}
+		return nearByAttractions;
+	}
+
+	private List<NearByAttractionDTO> toNearByAttractions(User user, VisitedLocation visitedLocation,
+			List<NearbyMatch> matches) {
+		// One DTO per match, i.e. per winner of the search, and no stream pipeline around them
+		NearByAttractionDTO[] nearByAttractions = new NearByAttractionDTO[matches.size()];
+		for (int i = 0; i < nearByAttractions.length; i++) {
+			NearbyMatch match = matches.get(i);
+			nearByAttractions[i] = new NearByAttractionDTO(
+					match.attraction().attractionName,
+					match.attraction().latitude,
+					match.attraction().longitude,
+					visitedLocation.location.latitude,
+					visitedLocation.location.longitude,
+					// the distance comes from the search, the reward points from the RewardsService cache
+					match.distanceMiles(),
+					rewardsService.getRewardPoints(match.attraction(), user));
+		}
+		return List.of(nearByAttractions);
+	}
+
+	/**
+	 * Startup warmup job: prefetches in the background the reward points around the last location of active users,
+	 * so that the first nearby attractions requests don't wait on RewardCentral.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void warmUpRewardPoints() {
+		Date activeSince = Date.from(LocalDateTime.now().minusDays(ACTIVE_USER_DAYS).toInstant(ZoneOffset.UTC));
+		int warmedUp = rewardsService.warmUpRewardPoints(getAllUsers(), activeSince);
+		logger.debug("Warming up reward points for " + warmedUp + " active users.");
 	}
 
 	/**********************************************************************************
@@ -187,44 +500,31 @@ public class TourGuideService {
 	private static final String tripPricerApiKey = "test-server-api-key";
 	// Database connection will be used for external users, but for testing purposes
 	// internal users are provided and stored in memory
-	// improved thread-safety via ConcurrentHashMap
-	private final Map<String, User> internalUserMap = new ConcurrentHashMap<>();;
+	// indexed by user name and id, without copies when iterating
+	private final UserRegistry userRegistry = new UserRegistry();
 
 	private void initializeInternalUsers() {
-		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-			String userName = "internalUser" + i;
-			String phone = "000";
-			String email = userName + "@tourGuide.com";
-			User user = new User(UUID.randomUUID(), userName, phone, email);
-			generateUserLocationHistory(user);
-
-			internalUserMap.put(userName, user);
-		});
+		TourGuideProperties.InternalUsers settings = properties.getInternalUsers();
+		// A fixed base time, so that the same seed generates the same visits from one start to the next
+		Instant baseTime = settings.getBaseTime() != null ? settings.getBaseTime()
+				: Instant.now().truncatedTo(ChronoUnit.DAYS);
+		UserDataGenerator generator = new UserDataGenerator(settings.getSeed(), locationDistribution(settings),
+				settings.getLocationsPerUser(), baseTime.toEpochMilli());
+		// Built in parallel on the fork-join pool of the rewards, idle at startup
+		addUsers(generator.generate(InternalTestHelper.getInternalUserNumber(),
+				rewardsService.getForkJoinEngine().getPool()));
 		logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
 	}
 
-	private void generateUserLocationHistory(User user) {
-		IntStream.range(0, 3).forEach(i -> {
-			user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
-					new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime()));
-		});
-	}
-
-	private double generateRandomLongitude() {
-		double leftLimit = -180;
-		double rightLimit = 180;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
-	}
-
-	private double generateRandomLatitude() {
-		double leftLimit = -85.05112878;
-		double rightLimit = 85.05112878;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+	private LocationDistribution locationDistribution(TourGuideProperties.InternalUsers settings) {
+		return switch (settings.getDistribution()) {
+			case UNIFORM -> LocationDistribution.uniform();
+			case ATTRACTIONS -> LocationDistribution.around(rewardsService.getAttractions(), settings.getSpreadMiles());
+		};
 	}
 
-	private Date getRandomTime() {
-		LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-		return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+	private record NearbyAttractions(double latitude, double longitude, NearbyQuery query,
+			List<NearByAttractionDTO> attractions) {
 	}
 
 }
@@ -0,0 +1,96 @@
+package com.openclassrooms.tourguide.spatial;
+
+import com.openclassrooms.tourguide.cache.BoundedCache;
+import com.openclassrooms.tourguide.rules.RewardRuleTable;
+
+/**
+ * The attractions of a {@link RewardRuleTable} that a location of a {@link HilbertGrid} cell may be close enough to,
+ * according to each attraction's rule radius. Computed once per cell then shared by every location in it,
+ * so a reward check only measures the distance to a handful of attractions instead of all of them.
+ * Candidates are a superset: the exact distance and time window are still checked by the table.
+ */
+public final class CellCandidates {
+
+	private static final int MAX_CACHED_CELLS = 65_536;
+
+	private final RewardRuleTable table;
+	private final HilbertGrid grid;
+	private final BoundedCache<Integer, int[]> candidates = new BoundedCache<>(MAX_CACHED_CELLS);
+
+	// Bounding box of the circle around each attraction within which a visit is eligible, in degrees
+	private final double[] minLatitudes;
+	private final double[] maxLatitudes;
+	private final double[] minLongitudes;
+	private final double[] maxLongitudes;
+
+	public CellCandidates(RewardRuleTable table, HilbertGrid grid) {
+		this.table = table;
+		this.grid = grid;
+		int size = table.size();
+		minLatitudes = new double[size];
+		maxLatitudes = new double[size];
+		minLongitudes = new double[size];
+		maxLongitudes = new double[size];
+		for (int i = 0; i < size; i++) {
+			double latitude = table.getAttraction(i).latitude;
+			double longitude = table.getAttraction(i).longitude;
+			// We widen the radius slightly so that rounding never excludes an attraction at the exact radius
+			double radiusDegrees = table.getRadiusMiles(i) / GeoMath.MILES_PER_DEGREE * 1.0001 + 1e-9;
+			minLatitudes[i] = latitude - radiusDegrees;
+			maxLatitudes[i] = latitude + radiusDegrees;
+			// Bounding box of a spherical cap: the longitude span widens with the latitude, up to every longitude
+			// when the cap reaches a pole
+			double sinSpan = Math.sin(Math.toRadians(Math.min(radiusDegrees, 90))) / Math.cos(Math.toRadians(latitude));
+			if (maxLatitudes[i] >= 90 || minLatitudes[i] <= -90 || radiusDegrees >= 90 || sinSpan >= 1) {
+				minLongitudes[i] = -180;
+				maxLongitudes[i] = 180;
+			} else {
+				double longitudeSpan = Math.toDegrees(Math.asin(sinSpan));
+				minLongitudes[i] = longitude - longitudeSpan;
+				maxLongitudes[i] = longitude + longitudeSpan;
+			}
+		}
+	}
+
+	public RewardRuleTable getTable() {
+		return table;
+	}
+
+	public HilbertGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * @return Indexes in the table of the attractions a location of this cell may be eligible for, in table order
+	 */
+	public int[] forCell(int cell) {
+		return candidates.computeIfAbsent(cell, this::compute);
+	}
+
+	private int[] compute(int cell) {
+		double cellMinLatitude = grid.minLatitude(cell);
+		double cellMaxLatitude = grid.maxLatitude(cell);
+		double cellMinLongitude = grid.minLongitude(cell);
+		double cellMaxLongitude = grid.maxLongitude(cell);
+		int[] found = new int[table.size()];
+		int count = 0;
+		for (int i = 0; i < table.size(); i++) {
+			if (maxLatitudes[i] < cellMinLatitude || minLatitudes[i] > cellMaxLatitude) {
+				continue;
+			}
+			// The attraction's span may cross the antimeridian, so we also compare it shifted by a turn
+			if (overlaps(i, cellMinLongitude, cellMaxLongitude, 0)
+					|| overlaps(i, cellMinLongitude, cellMaxLongitude, 360)
+					|| overlaps(i, cellMinLongitude, cellMaxLongitude, -360)) {
+				found[count++] = i;
+			}
+		}
+		int[] result = new int[count];
+		System.arraycopy(found, 0, result, 0, count);
+		return result;
+	}
+
+	private boolean overlaps(int index, double cellMinLongitude, double cellMaxLongitude, double shift) {
+		return maxLongitudes[index] + shift >= cellMinLongitude && minLongitudes[index] + shift <= cellMaxLongitude;
+	}
+}
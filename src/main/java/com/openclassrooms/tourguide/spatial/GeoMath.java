@@ -0,0 +1,42 @@
+package com.openclassrooms.tourguide.spatial;
+
+/**
+ * Great-circle distances and degree conversions shared by every distance check, so that the reward rules,
+ * the nearby search and the history queries all agree on whether a location is within a radius.
+ */
+public final class GeoMath {
+
+	public static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+	// A degree of great circle is 60 nautical miles
+	public static final double MILES_PER_DEGREE = 60 * STATUTE_MILES_PER_NAUTICAL_MILE;
+	// MILES_PER_DEGREE rounded down: a box of radius / 69 degrees always contains the circle of that radius
+	public static final double MILES_PER_DEGREE_OF_LATITUDE = 69.0;
+
+	private GeoMath() {
+	}
+
+	/**
+	 * Spherical law of cosines between two points given in degrees.
+	 * @return Distance in statute miles
+	 */
+	public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+		double latitude = Math.toRadians(latitude1);
+		return distance(Math.sin(latitude), Math.cos(latitude), Math.toRadians(longitude1), latitude2, longitude2);
+	}
+
+	/**
+	 * Same distance with the trigonometry of the first point precomputed, for a point measured against many others.
+	 * @param longitude1 Longitude of the first point in radians
+	 * @return Distance in statute miles
+	 */
+	public static double distance(double sinLatitude1, double cosLatitude1, double longitude1, double latitude2,
+			double longitude2) {
+		double latitude = Math.toRadians(latitude2);
+		double cosine = sinLatitude1 * Math.sin(latitude)
+				+ cosLatitude1 * Math.cos(latitude) * Math.cos(longitude1 - Math.toRadians(longitude2));
+		// We clamp the cosine, as rounding can take it past 1 for identical points, or past -1 for antipodes:
+		// acos would return NaN, and NaN is never within any radius
+		double angle = Math.acos(Math.max(-1, Math.min(1, cosine)));
+		return MILES_PER_DEGREE * Math.toDegrees(angle);
+	}
+}
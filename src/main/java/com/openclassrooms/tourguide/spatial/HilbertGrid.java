@@ -0,0 +1,150 @@
+package com.openclassrooms.tourguide.spatial;
+
+/**
+ * Divides the globe in 2^order x 2^order cells of equal latitude and longitude spans, numbered along a Hilbert curve.
+ * Consecutive cell numbers are adjacent cells, so sorting locations by cell number keeps close locations together.
+ */
+public final class HilbertGrid {
+
+	private final int order;
+	private final int side;
+	private final double cellLatitudeDegrees;
+	private final double cellLongitudeDegrees;
+
+	/**
+	 * @param order Between 1 and 15: cells are 180 / 2^order degrees of latitude by 360 / 2^order degrees of longitude
+	 */
+	public HilbertGrid(int order) {
+		if (order < 1 || order > 15) {
+			throw new IllegalArgumentException("Hilbert grid order must be between 1 and 15: " + order);
+		}
+		this.order = order;
+		this.side = 1 << order;
+		this.cellLatitudeDegrees = 180.0 / side;
+		this.cellLongitudeDegrees = 360.0 / side;
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * @return Number of the cell containing the location, between 0 and 4^order - 1
+	 */
+	public int cell(double latitude, double longitude) {
+		return hilbertIndex(column(longitude), row(latitude));
+	}
+
+	/**
+	 * @return Southern latitude of the cell, in degrees
+	 */
+	public double minLatitude(int cell) {
+		return rowOf(cell) * cellLatitudeDegrees - 90;
+	}
+
+	public double maxLatitude(int cell) {
+		return minLatitude(cell) + cellLatitudeDegrees;
+	}
+
+	/**
+	 * @return Western longitude of the cell, in degrees
+	 */
+	public double minLongitude(int cell) {
+		return columnOf(cell) * cellLongitudeDegrees - 180;
+	}
+
+	public double maxLongitude(int cell) {
+		return minLongitude(cell) + cellLongitudeDegrees;
+	}
+
+	/**
+	 * @return Number of cells intersecting the box, without listing them
+	 */
+	public long cellCount(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+		return (long) (row(maxLatitude) - row(minLatitude) + 1) * (column(maxLongitude) - column(minLongitude) + 1);
+	}
+
+	/**
+	 * @param minLongitude Western longitude, not greater than maxLongitude: a box crossing the antimeridian is
+	 * searched as two boxes
+	 * @return Numbers of the cells intersecting the box, in no particular order
+	 */
+	public int[] cells(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+		int minRow = row(minLatitude);
+		int maxRow = row(maxLatitude);
+		int minColumn = column(minLongitude);
+		int maxColumn = column(maxLongitude);
+		int[] cells = new int[(maxRow - minRow + 1) * (maxColumn - minColumn + 1)];
+		int next = 0;
+		for (int x = minColumn; x <= maxColumn; x++) {
+			for (int y = minRow; y <= maxRow; y++) {
+				cells[next++] = hilbertIndex(x, y);
+			}
+		}
+		return cells;
+	}
+
+	private int row(double latitude) {
+		return clamp((int) Math.floor((latitude + 90) / cellLatitudeDegrees));
+	}
+
+	private int column(double longitude) {
+		return clamp((int) Math.floor((longitude + 180) / cellLongitudeDegrees));
+	}
+
+	private int clamp(int coordinate) {
+		return Math.max(0, Math.min(side - 1, coordinate));
+	}
+
+	private int rowOf(int cell) {
+		return (int) (hilbertCoordinates(cell) & 0xFFFF);
+	}
+
+	private int columnOf(int cell) {
+		return (int) (hilbertCoordinates(cell) >>> 16);
+	}
+
+	// Classic iterative mapping of (x, y) to the distance along the curve, rotating each quadrant
+	private int hilbertIndex(int x, int y) {
+		int index = 0;
+		for (int s = side / 2; s > 0; s /= 2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			index += s * s * ((3 * rx) ^ ry);
+			if (ry == 0) {
+				if (rx == 1) {
+					x = side - 1 - x;
+					y = side - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return index;
+	}
+
+	// Inverse of hilbertIndex, returns x in the high 16 bits and y in the low 16 bits
+	private long hilbertCoordinates(int index) {
+		int x = 0;
+		int y = 0;
+		int t = index;
+		for (int s = 1; s < side; s *= 2) {
+			int rx = 1 & (t / 2);
+			int ry = 1 & (t ^ rx);
+			if (ry == 0) {
+				if (rx == 1) {
+					x = s - 1 - x;
+					y = s - 1 - y;
+				}
+				int swap = x;
+				x = y;
+				y = swap;
+			}
+			x += s * rx;
+			y += s * ry;
+			t /= 4;
+		}
+		return ((long) x << 16) | y;
+	}
+}
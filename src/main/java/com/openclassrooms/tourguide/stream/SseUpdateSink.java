@@ -0,0 +1,40 @@
+package com.openclassrooms.tourguide.stream;
+
+import java.io.IOException;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.openclassrooms.tourguide.json.TourGuideJsonWriter;
+import com.openclassrooms.tourguide.user.UserEvent;
+
+/**
+ * Sends the updates of a subscription as server-sent events: "location" events carrying a VisitedLocation,
+ * "reward" events carrying a UserReward, with the JSON of /getLocation and /getRewards.
+ */
+public class SseUpdateSink implements UserUpdateBroadcaster.UpdateSink {
+
+	private final SseEmitter emitter;
+	private final TourGuideJsonWriter jsonWriter;
+
+	public SseUpdateSink(SseEmitter emitter, TourGuideJsonWriter jsonWriter) {
+		this.emitter = emitter;
+		this.jsonWriter = jsonWriter;
+	}
+
+	@Override
+	public void send(UserEvent event) throws IOException {
+		if (event instanceof UserEvent.LocationRecorded locationRecorded) {
+			emitter.send(SseEmitter.event().name("location")
+					.data(jsonWriter.visitedLocationToBytes(locationRecorded.visitedLocation()), MediaType.APPLICATION_JSON));
+		} else if (event instanceof UserEvent.RewardEarned rewardEarned) {
+			emitter.send(SseEmitter.event().name("reward")
+					.data(jsonWriter.userRewardToBytes(rewardEarned.userReward()), MediaType.APPLICATION_JSON));
+		}
+	}
+
+	@Override
+	public void close() {
+		emitter.complete();
+	}
+}
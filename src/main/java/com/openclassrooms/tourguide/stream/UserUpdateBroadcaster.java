@@ -0,0 +1,230 @@
+package com.openclassrooms.tourguide.stream;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserEvent;
+import com.openclassrooms.tourguide.user.UserEventListener;
+import com.openclassrooms.tourguide.user.UserState;
+
+/**
+ * Pushes the new locations and rewards of users to their subscribers, e.g. server-sent event streams.
+ * Publishing never blocks the thread that changed the user: the update is appended to a bounded buffer
+ * per subscriber, which drops its oldest update when full, and the buffer is sent on the sender pool.
+ * A slow subscriber only loses updates, it doesn't slow down the tracker nor the other subscribers.
+ */
+public class UserUpdateBroadcaster implements UserEventListener {
+
+	/**
+	 * Receives the updates of a subscription, one at a time, on a sender thread.
+	 */
+	public interface UpdateSink {
+
+		/**
+		 * @param event A LocationRecorded or RewardEarned event
+		 * @throws IOException When the subscriber is gone, which ends the subscription
+		 */
+		void send(UserEvent event) throws IOException;
+
+		/**
+		 * Called when the broadcaster ends the subscription, after a failed send or on shutdown.
+		 */
+		default void close() {
+		}
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(UserUpdateBroadcaster.class);
+
+	// Updates sent by a sender thread before it moves on to the other subscribers
+	private static final int DRAIN_BATCH = 64;
+
+	private final Map<UUID, List<Subscription>> subscriptionsByUser = new ConcurrentHashMap<>();
+	private final Executor sender;
+	private final int bufferSize;
+
+	/**
+	 * @param sender Pool sending the buffered updates
+	 * @param bufferSize Updates kept per subscriber waiting to be sent
+	 */
+	public UserUpdateBroadcaster(Executor sender, int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+		}
+		this.sender = sender;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Subscribes to the updates of a user from now on.
+	 * @return The subscription, to close when the subscriber leaves
+	 */
+	public Subscription subscribe(UUID userId, UpdateSink sink) {
+		Subscription subscription = new Subscription(userId, sink);
+		subscriptionsByUser.computeIfAbsent(userId, id -> new CopyOnWriteArrayList<>()).add(subscription);
+		return subscription;
+	}
+
+	@Override
+	public void onEvent(User user, UserEvent event, UserState state) {
+		if (!(event instanceof UserEvent.LocationRecorded) && !(event instanceof UserEvent.RewardEarned)) {
+			return;
+		}
+		List<Subscription> subscriptions = subscriptionsByUser.get(user.getUserId());
+		if (subscriptions != null) {
+			for (Subscription subscription : subscriptions) {
+				subscription.offer(event);
+			}
+		}
+	}
+
+	public int getSubscriberCount() {
+		int count = 0;
+		for (List<Subscription> subscriptions : subscriptionsByUser.values()) {
+			count += subscriptions.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Ends every subscription, e.g. on shutdown.
+	 */
+	public void close() {
+		for (List<Subscription> subscriptions : subscriptionsByUser.values()) {
+			for (Subscription subscription : subscriptions) {
+				subscription.terminate();
+			}
+		}
+	}
+
+	private void remove(Subscription subscription) {
+		subscriptionsByUser.computeIfPresent(subscription.userId, (id, subscriptions) -> {
+			subscriptions.remove(subscription);
+			return subscriptions.isEmpty() ? null : subscriptions;
+		});
+	}
+
+	/**
+	 * The updates of a user for one subscriber. At most one sender thread drains it at a time,
+	 * so the sink receives the updates in order.
+	 */
+	public final class Subscription {
+		private final UUID userId;
+		private final UpdateSink sink;
+		private final ArrayDeque<UserEvent> buffer = new ArrayDeque<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private final AtomicBoolean closed = new AtomicBoolean();
+		private final LongAdder sent = new LongAdder();
+		private final LongAdder dropped = new LongAdder();
+
+		private Subscription(UUID userId, UpdateSink sink) {
+			this.userId = userId;
+			this.sink = sink;
+		}
+
+		/**
+		 * Stops the updates, when the subscriber left. The sink is not called anymore.
+		 */
+		public void close() {
+			markClosed();
+		}
+
+		public boolean isClosed() {
+			return closed.get();
+		}
+
+		public long getSent() {
+			return sent.sum();
+		}
+
+		/**
+		 * @return Updates dropped because the subscriber was too slow
+		 */
+		public long getDropped() {
+			return dropped.sum();
+		}
+
+		private void offer(UserEvent event) {
+			synchronized (buffer) {
+				if (buffer.size() == bufferSize) {
+					buffer.pollFirst();
+					dropped.increment();
+				}
+				buffer.addLast(event);
+			}
+			schedule();
+		}
+
+		private void schedule() {
+			if (closed.get() || !scheduled.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				sender.execute(this::drain);
+			} catch (RejectedExecutionException e) {
+				// The sender pool is shut down
+				scheduled.set(false);
+				terminate();
+			}
+		}
+
+		private void drain() {
+			try {
+				for (int i = 0; i < DRAIN_BATCH && !closed.get(); i++) {
+					UserEvent event;
+					synchronized (buffer) {
+						event = buffer.pollFirst();
+					}
+					if (event == null) {
+						break;
+					}
+					sink.send(event);
+					sent.increment();
+				}
+			} catch (IOException | RuntimeException e) {
+				logger.debug("Update stream of user {} failed: {}", userId, e.toString());
+				scheduled.set(false);
+				terminate();
+				return;
+			}
+			scheduled.set(false);
+			// An update offered while draining may have seen the drain still scheduled
+			boolean pending;
+			synchronized (buffer) {
+				pending = !buffer.isEmpty();
+			}
+			if (pending) {
+				schedule();
+			}
+		}
+
+		private void terminate() {
+			if (markClosed()) {
+				sink.close();
+			}
+		}
+
+		private boolean markClosed() {
+			if (!closed.compareAndSet(false, true)) {
+				return false;
+			}
+			remove(this);
+			synchronized (buffer) {
+				buffer.clear();
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.openclassrooms.tourguide.tracing;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint listing the recent slow traces: GET /actuator/slowtraces, DELETE to clear them.
+ */
+@Component
+@Endpoint(id = "slowtraces")
+public class SlowTracesEndpoint {
+
+	@ReadOperation
+	public List<TraceView> slowTraces() {
+		return Tracer.getSlowTraces();
+	}
+
+	@DeleteOperation
+	public void clear() {
+		Tracer.clearSlowTraces();
+	}
+}
@@ -0,0 +1,45 @@
+package com.openclassrooms.tourguide.tracing;
+
+/**
+ * A timed section of a trace, closed with try-with-resources.
+ * Unsampled sections get the shared {@link #NOOP} span, which records nothing.
+ */
+public class Span implements AutoCloseable {
+
+	public static final Span NOOP = new Span(null, null, 0, 0);
+
+	private final String name;
+	private final TraceContext context;
+	private final int depth;
+	private final long startNanos;
+
+	Span(String name, TraceContext context, int depth, long startNanos) {
+		this.name = name;
+		this.context = context;
+		this.depth = depth;
+		this.startNanos = startNanos;
+	}
+
+	@Override
+	public void close() {
+		if (context != null) {
+			Tracer.end(this);
+		}
+	}
+
+	String getName() {
+		return name;
+	}
+
+	TraceContext getContext() {
+		return context;
+	}
+
+	int getDepth() {
+		return depth;
+	}
+
+	long getStartNanos() {
+		return startNanos;
+	}
+}
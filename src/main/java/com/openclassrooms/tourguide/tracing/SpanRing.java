@@ -0,0 +1,60 @@
+package com.openclassrooms.tourguide.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring buffer of finished spans, written only by its owner thread.
+ * Readers get a best-effort view: entries overwritten while reading are skipped by re-checking the trace id.
+ */
+final class SpanRing {
+
+	static final int CAPACITY = 4096;
+	private static final int MASK = CAPACITY - 1;
+
+	private final String threadName;
+	private final long[] traceIds = new long[CAPACITY];
+	private final long[] startNanos = new long[CAPACITY];
+	private final long[] durationNanos = new long[CAPACITY];
+	private final int[] depths = new int[CAPACITY];
+	private final String[] names = new String[CAPACITY];
+
+	// Number of spans ever written, published after each write
+	private volatile long position;
+
+	SpanRing(String threadName) {
+		this.threadName = threadName;
+	}
+
+	void record(long traceId, String name, int depth, long start, long duration) {
+		long current = position;
+		int index = (int) (current & MASK);
+		traceIds[index] = traceId;
+		names[index] = name;
+		depths[index] = depth;
+		startNanos[index] = start;
+		durationNanos[index] = duration;
+		position = current + 1;
+	}
+
+	/**
+	 * Collects the spans of a trace still present in the ring.
+	 */
+	void collect(long traceId, List<TraceView.SpanView> spans) {
+		long end = position;
+		long start = Math.max(0, end - CAPACITY);
+		List<TraceView.SpanView> found = new ArrayList<>();
+		for (long i = start; i < end; i++) {
+			int index = (int) (i & MASK);
+			if (traceIds[index] == traceId) {
+				TraceView.SpanView span = new TraceView.SpanView(names[index], threadName, depths[index],
+						Tracer.toEpochMillis(startNanos[index]), durationNanos[index] / 1_000_000.0);
+				// The entry may have been overwritten while it was read
+				if (traceIds[index] == traceId) {
+					found.add(span);
+				}
+			}
+		}
+		spans.addAll(found);
+	}
+}
@@ -0,0 +1,23 @@
+package com.openclassrooms.tourguide.tracing;
+
+import java.util.UUID;
+
+/**
+ * Trace being recorded on the current thread: its id, the user it belongs to and the current nesting depth.
+ * An unsampled context is kept as well, so that nested spans don't start new traces.
+ */
+final class TraceContext {
+
+	static final TraceContext UNSAMPLED = new TraceContext(0, null, false);
+
+	final long traceId;
+	final UUID userId;
+	final boolean sampled;
+	int depth;
+
+	TraceContext(long traceId, UUID userId, boolean sampled) {
+		this.traceId = traceId;
+		this.userId = userId;
+		this.sampled = sampled;
+	}
+}
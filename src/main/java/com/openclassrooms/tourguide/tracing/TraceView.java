@@ -0,0 +1,14 @@
+package com.openclassrooms.tourguide.tracing;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A slow trace as exposed by the slowtraces actuator endpoint.
+ */
+public record TraceView(long traceId, String name, UUID userId, long startEpochMillis, double durationMillis,
+		List<SpanView> spans) {
+
+	public record SpanView(String name, String thread, int depth, long startEpochMillis, double durationMillis) {
+	}
+}
@@ -0,0 +1,235 @@
+package com.openclassrooms.tourguide.tracing;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Low-overhead tracing of the tracking and rewards hot paths.
+ *
+ * A trace follows one user's journey (e.g. trackUserLocation, then calculateRewards and the downstream calls).
+ * Traces are sampled when they start; finished spans are stored in a ring buffer owned by the thread that ran them,
+ * so recording never contends between threads. With a sample rate of 0 (the default), starting a span is a single
+ * volatile read returning {@link Span#NOOP}.
+ *
+ * Sampled traces slower than the slow threshold are kept in a bounded list, exposed by {@link SlowTracesEndpoint}.
+ */
+public final class Tracer {
+
+	private static final int SLOW_TRACE_CAPACITY = 100;
+	private static final Span UNSAMPLED_ROOT = new Span(null, TraceContext.UNSAMPLED, 0, 0);
+
+	// Reference points to convert System.nanoTime() to wall clock time
+	private static final long BASE_NANOS = System.nanoTime();
+	private static final long BASE_MILLIS = System.currentTimeMillis();
+
+	private static volatile double sampleRate = 0;
+	private static volatile long slowThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+
+	private static final AtomicLong traceIds = new AtomicLong();
+	private static final ThreadLocal<TraceContext> currentContext = new ThreadLocal<>();
+	private static final ThreadLocal<SpanRing> currentRing = ThreadLocal.withInitial(Tracer::registerRing);
+	private static final List<RingReference> rings = new CopyOnWriteArrayList<>();
+	private static final Deque<SlowTrace> slowTraces = new ConcurrentLinkedDeque<>();
+	private static final AtomicInteger slowTraceCount = new AtomicInteger();
+
+	private Tracer() {
+	}
+
+	/**
+	 * @param sampleRate Fraction of traces recorded, from 0 (tracing off) to 1 (every trace)
+	 */
+	public static void setSampleRate(double sampleRate) {
+		Tracer.sampleRate = Math.max(0, Math.min(1, sampleRate));
+	}
+
+	public static double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @param slowThresholdMillis Sampled traces lasting at least this long are kept as slow traces
+	 */
+	public static void setSlowThresholdMillis(long slowThresholdMillis) {
+		slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+	}
+
+	/**
+	 * Starts a span for a user. Starts a new trace, subject to sampling, if none is in progress on this thread.
+	 * @param name Name of the traced operation
+	 * @param userId User the trace belongs to
+	 */
+	public static Span startTrace(String name, UUID userId) {
+		if (sampleRate <= 0) {
+			return Span.NOOP;
+		}
+		TraceContext context = currentContext.get();
+		if (context == null) {
+			if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+				currentContext.set(TraceContext.UNSAMPLED);
+				return UNSAMPLED_ROOT;
+			}
+			context = new TraceContext(traceIds.incrementAndGet(), userId, true);
+			currentContext.set(context);
+		}
+		return start(name, context);
+	}
+
+	/**
+	 * Starts a span in the trace in progress on this thread, or a new trace if there is none.
+	 */
+	public static Span startSpan(String name) {
+		if (sampleRate <= 0) {
+			return Span.NOOP;
+		}
+		TraceContext context = currentContext.get();
+		if (context == null) {
+			return startTrace(name, null);
+		}
+		return start(name, context);
+	}
+
+	/**
+	 * Propagates the trace in progress to a task run on another thread.
+	 * @return The task itself when there is nothing to propagate
+	 */
+	public static Runnable wrap(Runnable task) {
+		if (propagatedContext() == null) {
+			return task;
+		}
+		IntConsumer action = wrap(ignored -> task.run());
+		return () -> action.accept(0);
+	}
+
+	/**
+	 * Propagates the trace in progress to an action run on other threads, e.g. over indexes split by the
+	 * fork-join engine. The index is passed unboxed.
+	 * @return The action itself when there is nothing to propagate
+	 */
+	public static IntConsumer wrap(IntConsumer action) {
+		TraceContext parent = propagatedContext();
+		if (parent == null) {
+			return action;
+		}
+		int depth = parent.depth;
+		return element -> {
+			TraceContext previous = currentContext.get();
+			TraceContext child = new TraceContext(parent.traceId, parent.userId, true);
+			child.depth = depth;
+			currentContext.set(child);
+			try {
+				action.accept(element);
+			} finally {
+				if (previous == null) {
+					currentContext.remove();
+				} else {
+					currentContext.set(previous);
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return The recent slow traces, slowest first, with the spans still present in the ring buffers
+	 */
+	public static List<TraceView> getSlowTraces() {
+		List<TraceView> views = new ArrayList<>();
+		for (SlowTrace slowTrace : slowTraces) {
+			List<TraceView.SpanView> spans = new ArrayList<>();
+			for (RingReference ring : rings) {
+				ring.ring.collect(slowTrace.traceId, spans);
+			}
+			spans.sort(Comparator.comparingLong(TraceView.SpanView::startEpochMillis)
+					.thenComparingInt(TraceView.SpanView::depth));
+			views.add(new TraceView(slowTrace.traceId, slowTrace.name, slowTrace.userId,
+					toEpochMillis(slowTrace.startNanos), slowTrace.durationNanos / 1_000_000.0, spans));
+		}
+		views.sort(Comparator.comparingDouble(TraceView::durationMillis).reversed());
+		return views;
+	}
+
+	public static void clearSlowTraces() {
+		slowTraces.clear();
+		slowTraceCount.set(0);
+	}
+
+	static long toEpochMillis(long nanos) {
+		return BASE_MILLIS + TimeUnit.NANOSECONDS.toMillis(nanos - BASE_NANOS);
+	}
+
+	private static TraceContext propagatedContext() {
+		if (sampleRate <= 0) {
+			return null;
+		}
+		TraceContext context = currentContext.get();
+		return context != null && context.sampled ? context : null;
+	}
+
+	private static Span start(String name, TraceContext context) {
+		if (!context.sampled) {
+			return Span.NOOP;
+		}
+		return new Span(name, context, context.depth++, System.nanoTime());
+	}
+
+	static void end(Span span) {
+		TraceContext context = span.getContext();
+		if (!context.sampled) {
+			// Only the unsampled root span carries a context
+			currentContext.remove();
+			return;
+		}
+		long duration = System.nanoTime() - span.getStartNanos();
+		context.depth = span.getDepth();
+		currentRing.get().record(context.traceId, span.getName(), span.getDepth(), span.getStartNanos(), duration);
+		if (span.getDepth() == 0) {
+			currentContext.remove();
+			if (duration >= slowThresholdNanos) {
+				addSlowTrace(new SlowTrace(context.traceId, span.getName(), context.userId, span.getStartNanos(),
+						duration));
+			}
+		}
+	}
+
+	private static void addSlowTrace(SlowTrace slowTrace) {
+		slowTraces.addFirst(slowTrace);
+		if (slowTraceCount.incrementAndGet() > SLOW_TRACE_CAPACITY && slowTraces.pollLast() != null) {
+			slowTraceCount.decrementAndGet();
+		}
+	}
+
+	// Rings of terminated threads are dropped when a new thread registers
+	private static SpanRing registerRing() {
+		Thread thread = Thread.currentThread();
+		rings.removeIf(ring -> {
+			Thread owner = ring.owner.get();
+			return owner == null || !owner.isAlive();
+		});
+		SpanRing ring = new SpanRing(thread.getName());
+		rings.add(new RingReference(thread, ring));
+		return ring;
+	}
+
+	private static final class RingReference {
+		private final WeakReference<Thread> owner;
+		private final SpanRing ring;
+
+		private RingReference(Thread owner, SpanRing ring) {
+			this.owner = new WeakReference<>(owner);
+			this.ring = ring;
+		}
+	}
+
+	private record SlowTrace(long traceId, String name, UUID userId, long startNanos, long durationNanos) {
+	}
+}
@@ -0,0 +1,17 @@
+package com.openclassrooms.tourguide.tracing;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.openclassrooms.tourguide.config.TourGuideProperties;
+
+/**
+ * Applies the tracing settings of application.properties to the {@link Tracer}.
+ */
+@Configuration
+public class TracingConfiguration {
+
+	public TracingConfiguration(TourGuideProperties properties) {
+		Tracer.setSampleRate(properties.getTracing().getSampleRate());
+		Tracer.setSlowThresholdMillis(properties.getTracing().getSlowThresholdMs());
+	}
+}
@@ -1,9 +1,11 @@
 package com.openclassrooms.tourguide.tracker;
 
+import java.time.Duration;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
@@ -12,50 +14,165 @@ import org.slf4j.LoggerFactory;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 
-public class Tracker extends Thread {
+/**
+ * Periodically tracks the location of every user. Rounds run on a scheduler, separated by the polling interval.
+ * Started and stopped by the lifecycle of the {@link TourGuideService}: stopping ends the current round early,
+ * after the user being tracked.
+ */
+public class Tracker implements Runnable {
 	private Logger logger = LoggerFactory.getLogger(Tracker.class);
-	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
-	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private volatile Duration trackingPollingInterval = Duration.ofMinutes(5);
+	private final ScheduledExecutorService scheduler;
 	private final TourGuideService tourGuideService;
-	private boolean stop = false;
+	private volatile boolean stop = true;
+	private ScheduledFuture<?> schedule;
 
-	public Tracker(TourGuideService tourGuideService) {
+	// Held while a round runs, so that stopping can wait for it
+	private final ReentrantLock roundLock = new ReentrantLock();
+	private volatile long lastRoundStartMillis;
+	private volatile long lastRoundEndMillis;
+	private volatile long lastRoundDurationMillis;
+	private volatile int lastRoundUsers;
+	private volatile int lastRoundFailures;
+
+	public Tracker(TourGuideService tourGuideService, ScheduledExecutorService scheduler) {
 		this.tourGuideService = tourGuideService;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Starts tracking rounds, the first one immediately. Does nothing if already started.
+	 */
+	public synchronized void startTracking() {
+		if (schedule == null) {
+			stop = false;
+			schedule(0);
+		}
+	}
+
+	/**
+	 * Changes the delay between two rounds. A running round is not affected: the next one starts
+	 * the new interval after the end of the last one, or after now if a round is running.
+	 */
+	public synchronized void setPollingInterval(Duration pollingInterval) {
+		trackingPollingInterval = pollingInterval;
+		if (schedule != null) {
+			schedule.cancel(false);
+			long delay;
+			if (isRoundRunning()) {
+				delay = pollingInterval.toMillis();
+			} else if (lastRoundEndMillis == 0) {
+				delay = 0;
+			} else {
+				delay = Math.max(0, lastRoundEndMillis + pollingInterval.toMillis() - System.currentTimeMillis());
+			}
+			schedule(delay);
+		}
+	}
 
-		executorService.submit(this);
+	public Duration getPollingInterval() {
+		return trackingPollingInterval;
 	}
 
 	/**
-	 * Assures to shut down the Tracker thread
+	 * Assures no more rounds start, and makes the current one end after the user being tracked
 	 */
-	public void stopTracking() {
+	public synchronized void stopTracking() {
 		stop = true;
-		executorService.shutdownNow();
+		if (schedule != null) {
+			schedule.cancel(false);
+			schedule = null;
+		}
 	}
 
-	@Override
-	public void run() {
-		StopWatch stopWatch = new StopWatch();
-		while (true) {
-			if (Thread.currentThread().isInterrupted() || stop) {
-				logger.debug("Tracker stopping");
-				break;
+	/**
+	 * Stops tracking, then waits for the current round to end.
+	 * @return true if no round is running anymore
+	 */
+	public boolean stopTracking(Duration timeout) {
+		stopTracking();
+		try {
+			if (roundLock.tryLock(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+				roundLock.unlock();
+				return true;
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	private void schedule(long initialDelayMillis) {
+		schedule = scheduler.scheduleWithFixedDelay(this, initialDelayMillis, trackingPollingInterval.toMillis(),
+				TimeUnit.MILLISECONDS);
+	}
 
+	public boolean isTracking() {
+		return !stop;
+	}
+
+	public boolean isRoundRunning() {
+		return roundLock.isLocked();
+	}
+
+	public long getLastRoundStartMillis() {
+		return lastRoundStartMillis;
+	}
+
+	public long getLastRoundDurationMillis() {
+		return lastRoundDurationMillis;
+	}
+
+	public int getLastRoundUsers() {
+		return lastRoundUsers;
+	}
+
+	/**
+	 * @return Number of users whose tracking failed in the last round, the others were still tracked
+	 */
+	public int getLastRoundFailures() {
+		return lastRoundFailures;
+	}
+
+	/**
+	 * Runs one tracking round.
+	 */
+	@Override
+	public void run() {
+		roundLock.lock();
+		try {
+			StopWatch stopWatch = new StopWatch();
 			List<User> users = tourGuideService.getAllUsers();
 			logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
+			lastRoundStartMillis = System.currentTimeMillis();
 			stopWatch.start();
-			users.forEach(u -> tourGuideService.trackUserLocation(u));
+			int tracked = 0;
+			int failures = 0;
+			for (User user : users) {
+				if (stop || Thread.currentThread().isInterrupted()) {
+					logger.debug("Tracker stopping");
+					break;
+				}
+				// A failure, e.g. of GpsUtil, only skips this user until the next round
+				try {
+					tourGuideService.trackUserLocation(user);
+					tracked++;
+				} catch (RuntimeException e) {
+					failures++;
+					logger.warn("Tracking failed for " + user.getUserName(), e);
+				}
+			}
 			stopWatch.stop();
+			lastRoundDurationMillis = stopWatch.getTime();
+			lastRoundEndMillis = System.currentTimeMillis();
+			lastRoundUsers = tracked;
+			lastRoundFailures = failures;
 			logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-			stopWatch.reset();
-			try {
-				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(trackingPollingInterval);
-			} catch (InterruptedException e) {
-				break;
-			}
+		} catch (RuntimeException e) {
+			// An exception would cancel the following rounds
+			logger.error("Tracking round failed", e);
+		} finally {
+			roundLock.unlock();
 		}
-
 	}
 }
@@ -0,0 +1,70 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of fixed-size chunks. Appending shares the full chunks with the previous list and only copies
+ * the last partial chunk, and the chunk array when a chunk fills up, instead of the whole list.
+ */
+final class ChunkedList<T> extends AbstractList<T> implements RandomAccess {
+
+	private static final int CHUNK_SIZE = 32;
+	private static final ChunkedList<?> EMPTY = new ChunkedList<>(new Object[0][], new Object[0], 0);
+
+	// Full chunks, shared between the lists appended from each other and never modified
+	private final Object[][] chunks;
+	// Last partial chunk, shorter than CHUNK_SIZE
+	private final Object[] tail;
+	private final int size;
+
+	private ChunkedList(Object[][] chunks, Object[] tail, int size) {
+		this.chunks = chunks;
+		this.tail = tail;
+		this.size = size;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> ChunkedList<T> empty() {
+		return (ChunkedList<T>) EMPTY;
+	}
+
+	static <T> ChunkedList<T> copyOf(List<? extends T> list) {
+		ChunkedList<T> copy = empty();
+		for (T element : list) {
+			copy = copy.with(element);
+		}
+		return copy;
+	}
+
+	/**
+	 * @return A new list with the element appended, this list is unchanged
+	 */
+	ChunkedList<T> with(T element) {
+		Object[] nextTail = Arrays.copyOf(tail, tail.length + 1);
+		nextTail[tail.length] = element;
+		if (nextTail.length < CHUNK_SIZE) {
+			return new ChunkedList<>(chunks, nextTail, size + 1);
+		}
+		Object[][] nextChunks = Arrays.copyOf(chunks, chunks.length + 1);
+		nextChunks[chunks.length] = nextTail;
+		return new ChunkedList<>(nextChunks, new Object[0], size + 1);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+		}
+		int chunk = index / CHUNK_SIZE;
+		return (T) (chunk < chunks.length ? chunks[chunk][index % CHUNK_SIZE] : tail[index % CHUNK_SIZE]);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
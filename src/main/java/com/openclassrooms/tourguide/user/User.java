@@ -1,27 +1,42 @@
 package com.openclassrooms.tourguide.user;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
 
+/**
+ * A TourGuide user. Identity fields are immutable, the rest of the data lives in an immutable {@link UserState}
+ * swapped atomically (compare-and-set) on every change, so tracker, reward and HTTP threads can update the same
+ * user concurrently without locks. Each change is recorded as a {@link UserEvent} in the user's ledger.
+ */
 public class User {
 	private final UUID userId;
 	private final String userName;
-	private String phoneNumber;
-	private String emailAddress;
-	private Date latestLocationTimestamp;
-	private List<VisitedLocation> visitedLocations = new ArrayList<>();
+	private volatile String phoneNumber;
+	private volatile String emailAddress;
 
-	// CopyOnWriteArrayList<>() for thread safety
-	private final List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+	// Current snapshot, replaced with compareAndSet
+	private final AtomicReference<UserState> state = new AtomicReference<>(UserState.empty());
+
+	// Notified after each applied event, e.g. to maintain aggregate indexes
+	private volatile UserEventListener eventListener = UserEventListener.NONE;
+	// Events applied but not delivered yet, by version of the state they were applied to, delivered in version
+	// order by the writer that owns the delivery, so that no writer waits for another
+	private final ConcurrentSkipListMap<Long, Delivery> pendingDeliveries = new ConcurrentSkipListMap<>();
+	private final AtomicBoolean delivering = new AtomicBoolean();
+	// Version of the latest state delivered to the listener, written by the owner of the delivery only
+	private volatile long deliveredVersion;
+
+	private record Delivery(UserEvent event, UserState state) {
+	}
 
-	private UserPreferences userPreferences = new UserPreferences();
-	private List<Provider> tripDeals = new ArrayList<>();
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
 		this.userId = userId;
 		this.userName = userName;
@@ -54,54 +69,168 @@ public class User {
 	}
 	
 	public void setLatestLocationTimestamp(Date latestLocationTimestamp) {
-		this.latestLocationTimestamp = latestLocationTimestamp;
+		record(new UserEvent.LatestLocationTimestampUpdated(latestLocationTimestamp));
 	}
 	
 	public Date getLatestLocationTimestamp() {
-		return latestLocationTimestamp;
+		return state.get().getLatestLocationTimestamp();
 	}
 	
 	public void addToVisitedLocations(VisitedLocation visitedLocation) {
-		visitedLocations.add(visitedLocation);
+		record(new UserEvent.LocationRecorded(visitedLocation));
 	}
 	
+	/**
+	 * @return Read-only snapshot of the visited locations
+	 */
 	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+		return state.get().getVisitedLocations();
 	}
 	
+	/**
+	 * Removes the oldest visited locations from the user, once they are saved elsewhere.
+	 */
+	public void archiveOldestVisitedLocations(int count) {
+		record(new UserEvent.LocationsArchived(count));
+	}
+
 	public void clearVisitedLocations() {
-		visitedLocations.clear();
+		record(new UserEvent.LocationsCleared());
 	}
 	
-	public void addUserReward(UserReward userReward) {
-		// Add the reward if it's not already in the list
-		if(userRewards.stream().noneMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName))) {
-			userRewards.add(userReward);
-		}
+	/**
+	 * Adds the reward unless the user already has one for the same attraction.
+	 * The check and the addition are atomic.
+	 * @return true if the reward was added
+	 */
+	public boolean addUserReward(UserReward userReward) {
+		return record(new UserEvent.RewardEarned(userReward)) != null;
 	}
 
+	/**
+	 * @return Read-only snapshot of the rewards
+	 */
 	public List<UserReward> getUserRewards() {
-		return userRewards;
+		return state.get().getUserRewards();
 	}
 	
+	/**
+	 * @return The immutable preferences: changes are applied with setUserPreferences
+	 */
 	public UserPreferences getUserPreferences() {
-		return userPreferences;
+		return state.get().getUserPreferences();
 	}
 	
 	public void setUserPreferences(UserPreferences userPreferences) {
-		this.userPreferences = userPreferences;
+		record(new UserEvent.PreferencesUpdated(userPreferences));
 	}
 
 	public VisitedLocation getLastVisitedLocation() {
+		List<VisitedLocation> visitedLocations = getVisitedLocations();
 		return visitedLocations.get(visitedLocations.size() - 1);
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
-		this.tripDeals = tripDeals;
+		record(new UserEvent.DealsPriced(tripDeals));
 	}
 	
 	public List<Provider> getTripDeals() {
-		return tripDeals;
+		return state.get().getTripDeals();
+	}
+
+	/**
+	 * @return Consistent snapshot of all the user's data
+	 */
+	public UserState getState() {
+		return state.get();
+	}
+
+	/**
+	 * @return Events recorded for this user, oldest first
+	 */
+	public List<UserEvent> getLedger() {
+		return state.get().getLedger();
+	}
+
+	/**
+	 * Rebuilds the state of a new user from the given events, e.g. a ledger saved earlier.
+	 * The events are recorded one by one, so the listener sees them like any other change.
+	 * @param events Events to replay, oldest first
+	 * @throws IllegalStateException If the user already has a state: its indexed data could not be replaced
+	 */
+	public void replay(List<? extends UserEvent> events) {
+		if (state.get().getVersion() != 0) {
+			throw new IllegalStateException("Only a new user can be replayed, " + userName + " already has a state");
+		}
+		for (UserEvent event : events) {
+			record(event);
+		}
+	}
+
+	/**
+	 * @param eventListener Listener notified of every change applied from now on
+	 */
+	public void setEventListener(UserEventListener eventListener) {
+		this.eventListener = eventListener == null ? UserEventListener.NONE : eventListener;
+	}
+
+	/**
+	 * Applies an event with a compare-and-set loop: concurrent writers retry on the latest snapshot
+	 * instead of blocking each other.
+	 * @return The new state, or null when the event changed nothing
+	 */
+	private UserState record(UserEvent event) {
+		UserState current;
+		UserState next;
+		do {
+			current = state.get();
+			next = current.apply(event);
+			if (next == current) {
+				return null;
+			}
+		} while (!state.compareAndSet(current, next));
+		deliver(event, current, next);
+		return next;
+	}
+
+	/**
+	 * Notifies the listener of an event in the order the events were applied, even when concurrent writers race
+	 * after their compare-and-set. The event is queued, then the queue is drained by whichever writer owns the
+	 * delivery: the others return at once, and the owner delivers their events too. A listener writing to the
+	 * user queues its event, delivered after its own by the same thread.
+	 * A listener failure is thrown to the writer owning the delivery, once the queue is drained.
+	 */
+	private void deliver(UserEvent event, UserState previous, UserState next) {
+		pendingDeliveries.put(previous.getVersion(), new Delivery(event, next));
+		RuntimeException failure = null;
+		// We check again after releasing the ownership: an event queued meanwhile may have found it taken
+		while (isNextDeliveryPending() && delivering.compareAndSet(false, true)) {
+			try {
+				Map.Entry<Long, Delivery> pending;
+				while ((pending = pendingDeliveries.firstEntry()) != null && pending.getKey() == deliveredVersion) {
+					pendingDeliveries.remove(pending.getKey());
+					try {
+						eventListener.onEvent(this, pending.getValue().event(), pending.getValue().state());
+					} catch (RuntimeException e) {
+						failure = failure == null ? e : failure;
+					} finally {
+						// A replayed snapshot keeps its version: versions may jump
+						deliveredVersion = pending.getValue().state().getVersion();
+					}
+				}
+			} finally {
+				delivering.set(false);
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	// The next event to deliver is queued; the ones of later versions wait for its writer to queue it
+	private boolean isNextDeliveryPending() {
+		Map.Entry<Long, Delivery> first = pendingDeliveries.firstEntry();
+		return first != null && first.getKey() == deliveredVersion;
 	}
 
 }
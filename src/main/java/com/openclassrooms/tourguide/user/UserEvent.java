@@ -0,0 +1,98 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.Date;
+import java.util.List;
+
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+
+/**
+ * A change of a user's state, recorded in the user's ledger.
+ * Applying the ledger events in order to an empty {@link UserState} rebuilds the state.
+ */
+public sealed interface UserEvent {
+
+	/**
+	 * @return The state resulting of this event, or the given state itself when the event changes nothing
+	 */
+	UserState applyTo(UserState state);
+
+	record LocationRecorded(VisitedLocation visitedLocation) implements UserEvent {
+		@Override
+		public UserState applyTo(UserState state) {
+			return state.withVisitedLocation(visitedLocation);
+		}
+	}
+
+	record LocationsCleared() implements UserEvent {
+		@Override
+		public UserState applyTo(UserState state) {
+			return state.withoutVisitedLocations();
+		}
+	}
+
+	/**
+	 * The oldest locations were moved to an archive, e.g. the off-heap location history.
+	 * They leave the state and the ledger, which keep growing with the recent locations only.
+	 */
+	record LocationsArchived(int count) implements UserEvent {
+		@Override
+		public UserState applyTo(UserState state) {
+			return count <= 0 ? state : state.withoutOldestVisitedLocations(count);
+		}
+	}
+
+	/**
+	 * Only the first reward of an attraction is kept: a second one for the same attraction is a no-op.
+	 */
+	record RewardEarned(UserReward userReward) implements UserEvent {
+		// We fix the points of the reward from now on, as the indexes sum them when the event is delivered
+		public RewardEarned {
+			userReward.markRecorded();
+		}
+
+		@Override
+		public UserState applyTo(UserState state) {
+			if (state.hasRewardFor(userReward.attraction.attractionName)) {
+				return state;
+			}
+			return state.withUserReward(userReward);
+		}
+	}
+
+	record DealsPriced(List<Provider> tripDeals) implements UserEvent {
+		public DealsPriced {
+			tripDeals = List.copyOf(tripDeals);
+		}
+
+		@Override
+		public UserState applyTo(UserState state) {
+			return state.withTripDeals(tripDeals);
+		}
+	}
+
+	record PreferencesUpdated(UserPreferences userPreferences) implements UserEvent {
+		@Override
+		public UserState applyTo(UserState state) {
+			return state.withUserPreferences(userPreferences);
+		}
+	}
+
+	record LatestLocationTimestampUpdated(Date latestLocationTimestamp) implements UserEvent {
+		@Override
+		public UserState applyTo(UserState state) {
+			return state.withLatestLocationTimestamp(latestLocationTimestamp);
+		}
+	}
+
+	/**
+	 * The events before it in a ledger, folded into the state they produced. Starts a compacted ledger:
+	 * replaying it restores that state, with its version.
+	 */
+	record Compacted(UserState state) implements UserEvent {
+		@Override
+		public UserState applyTo(UserState ignored) {
+			return state;
+		}
+	}
+}
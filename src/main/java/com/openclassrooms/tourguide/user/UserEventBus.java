@@ -0,0 +1,27 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fans out user events to the subscribed listeners. Users registered in TourGuide publish their events here.
+ */
+public class UserEventBus implements UserEventListener {
+
+	private final List<UserEventListener> listeners = new CopyOnWriteArrayList<>();
+
+	public void subscribe(UserEventListener listener) {
+		listeners.add(listener);
+	}
+
+	public void unsubscribe(UserEventListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public void onEvent(User user, UserEvent event, UserState state) {
+		for (UserEventListener listener : listeners) {
+			listener.onEvent(user, event, state);
+		}
+	}
+}
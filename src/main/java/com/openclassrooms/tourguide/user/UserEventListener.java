@@ -0,0 +1,19 @@
+package com.openclassrooms.tourguide.user;
+
+/**
+ * Notified after an event has been applied to a user.
+ * Called on the thread that made the change, so implementations must be fast and thread-safe.
+ */
+@FunctionalInterface
+public interface UserEventListener {
+
+	UserEventListener NONE = (user, event, state) -> {
+	};
+
+	/**
+	 * @param user User that changed
+	 * @param event Applied event
+	 * @param state State of the user right after the event
+	 */
+	void onEvent(User user, UserEvent event, UserState state);
+}
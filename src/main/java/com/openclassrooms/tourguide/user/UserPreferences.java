@@ -1,54 +1,68 @@
 package com.openclassrooms.tourguide.user;
 
-public class UserPreferences {
-	
-	private int attractionProximity = Integer.MAX_VALUE;
-	private int tripDuration = 1;
-	private int ticketQuantity = 1;
-	private int numberOfAdults = 1;
-	private int numberOfChildren = 0;
-	
+/**
+ * Immutable, like the rest of the user's state: a change is a new instance, set on the user,
+ * e.g. {@code user.setUserPreferences(user.getUserPreferences().withTripDuration(3))}.
+ */
+public final class UserPreferences {
+
+	private final int attractionProximity;
+	private final int tripDuration;
+	private final int ticketQuantity;
+	private final int numberOfAdults;
+	private final int numberOfChildren;
+
 	public UserPreferences() {
+		this(Integer.MAX_VALUE, 1, 1, 1, 0);
 	}
-	
-	public void setAttractionProximity(int attractionProximity) {
+
+	public UserPreferences(int attractionProximity, int tripDuration, int ticketQuantity, int numberOfAdults,
+			int numberOfChildren) {
 		this.attractionProximity = attractionProximity;
+		this.tripDuration = tripDuration;
+		this.ticketQuantity = ticketQuantity;
+		this.numberOfAdults = numberOfAdults;
+		this.numberOfChildren = numberOfChildren;
+	}
+
+	public UserPreferences withAttractionProximity(int attractionProximity) {
+		return new UserPreferences(attractionProximity, tripDuration, ticketQuantity, numberOfAdults, numberOfChildren);
 	}
-	
+
 	public int getAttractionProximity() {
 		return attractionProximity;
 	}
-	
+
 	public int getTripDuration() {
 		return tripDuration;
 	}
 
-	public void setTripDuration(int tripDuration) {
-		this.tripDuration = tripDuration;
+	public UserPreferences withTripDuration(int tripDuration) {
+		return new UserPreferences(attractionProximity, tripDuration, ticketQuantity, numberOfAdults, numberOfChildren);
 	}
 
 	public int getTicketQuantity() {
 		return ticketQuantity;
 	}
 
-	public void setTicketQuantity(int ticketQuantity) {
-		this.ticketQuantity = ticketQuantity;
+	public UserPreferences withTicketQuantity(int ticketQuantity) {
+		return new UserPreferences(attractionProximity, tripDuration, ticketQuantity, numberOfAdults, numberOfChildren);
 	}
-	
+
 	public int getNumberOfAdults() {
 		return numberOfAdults;
 	}
 
-	public void setNumberOfAdults(int numberOfAdults) {
-		this.numberOfAdults = numberOfAdults;
+	public UserPreferences withNumberOfAdults(int numberOfAdults) {
+		return new UserPreferences(attractionProximity, tripDuration, ticketQuantity, numberOfAdults, numberOfChildren);
 	}
 
 	public int getNumberOfChildren() {
 		return numberOfChildren;
 	}
 
-	public void setNumberOfChildren(int numberOfChildren) {
-		this.numberOfChildren = numberOfChildren;
+	public UserPreferences withNumberOfChildren(int numberOfChildren) {
+		return new UserPreferences(attractionProximity, tripDuration, ticketQuantity, numberOfAdults, numberOfChildren);
 	}
 
 }
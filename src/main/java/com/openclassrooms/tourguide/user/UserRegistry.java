@@ -0,0 +1,256 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The registered users, indexed by user name and by id. Each user gets a slot: a dense number, given in order of
+ * registration and never reused, so side structures can keep per-user data in plain arrays indexed by slot.
+ * Users are stored in pages of slots, appended under a lock, and read without locking: a view, iterator or
+ * spliterator covers the users registered when it was created, without copying them, and never fails
+ * because of concurrent registrations.
+ */
+public class UserRegistry {
+
+	private static final int PAGE_SHIFT = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private final Map<String, Integer> slotsByName = new ConcurrentHashMap<>();
+	private final Map<UUID, Integer> slotsById = new ConcurrentHashMap<>();
+
+	// Pages are filled before the size is published, so a reader seeing a size sees the users below it
+	private volatile User[][] pages = new User[16][];
+	private volatile int size;
+
+	/**
+	 * Registers a user, unless its name or id is taken already.
+	 * @return Slot of the user, or -1 if it was not registered
+	 */
+	public synchronized int add(User user) {
+		if (slotsByName.containsKey(user.getUserName()) || slotsById.containsKey(user.getUserId())) {
+			return -1;
+		}
+		int slot = size;
+		store(slot, user);
+		size = slot + 1;
+		index(user, slot);
+		return slot;
+	}
+
+	/**
+	 * Registers many users at once, e.g. for an import: the pages are allocated up front and the new users
+	 * published together. Users whose name or id is taken, by a registered user or earlier in the collection,
+	 * are skipped.
+	 * @return The users registered, in slot order
+	 */
+	public synchronized List<User> addAll(Collection<User> users) {
+		List<User> added = new ArrayList<>(users.size());
+		Set<String> names = new HashSet<>();
+		Set<UUID> ids = new HashSet<>();
+		int first = size;
+		ensureCapacity(first + users.size());
+		for (User user : users) {
+			if (slotsByName.containsKey(user.getUserName()) || slotsById.containsKey(user.getUserId())
+					|| !names.add(user.getUserName())) {
+				continue;
+			}
+			if (!ids.add(user.getUserId())) {
+				names.remove(user.getUserName());
+				continue;
+			}
+			store(first + added.size(), user);
+			added.add(user);
+		}
+		size = first + added.size();
+		for (int i = 0; i < added.size(); i++) {
+			index(added.get(i), first + i);
+		}
+		return added;
+	}
+
+	/**
+	 * @return The user, or null if no user has this name
+	 */
+	public User getByName(String userName) {
+		Integer slot = slotsByName.get(userName);
+		return slot == null ? null : get(slot);
+	}
+
+	/**
+	 * @return The user, or null if no user has this id
+	 */
+	public User getById(UUID userId) {
+		Integer slot = slotsById.get(userId);
+		return slot == null ? null : get(slot);
+	}
+
+	/**
+	 * @return Slot of the user with this id, or -1 if there is none
+	 */
+	public int slotOf(UUID userId) {
+		Integer slot = slotsById.get(userId);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @param slot Between 0 and size() - 1
+	 */
+	public User get(int slot) {
+		return pages[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return Read-only list of the users registered at the time of the call, in slot order, backed by the registry
+	 */
+	public List<User> asList() {
+		return new Snapshot(0, size);
+	}
+
+	/**
+	 * @return Spliterator over the users registered at the time of the call, splitting by ranges of slots
+	 */
+	public Spliterator<User> spliterator() {
+		return new SlotSpliterator(0, size);
+	}
+
+	public Stream<User> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	public Stream<User> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	public void forEach(Consumer<? super User> action) {
+		int end = size;
+		for (int slot = 0; slot < end; slot++) {
+			action.accept(get(slot));
+		}
+	}
+
+	// Indexed once published, so that a user found by name or id is always readable in its slot
+	private void index(User user, int slot) {
+		slotsByName.put(user.getUserName(), slot);
+		slotsById.put(user.getUserId(), slot);
+	}
+
+	private void store(int slot, User user) {
+		ensureCapacity(slot + 1);
+		User[][] current = pages;
+		int page = slot >>> PAGE_SHIFT;
+		if (current[page] == null) {
+			current[page] = new User[PAGE_SIZE];
+		}
+		current[page][slot & PAGE_MASK] = user;
+	}
+
+	private void ensureCapacity(int capacity) {
+		int pageCount = (capacity + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+		User[][] current = pages;
+		if (pageCount > current.length) {
+			User[][] grown = new User[Math.max(pageCount, current.length * 2)][];
+			System.arraycopy(current, 0, grown, 0, current.length);
+			pages = grown;
+		}
+	}
+
+	private final class Snapshot extends AbstractList<User> implements RandomAccess {
+		private final int from;
+		private final int to;
+
+		private Snapshot(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public User get(int index) {
+			if (index < 0 || index >= to - from) {
+				throw new IndexOutOfBoundsException("Index " + index + " out of " + (to - from) + " users");
+			}
+			return UserRegistry.this.get(from + index);
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+
+		@Override
+		public List<User> subList(int fromIndex, int toIndex) {
+			if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+				throw new IndexOutOfBoundsException("Range " + fromIndex + "-" + toIndex + " out of " + size() + " users");
+			}
+			return new Snapshot(from + fromIndex, from + toIndex);
+		}
+
+		@Override
+		public Spliterator<User> spliterator() {
+			return new SlotSpliterator(from, to);
+		}
+	}
+
+	private final class SlotSpliterator implements Spliterator<User> {
+		private int next;
+		private final int end;
+
+		private SlotSpliterator(int next, int end) {
+			this.next = next;
+			this.end = end;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super User> action) {
+			if (next >= end) {
+				return false;
+			}
+			action.accept(get(next++));
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super User> action) {
+			for (; next < end; next++) {
+				action.accept(get(next));
+			}
+		}
+
+		@Override
+		public Spliterator<User> trySplit() {
+			int middle = (next + end) >>> 1;
+			if (middle <= next) {
+				return null;
+			}
+			Spliterator<User> prefix = new SlotSpliterator(next, middle);
+			next = middle;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return end - next;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SIZED | SUBSIZED | NONNULL | DISTINCT | IMMUTABLE;
+		}
+	}
+}
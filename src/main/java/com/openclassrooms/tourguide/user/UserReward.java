@@ -7,24 +7,37 @@ public class UserReward {
 
 	public final VisitedLocation visitedLocation;
 	public final Attraction attraction;
-	private int rewardPoints;
+	private volatile int rewardPoints;
+	// Set once the reward is in a user's ledger: its points are then part of the user's state
+	private volatile boolean recorded;
 	public UserReward(VisitedLocation visitedLocation, Attraction attraction, int rewardPoints) {
 		this.visitedLocation = visitedLocation;
 		this.attraction = attraction;
 		this.rewardPoints = rewardPoints;
 	}
-	
+
 	public UserReward(VisitedLocation visitedLocation, Attraction attraction) {
 		this.visitedLocation = visitedLocation;
 		this.attraction = attraction;
 	}
 
+	/**
+	 * @throws IllegalStateException If the reward was already added to a user
+	 */
 	public void setRewardPoints(int rewardPoints) {
+		if (recorded) {
+			throw new IllegalStateException("The points of a reward added to a user can't change: "
+					+ attraction.attractionName);
+		}
 		this.rewardPoints = rewardPoints;
 	}
-	
+
 	public int getRewardPoints() {
 		return rewardPoints;
 	}
-	
+
+	void markRecorded() {
+		recorded = true;
+	}
+
 }
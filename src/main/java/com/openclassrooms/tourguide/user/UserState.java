@@ -0,0 +1,199 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+
+/**
+ * Immutable snapshot of a user's mutable data. Every change produces a new snapshot,
+ * so readers always get a consistent view without locking.
+ * The snapshot also carries the ledger of events that produced it: the latest events, after a snapshot of the
+ * state they were applied to once the ledger grows too long.
+ */
+public final class UserState {
+
+	// Events kept in the ledger after its snapshot, before it is compacted
+	static final int LEDGER_TAIL = 64;
+
+	private static final UserState EMPTY = new UserState(ChunkedList.empty(), ChunkedList.empty(), List.of(),
+			new UserPreferences(), null, 0, null);
+
+	private final ChunkedList<VisitedLocation> visitedLocations;
+	private final ChunkedList<UserReward> userRewards;
+	private final List<Provider> tripDeals;
+	private final UserPreferences userPreferences;
+	private final Date latestLocationTimestamp;
+	private final long version;
+	private final LedgerEntry ledger;
+
+	private UserState(ChunkedList<VisitedLocation> visitedLocations, ChunkedList<UserReward> userRewards,
+			List<Provider> tripDeals, UserPreferences userPreferences, Date latestLocationTimestamp, long version,
+			LedgerEntry ledger) {
+		this.visitedLocations = visitedLocations;
+		this.userRewards = userRewards;
+		this.tripDeals = tripDeals;
+		this.userPreferences = userPreferences;
+		this.latestLocationTimestamp = latestLocationTimestamp;
+		this.version = version;
+		this.ledger = ledger;
+	}
+
+	public static UserState empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Rebuilds a state by applying events in order to an empty state.
+	 * @param events Events of a ledger, oldest first
+	 */
+	public static UserState replay(Iterable<? extends UserEvent> events) {
+		UserState state = EMPTY;
+		for (UserEvent event : events) {
+			state = state.apply(event);
+		}
+		return state;
+	}
+
+	/**
+	 * @return The state after the event, with the event appended to the ledger, or this state if nothing changed
+	 */
+	public UserState apply(UserEvent event) {
+		UserState next = event.applyTo(this);
+		if (next == this) {
+			return this;
+		}
+		if (event instanceof UserEvent.Compacted) {
+			// A snapshot starts a ledger, with the version it was taken at
+			return next.withLedger(next.version, new LedgerEntry(event, null));
+		}
+		LedgerEntry nextLedger;
+		if (event instanceof UserEvent.LocationsArchived) {
+			// The archived locations leave the ledger too: it restarts from a snapshot of the new state
+			nextLedger = new LedgerEntry(new UserEvent.Compacted(next.withLedger(version + 1, null)), null);
+		} else if (ledger != null && ledger.length >= LEDGER_TAIL) {
+			// We fold the ledger into a snapshot of this state, so it does not grow for the life of the user
+			nextLedger = new LedgerEntry(event, new LedgerEntry(new UserEvent.Compacted(withLedger(version, null)), null));
+		} else {
+			nextLedger = new LedgerEntry(event, ledger);
+		}
+		return next.withLedger(version + 1, nextLedger);
+	}
+
+	public List<VisitedLocation> getVisitedLocations() {
+		return visitedLocations;
+	}
+
+	public List<UserReward> getUserRewards() {
+		return userRewards;
+	}
+
+	public List<Provider> getTripDeals() {
+		return tripDeals;
+	}
+
+	public UserPreferences getUserPreferences() {
+		return userPreferences;
+	}
+
+	public Date getLatestLocationTimestamp() {
+		return latestLocationTimestamp;
+	}
+
+	/**
+	 * @return Number of events applied since the empty state, increases on every change
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public boolean hasRewardFor(String attractionName) {
+		for (UserReward userReward : userRewards) {
+			if (userReward.attraction.attractionName.equals(attractionName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The events that produced this state, oldest first
+	 */
+	public List<UserEvent> getLedger() {
+		return Collections.unmodifiableList(Arrays.asList(ledgerEvents(ledger)));
+	}
+
+	UserState withVisitedLocation(VisitedLocation visitedLocation) {
+		return new UserState(visitedLocations.with(visitedLocation), userRewards, tripDeals, userPreferences,
+				visitedLocation.timeVisited, version, ledger);
+	}
+
+	UserState withoutVisitedLocations() {
+		return new UserState(ChunkedList.empty(), userRewards, tripDeals, userPreferences, latestLocationTimestamp,
+				version, ledger);
+	}
+
+	UserState withoutOldestVisitedLocations(int count) {
+		int archived = Math.min(count, visitedLocations.size());
+		if (archived == 0) {
+			return this;
+		}
+		ChunkedList<VisitedLocation> kept = ChunkedList.copyOf(
+				visitedLocations.subList(archived, visitedLocations.size()));
+		return new UserState(kept, userRewards, tripDeals, userPreferences, latestLocationTimestamp, version, ledger);
+	}
+
+	UserState withUserReward(UserReward userReward) {
+		return new UserState(visitedLocations, userRewards.with(userReward), tripDeals, userPreferences,
+				latestLocationTimestamp, version, ledger);
+	}
+
+	UserState withTripDeals(List<Provider> tripDeals) {
+		return new UserState(visitedLocations, userRewards, tripDeals, userPreferences, latestLocationTimestamp,
+				version, ledger);
+	}
+
+	UserState withUserPreferences(UserPreferences userPreferences) {
+		return new UserState(visitedLocations, userRewards, tripDeals, userPreferences, latestLocationTimestamp,
+				version, ledger);
+	}
+
+	UserState withLatestLocationTimestamp(Date latestLocationTimestamp) {
+		return new UserState(visitedLocations, userRewards, tripDeals, userPreferences, latestLocationTimestamp,
+				version, ledger);
+	}
+
+	private UserState withLedger(long version, LedgerEntry ledger) {
+		return new UserState(visitedLocations, userRewards, tripDeals, userPreferences, latestLocationTimestamp,
+				version, ledger);
+	}
+
+	// Events of the ledger, oldest first
+	private static UserEvent[] ledgerEvents(LedgerEntry ledger) {
+		int size = 0;
+		for (LedgerEntry entry = ledger; entry != null; entry = entry.previous) {
+			size++;
+		}
+		UserEvent[] events = new UserEvent[size];
+		for (LedgerEntry entry = ledger; entry != null; entry = entry.previous) {
+			events[--size] = entry.event;
+		}
+		return events;
+	}
+
+	// Persistent singly linked ledger: appending shares all previous entries with older snapshots
+	private static final class LedgerEntry {
+		private final UserEvent event;
+		private final LedgerEntry previous;
+		private final int length;
+
+		private LedgerEntry(UserEvent event, LedgerEntry previous) {
+			this.event = event;
+			this.previous = previous;
+			this.length = previous == null ? 1 : previous.length + 1;
+		}
+	}
+}
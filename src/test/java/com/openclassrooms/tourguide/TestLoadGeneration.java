@@ -0,0 +1,121 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.loadgen.Calibration;
+import com.openclassrooms.tourguide.loadgen.FakeGpsUtil;
+import com.openclassrooms.tourguide.loadgen.FakeRewardCentral;
+import com.openclassrooms.tourguide.loadgen.FakeTripPricer;
+import com.openclassrooms.tourguide.loadgen.LatencyProfile;
+import com.openclassrooms.tourguide.loadgen.LoadDriver;
+import com.openclassrooms.tourguide.loadgen.LoadReport;
+import com.openclassrooms.tourguide.loadgen.LoadTargets;
+import com.openclassrooms.tourguide.loadgen.MovementModel;
+import com.openclassrooms.tourguide.loadgen.PerformanceBaseline;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestLoadGeneration {
+
+	@Test
+	public void trackClusteredUsersAtTargetRate() {
+		FakeGpsUtil gpsUtil = FakeGpsUtil.withRealAttractions(
+				MovementModel.clustered(FakeGpsUtil.realAttractions(), 1, 0.8), LatencyProfile.fixed(1));
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.none()));
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService,
+				new FakeTripPricer(LatencyProfile.none()));
+
+		List<User> users = createUsers(tourGuideService, 50);
+		LoadReport report = new LoadDriver(8).runAtRate("trackUserLocation",
+				LoadTargets.trackUserLocation(tourGuideService, users), 500, 1000);
+		tourGuideService.tracker.stopTracking();
+
+		System.out.println(report);
+		assertEquals(500, report.getOperations());
+		assertEquals(0, report.getErrors());
+		// The tracker may also have polled the users once
+		assertTrue(gpsUtil.getCallCount() >= 500);
+		assertTrue(report.getP50Millis() >= 1);
+		assertTrue(report.getP999Millis() >= report.getP99Millis());
+		// Clustered tourists stay within a few miles of attractions, so they earn rewards
+		assertTrue(users.stream().anyMatch(u -> !u.getUserRewards().isEmpty()));
+	}
+
+	@Test
+	public void downstreamErrorsAreReported() {
+		FakeGpsUtil gpsUtil = FakeGpsUtil.withRealAttractions(MovementModel.randomWalk(5), LatencyProfile.none());
+		RewardsService rewardsService = new RewardsService(gpsUtil,
+				new FakeRewardCentral(LatencyProfile.none().withErrorRate(1)));
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService,
+				new FakeTripPricer(LatencyProfile.none()));
+		tourGuideService.setDisableAutoRewardCalculation(true);
+
+		List<User> users = createUsers(tourGuideService, 10);
+		users.forEach(tourGuideService::trackUserLocation);
+		LoadReport report = new LoadDriver(4).runClosed("calculateRewards",
+				LoadTargets.calculateRewards(rewardsService, users), 100);
+		tourGuideService.tracker.stopTracking();
+
+		System.out.println(report);
+		assertEquals(100, report.getOperations());
+		assertEquals(100, report.getErrors());
+	}
+
+	@Test
+	public void regressionsAreComparedToTheBaseline() {
+		Calibration recorded = new Calibration(100, 4);
+		PerformanceBaseline baseline = new PerformanceBaseline(recorded, Map.of(
+				"trackLocation/none/1000", new PerformanceBaseline.Measurement(1000, 10, true),
+				"getRewards/none/1000", new PerformanceBaseline.Measurement(1000, 10, true),
+				"getRewards/realistic/1000", new PerformanceBaseline.Measurement(100, 200, false)));
+
+		List<String> regressions = baseline.regressions(Map.of(
+				// Within the tolerance and the p99 slack
+				"trackLocation/none/1000", new PerformanceBaseline.Measurement(800, 13.5, true),
+				// Slower and later
+				"getRewards/none/1000", new PerformanceBaseline.Measurement(700, 15, true),
+				// Waiting on the stubs: not scaled
+				"getRewards/realistic/1000", new PerformanceBaseline.Measurement(100, 200, false),
+				// No baseline to compare with
+				"getRewards/none/10000", new PerformanceBaseline.Measurement(1, 1000, true)), recorded, 0.25, 0.25, 1);
+
+		assertEquals(3, regressions.size(), regressions.toString());
+		assertEquals(2, regressions.stream().filter(regression -> regression.startsWith("getRewards/none/1000:")).count());
+		assertTrue(regressions.stream().anyMatch(regression -> regression.startsWith("getRewards/none/10000: no baseline")));
+
+		// On a machine twice as fast, the CPU-bound results are expected twice as fast, the others unchanged
+		Calibration faster = new Calibration(200, 4);
+		regressions = baseline.regressions(Map.of(
+				"trackLocation/none/1000", new PerformanceBaseline.Measurement(1000, 10, true),
+				"getRewards/realistic/1000", new PerformanceBaseline.Measurement(100, 200, false)), faster, 0.25, 0.25, 1);
+		assertEquals(2, regressions.size(), regressions.toString());
+		assertTrue(regressions.stream().allMatch(regression -> regression.startsWith("trackLocation/none/1000")));
+
+		// Another number of cores cannot be calibrated
+		assertThrows(IllegalArgumentException.class,
+				() -> baseline.regressions(Map.of(), new Calibration(100, 8), 0.25, 0.25, 1));
+
+		// Baselines are recorded as the weakest of several runs
+		assertEquals(new PerformanceBaseline.Measurement(700, 15, true), PerformanceBaseline.Measurement.weakest(
+				new PerformanceBaseline.Measurement(1000, 15, true), new PerformanceBaseline.Measurement(700, 10, true)));
+	}
+
+	private List<User> createUsers(TourGuideService tourGuideService, int count) {
+		List<User> users = IntStream.range(0, count)
+				.mapToObj(i -> new User(UUID.randomUUID(), "loadUser" + i, "000", "loadUser" + i + "@tourGuide.com"))
+				.toList();
+		users.forEach(tourGuideService::addUser);
+		return users;
+	}
+}
@@ -0,0 +1,93 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.history.LocationHistoryStore;
+import com.openclassrooms.tourguide.loadgen.FakeGpsUtil;
+import com.openclassrooms.tourguide.loadgen.FakeRewardCentral;
+import com.openclassrooms.tourguide.loadgen.LatencyProfile;
+import com.openclassrooms.tourguide.loadgen.MovementModel;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestLocationHistoryStore {
+
+	@Test
+	public void storesAndScansLocationsAcrossBlocks() {
+		LocationHistoryStore store = LocationHistoryStore.inMemory();
+		UUID userId = UUID.randomUUID();
+		UUID otherUserId = UUID.randomUUID();
+		for (int i = 0; i < 100; i++) {
+			store.append(userId, i, -i, 1000L * i);
+			store.append(otherUserId, 50, 50, 0);
+		}
+
+		assertEquals(100, store.size(userId));
+		assertEquals(2, store.getUserCount());
+		assertEquals(70, store.findFirst(userId, (latitude, longitude, time) -> latitude >= 70));
+		assertEquals(-1, store.findFirst(userId, (latitude, longitude, time) -> time > 1_000_000));
+		VisitedLocation visitedLocation = store.get(userId, 42);
+		assertEquals(userId, visitedLocation.userId);
+		assertEquals(-42, visitedLocation.location.longitude);
+		assertEquals(42_000, visitedLocation.timeVisited.getTime());
+		assertEquals(100, store.getAll(userId).size());
+	}
+
+	@Test
+	public void mappedStoreSurvivesReopening(@TempDir Path directory) throws Exception {
+		UUID userId = UUID.randomUUID();
+		try (LocationHistoryStore store = LocationHistoryStore.mapped(directory)) {
+			for (int i = 0; i < 40; i++) {
+				store.append(userId, new VisitedLocation(userId, new Location(i, i), new Date(i)));
+			}
+		}
+		try (LocationHistoryStore store = LocationHistoryStore.mapped(directory)) {
+			assertEquals(40, store.size(userId));
+			assertEquals(39, store.get(userId, 39).location.latitude);
+			store.append(userId, 40, 40, 40);
+			assertEquals(41, store.getAll(userId).size());
+		}
+	}
+
+	@Test
+	public void trackingArchivesOlderLocationsOffHeap() {
+		FakeGpsUtil gpsUtil = FakeGpsUtil.withRealAttractions(MovementModel.uniform(), LatencyProfile.none());
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.none()));
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		tourGuideService.setDisableAutoRewardCalculation(true);
+		tourGuideService.setLocationHistory(LocationHistoryStore.inMemory(), 10);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date(0)));
+		for (int i = 0; i < 100; i++) {
+			tourGuideService.trackUserLocation(user);
+		}
+
+		// Never more than twice the on-heap limit on the user, in the state and in the ledger
+		assertTrue(user.getVisitedLocations().size() <= 20);
+		assertTrue(user.getLedger().size() <= 20);
+		List<VisitedLocation> history = tourGuideService.getLocationHistory(user);
+		assertEquals(101, history.size());
+		assertEquals(attraction.latitude, history.get(0).location.latitude);
+
+		// The visit of the attraction is only in the archive, the full recalculation finds it
+		rewardsService.calculateRewards(user);
+		assertTrue(user.getUserRewards().stream().noneMatch(r -> r.attraction.attractionName.equals(attraction.attractionName)));
+		rewardsService.recalculateRewards(user);
+		assertTrue(user.getUserRewards().stream().anyMatch(r -> r.attraction.attractionName.equals(attraction.attractionName)));
+	}
+}
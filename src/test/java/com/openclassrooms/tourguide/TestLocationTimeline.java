@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.index.LocationTimeline;
+import com.openclassrooms.tourguide.loadgen.FakeRewardCentral;
+import com.openclassrooms.tourguide.loadgen.LatencyProfile;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+public class TestLocationTimeline {
+
+	private static final long HOUR = 3_600_000L;
+
+	@Test
+	public void trajectorySpansDaysInTimeOrder() {
+		LocationTimeline timeline = new LocationTimeline(30);
+		UUID userId = UUID.randomUUID();
+		UUID otherUserId = UUID.randomUUID();
+		long now = System.currentTimeMillis();
+		// Added out of order, over three days
+		for (int hours : new int[] { 50, 2, 26, 70 }) {
+			timeline.add(new VisitedLocation(userId, new Location(hours, hours), new Date(now - hours * HOUR)));
+			timeline.add(new VisitedLocation(otherUserId, new Location(0, 0), new Date(now - hours * HOUR)));
+		}
+
+		List<VisitedLocation> trajectory = timeline.getTrajectory(userId, now - 60 * HOUR, now);
+
+		assertEquals(List.of(50d, 26d, 2d), trajectory.stream().map(visitedLocation -> visitedLocation.location.latitude).toList());
+		assertTrue(trajectory.stream().allMatch(visitedLocation -> visitedLocation.userId.equals(userId)));
+		assertEquals(8, timeline.size());
+	}
+
+	@Test
+	public void visitorsMatchAScanOfEveryLocation() {
+		LocationTimeline timeline = new LocationTimeline(30);
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new FakeRewardCentral(LatencyProfile.none()));
+		Random random = new Random(11);
+		long now = System.currentTimeMillis();
+		List<UUID> users = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			users.add(UUID.randomUUID());
+		}
+		List<VisitedLocation> all = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			// Locations gathered around a few places, one of them on the antimeridian
+			double latitude = (i % 3) * 30 + random.nextGaussian() * 2;
+			double longitude = (i % 3 == 0 ? 179.5 : -100) + random.nextGaussian() * 2;
+			longitude = longitude > 180 ? longitude - 360 : longitude;
+			VisitedLocation visitedLocation = new VisitedLocation(users.get(random.nextInt(users.size())),
+					new Location(latitude, longitude), new Date(now - random.nextInt(10 * 24) * HOUR));
+			all.add(visitedLocation);
+			timeline.add(visitedLocation);
+		}
+
+		long from = now - 5 * 24 * HOUR;
+		for (Location center : List.of(new Location(0, -179.9), new Location(30, -100), new Location(60, -100))) {
+			for (double radius : new double[] { 10, 100, 5000 }) {
+				Map<UUID, Integer> expected = new HashMap<>();
+				for (VisitedLocation visitedLocation : all) {
+					long time = visitedLocation.timeVisited.getTime();
+					if (time >= from && time <= now && rewardsService.getDistance(center, visitedLocation.location) <= radius) {
+						expected.merge(visitedLocation.userId, 1, Integer::sum);
+					}
+				}
+				Map<UUID, Integer> found = new HashMap<>();
+				for (LocationTimeline.Visitor visitor : timeline.getVisitors(center, radius, from, now)) {
+					found.put(visitor.userId(), visitor.visits());
+					assertTrue(visitor.closestMiles() <= radius);
+				}
+				assertEquals(expected, found, center.latitude + "," + center.longitude + " within " + radius);
+			}
+		}
+	}
+
+	@Test
+	public void locationsOlderThanTheRetentionAreNotKept() {
+		LocationTimeline timeline = new LocationTimeline(2);
+		UUID userId = UUID.randomUUID();
+		long now = System.currentTimeMillis();
+		timeline.add(new VisitedLocation(userId, new Location(0, 0), new Date(now - 5 * 24 * HOUR)));
+		timeline.add(new VisitedLocation(userId, new Location(0, 0), new Date(now)));
+
+		assertEquals(1, timeline.size());
+		assertEquals(1, timeline.getSegmentCount());
+	}
+}
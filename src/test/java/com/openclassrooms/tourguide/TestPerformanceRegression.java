@@ -0,0 +1,162 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.config.TourGuideProperties;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.loadgen.Calibration;
+import com.openclassrooms.tourguide.loadgen.FakeGpsUtil;
+import com.openclassrooms.tourguide.loadgen.FakeRewardCentral;
+import com.openclassrooms.tourguide.loadgen.FakeTripPricer;
+import com.openclassrooms.tourguide.loadgen.LatencyProfile;
+import com.openclassrooms.tourguide.loadgen.LoadDriver;
+import com.openclassrooms.tourguide.loadgen.LoadReport;
+import com.openclassrooms.tourguide.loadgen.LoadTargets;
+import com.openclassrooms.tourguide.loadgen.MovementModel;
+import com.openclassrooms.tourguide.loadgen.PerformanceBaseline;
+import com.openclassrooms.tourguide.loadgen.ScalingReport;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Regression gate over the TestPerformance scenarios, run with mvn -Pperformance test.
+ * Each scenario runs at several populations with zero-latency and realistic-latency fakes, and fails when its
+ * throughput or p99 latency regresses beyond the tolerance against the baselines of
+ * src/test/resources/performance/baselines.json, or has no baseline. The zero-latency results are compared
+ * after scaling the baselines by a calibration run in the same JVM, see PerformanceBaseline.
+ * Baselines are kept per number of cores, and are to be recorded on the CI runners: on a machine whose number
+ * of cores has no baseline, the gate is skipped.
+ * The scaling report is written to target/performance.
+ *
+ * System properties: perf.users and perf.realisticUsers (comma separated populations), perf.tolerance
+ * and perf.p99Tolerance (relative, 0.3 and 1 by default), perf.p99SlackMillis (absolute, 2 by default),
+ * and perf.updateBaseline=true to record the results as the new baselines instead of comparing them: the
+ * scenarios then run perf.baselineRuns times, 3 by default, and the weakest result of each is recorded.
+ */
+@Tag("performance")
+public class TestPerformanceRegression {
+
+	private static final String BASELINE_RESOURCE = "/performance/baselines.json";
+	private static final Path BASELINE_SOURCE = Path.of("src/test/resources/performance/baselines.json");
+	private static final Path REPORT = Path.of("target/performance/scaling-report.txt");
+
+	// Workers of the load driver: as many as the tracking pool without latency, more to overlap the stub sleeps
+	private static final int CONCURRENCY = TourGuideProperties.DEFAULT_POOL_SIZE;
+	private static final int REALISTIC_CONCURRENCY = 200;
+
+	@Test
+	public void scenariosDoNotRegress() {
+		Calibration calibration = Calibration.measure();
+		System.out.println("Calibration: " + calibration);
+		PerformanceBaseline baseline = PerformanceBaseline.fromResource(BASELINE_RESOURCE, calibration.cores());
+		boolean update = Boolean.getBoolean("perf.updateBaseline");
+		// Only the machines with a baseline of their number of cores, e.g. the CI runners, are gated
+		assumeTrue(update || !baseline.isEmpty(), "No baseline recorded with " + calibration.cores()
+				+ " cores: record one on this machine with -Dperf.updateBaseline=true");
+
+		// Warms up the JIT, so the smallest population is not measured in the interpreter
+		trackLocation(1000, false);
+		getRewards(1000, false);
+
+		if (update) {
+			// The weakest result of several runs, so that the gate does not fail on the noise of the next one
+			Map<String, PerformanceBaseline.Measurement> results = new TreeMap<>();
+			for (int run = Integer.getInteger("perf.baselineRuns", 3); run > 0; run--) {
+				runScenarios(baseline).forEach((key, measured) -> results.merge(key, measured,
+						PerformanceBaseline.Measurement::weakest));
+			}
+			baseline.with(calibration, results).write(BASELINE_SOURCE);
+			return;
+		}
+		List<String> regressions = baseline.regressions(runScenarios(baseline), calibration,
+				Double.parseDouble(System.getProperty("perf.tolerance", "0.3")),
+				Double.parseDouble(System.getProperty("perf.p99Tolerance", "1")),
+				Double.parseDouble(System.getProperty("perf.p99SlackMillis", "2")));
+		assertTrue(regressions.isEmpty(), "Performance regressions:\n" + String.join("\n", regressions));
+	}
+
+	// Every scenario at every population, with the scaling report written
+	private Map<String, PerformanceBaseline.Measurement> runScenarios(PerformanceBaseline baseline) {
+		Map<String, PerformanceBaseline.Measurement> results = new TreeMap<>();
+		ScalingReport report = new ScalingReport();
+		for (boolean realistic : new boolean[] { false, true }) {
+			String profile = realistic ? "realistic" : "none";
+			List<Integer> populations = populations(realistic ? "perf.realisticUsers" : "perf.users",
+					realistic ? "1000,10000" : "1000,10000,100000");
+			for (String scenario : List.of("trackLocation", "getRewards")) {
+				for (int users : populations) {
+					LoadReport run = scenario.equals("trackLocation") ? trackLocation(users, realistic)
+							: getRewards(users, realistic);
+					assertEquals(0, run.getErrors(), scenario + " failed");
+					String key = scenario + "/" + profile + "/" + users;
+					results.put(key, PerformanceBaseline.Measurement.of(run, !realistic));
+					report.add(scenario + "/" + profile, users, run, baseline.get(key));
+				}
+			}
+		}
+		report.write(REPORT);
+		System.out.println(report);
+		return results;
+	}
+
+	// highVolumeTrackLocation: every user tracked once
+	private LoadReport trackLocation(int users, boolean realistic) {
+		FakeGpsUtil gpsUtil = FakeGpsUtil.withRealAttractions(MovementModel.uniform(),
+				realistic ? LatencyProfile.realisticGps() : LatencyProfile.none());
+		TourGuideService tourGuideService = createService(gpsUtil, createRewardsService(gpsUtil, realistic), users);
+		try {
+			return new LoadDriver(realistic ? REALISTIC_CONCURRENCY : CONCURRENCY).runClosed("trackLocation",
+					LoadTargets.trackUserLocation(tourGuideService, tourGuideService.getAllUsers()), users);
+		} finally {
+			tourGuideService.tracker.stopTracking();
+		}
+	}
+
+	// highVolumeGetRewards: every user visited the same attraction, then gets its rewards calculated once
+	private LoadReport getRewards(int users, boolean realistic) {
+		FakeGpsUtil gpsUtil = FakeGpsUtil.withRealAttractions(MovementModel.uniform(), LatencyProfile.none());
+		RewardsService rewardsService = createRewardsService(gpsUtil, realistic);
+		TourGuideService tourGuideService = createService(gpsUtil, rewardsService, users);
+		try {
+			Attraction attraction = rewardsService.getAttractions().get(0);
+			List<User> allUsers = tourGuideService.getAllUsers();
+			allUsers.forEach(u -> u.addToVisitedLocations(new VisitedLocation(u.getUserId(), attraction, new Date())));
+
+			LoadReport report = new LoadDriver(realistic ? REALISTIC_CONCURRENCY : CONCURRENCY).runClosed("getRewards",
+					LoadTargets.calculateRewards(rewardsService, allUsers), users);
+			assertTrue(allUsers.stream().noneMatch(user -> user.getUserRewards().isEmpty()));
+			return report;
+		} finally {
+			tourGuideService.tracker.stopTracking();
+		}
+	}
+
+	private RewardsService createRewardsService(FakeGpsUtil gpsUtil, boolean realistic) {
+		return new RewardsService(gpsUtil,
+				new FakeRewardCentral(realistic ? LatencyProfile.realisticRewards() : LatencyProfile.none()));
+	}
+
+	private TourGuideService createService(FakeGpsUtil gpsUtil, RewardsService rewardsService, int users) {
+		InternalTestHelper.setInternalUserNumber(users);
+		return new TourGuideService(gpsUtil, rewardsService, new FakeTripPricer(LatencyProfile.none()));
+	}
+
+	private static List<Integer> populations(String property, String defaults) {
+		return Arrays.stream(System.getProperty(property, defaults).split(","))
+				.map(String::trim)
+				.map(Integer::valueOf)
+				.toList();
+	}
+}
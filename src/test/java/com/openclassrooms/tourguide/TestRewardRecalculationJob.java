@@ -0,0 +1,136 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import gpsUtil.GpsUtil;
+import tripPricer.TripPricer;
+import com.openclassrooms.tourguide.config.TourGuideProperties;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.lifecycle.ExecutorRegistry;
+import com.openclassrooms.tourguide.loadgen.FakeRewardCentral;
+import com.openclassrooms.tourguide.loadgen.LatencyProfile;
+import com.openclassrooms.tourguide.recalculation.RecalculationCheckpoint;
+import com.openclassrooms.tourguide.recalculation.RecalculationStatus;
+import com.openclassrooms.tourguide.recalculation.RewardRecalculationJob;
+import com.openclassrooms.tourguide.rules.RewardRule;
+import com.openclassrooms.tourguide.rules.RewardRuleSet;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestRewardRecalculationJob {
+
+	@TempDir
+	Path checkpointDirectory;
+
+	ExecutorRegistry executorRegistry = new ExecutorRegistry(Duration.ofSeconds(5));
+	RewardsService rewardsService;
+
+	@Test
+	public void recalculatesEveryUserOnceAndCheckpoints() {
+		TourGuideService tourGuideService = createService(20);
+		RewardRecalculationJob job = createJob(tourGuideService, 4);
+		int attractionCount = rewardsService.getAttractions().size();
+
+		job.startRun();
+		assertTrue(job.awaitIdle(Duration.ofSeconds(30)));
+
+		RecalculationStatus status = job.getStatus();
+		assertEquals(4, status.completedPartitions());
+		assertEquals(20, status.usersProcessed());
+		assertEquals(20L * attractionCount, status.rewardsEarned());
+		assertTrue(RecalculationCheckpoint.read(checkpointDirectory.resolve("recalculation.checkpoint")).isComplete());
+
+		// Rewards already earned are kept as they are
+		job.startRun();
+		assertTrue(job.awaitIdle(Duration.ofSeconds(30)));
+		assertEquals(0, job.getStatus().rewardsEarned());
+		for (User user : tourGuideService.getAllUsers()) {
+			assertEquals(attractionCount, user.getUserRewards().size());
+		}
+	}
+
+	@Test
+	public void resumesTheRemainingPartitionsAtStartup() {
+		TourGuideService tourGuideService = createService(20);
+		// Checkpoint of a run that stopped after its first two partitions
+		RecalculationCheckpoint.start(4, rewardsService.getRewardRules().describe())
+				.withCompletedPartition(0, 0, 0).withCompletedPartition(1, 0, 0)
+				.write(checkpointDirectory.resolve("recalculation.checkpoint"));
+
+		RewardRecalculationJob job = createJob(tourGuideService, 4);
+		job.start();
+		assertTrue(job.awaitIdle(Duration.ofSeconds(30)));
+		job.stop();
+
+		assertEquals(4, job.getStatus().completedPartitions());
+		for (User user : tourGuideService.getAllUsers()) {
+			boolean done = Math.floorMod(user.getUserName().hashCode(), 4) < 2;
+			assertEquals(done, user.getUserRewards().isEmpty(), user.getUserName());
+		}
+	}
+
+	@Test
+	public void startsOverACheckpointOfOtherRules() {
+		TourGuideService tourGuideService = createService(20);
+		// Same progress, checkpointed before the proximity buffer changed
+		String previousRules = RewardRuleSet.withDefaultRule(RewardRule.withinMiles(10)).describe();
+		RecalculationCheckpoint.start(4, previousRules).withCompletedPartition(0, 0, 0).withCompletedPartition(1, 0, 0)
+				.write(checkpointDirectory.resolve("recalculation.checkpoint"));
+
+		RewardRecalculationJob job = createJob(tourGuideService, 4);
+		job.start();
+		assertTrue(job.awaitIdle(Duration.ofSeconds(30)));
+		job.stop();
+
+		assertEquals(20, job.getStatus().usersProcessed());
+		assertEquals(rewardsService.getRewardRules().describe(),
+				RecalculationCheckpoint.read(checkpointDirectory.resolve("recalculation.checkpoint")).getRules());
+		for (User user : tourGuideService.getAllUsers()) {
+			assertFalse(user.getUserRewards().isEmpty(), user.getUserName());
+		}
+	}
+
+	@Test
+	public void pausesAndResumes() throws InterruptedException {
+		TourGuideService tourGuideService = createService(40);
+		RewardRecalculationJob job = createJob(tourGuideService, 2);
+		job.throttle(100);
+
+		job.startRun();
+		job.pause();
+		Thread.sleep(200);
+		long processed = job.getStatus().usersProcessed();
+		Thread.sleep(200);
+		assertEquals(RewardRecalculationJob.State.PAUSED, job.getStatus().state());
+		assertEquals(processed, job.getStatus().usersProcessed());
+
+		job.throttle(0);
+		job.resume();
+		assertTrue(job.awaitIdle(Duration.ofSeconds(30)));
+		assertEquals(40, job.getStatus().usersProcessed());
+	}
+
+	private TourGuideService createService(int userCount) {
+		InternalTestHelper.setInternalUserNumber(userCount);
+		GpsUtil gpsUtil = new GpsUtil();
+		TourGuideProperties properties = new TourGuideProperties();
+		rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.none()),
+				executorRegistry, properties);
+		// Every user is close enough to every attraction
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		return new TourGuideService(gpsUtil, rewardsService, new TripPricer(), executorRegistry, properties);
+	}
+
+	private RewardRecalculationJob createJob(TourGuideService tourGuideService, int partitions) {
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getRecalculation().setPartitions(partitions);
+		properties.getRecalculation().setCheckpointDirectory(checkpointDirectory.toString());
+		return new RewardRecalculationJob(tourGuideService, rewardsService, executorRegistry, properties);
+	}
+}
@@ -1,16 +1,47 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.cache.BoundedCache;
+import com.openclassrooms.tourguide.dto.AttractionVisitsDTO;
+import com.openclassrooms.tourguide.dto.LeaderboardEntryDTO;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.loadgen.FakeRewardCentral;
+import com.openclassrooms.tourguide.loadgen.LatencyProfile;
+import com.openclassrooms.tourguide.nearby.NearbyMatch;
+import com.openclassrooms.tourguide.nearby.NearbyQuery;
+import com.openclassrooms.tourguide.nearby.NearbyRequest;
+import com.openclassrooms.tourguide.nearby.NearbySearch;
+import com.openclassrooms.tourguide.parallel.ForkJoinEngine;
+import com.openclassrooms.tourguide.rules.RewardRule;
+import com.openclassrooms.tourguide.rules.RewardRuleSet;
+import com.openclassrooms.tourguide.rules.RewardRuleTable;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
@@ -43,6 +74,21 @@ public class TestRewardsService {
 		assertTrue(rewardsService.isWithinAttractionProximity(attraction, attraction));
 	}
 
+	@Test
+	public void distanceAgreesWithTheRuleTableOnTheAttraction() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		RewardRuleTable table = syntheticTable(1_000);
+
+		// Rounding takes the cosine of a zero angle past 1 for a few percent of coordinates: both paths must still
+		// say about 0, not NaN
+		for (int i = 0; i < table.size(); i++) {
+			Attraction attraction = table.getAttraction(i);
+			assertEquals(0, rewardsService.getDistance(attraction, attraction), 0.01, attraction.attractionName);
+			assertEquals(0, table.distance(i, attraction), 0.01, attraction.attractionName);
+			assertTrue(table.isEligible(i, new VisitedLocation(UUID.randomUUID(), attraction, new Date()),
+					System.currentTimeMillis()), attraction.attractionName);
+		}
+	}
 
 	@Test
 	public void nearAllAttractions() {
@@ -63,4 +109,329 @@ public class TestRewardsService {
 		assertEquals(gpsUtil.getAttractions().size(), userRewards.size());
 	}
 
+	@Test
+	public void leaderboardIsUpdatedAsRewardsAreEarned() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		tourGuideService.addUser(user);
+		tourGuideService.addUser(user2);
+
+		List<Attraction> attractions = gpsUtil.getAttractions();
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attractions.get(0), new Date());
+		user.addUserReward(new UserReward(visitedLocation, attractions.get(0), 100));
+		user2.addUserReward(new UserReward(visitedLocation, attractions.get(0), 150));
+		user.addUserReward(new UserReward(visitedLocation, attractions.get(1), 200));
+		// Already rewarded attraction, ignored by the user and the leaderboard
+		user.addUserReward(new UserReward(visitedLocation, attractions.get(1), 500));
+
+		List<LeaderboardEntryDTO> top = tourGuideService.getTopUsers(10);
+		assertEquals(2, top.size());
+		assertEquals("jon", top.get(0).userName());
+		assertEquals(300, top.get(0).rewardPoints());
+		assertEquals(150, tourGuideService.getUserRewardPoints(user2));
+
+		AttractionVisitsDTO mostVisited = tourGuideService.getMostVisitedAttractions(1).get(0);
+		assertEquals(attractions.get(0).attractionName, mostVisited.attractionName());
+		assertEquals(2, mostVisited.visitsToday());
+		// Each attraction once, however many times its entry was replaced
+		assertEquals(List.of(2L, 1L), tourGuideService.getMostVisitedAttractions(10).stream()
+				.map(AttractionVisitsDTO::totalVisits)
+				.toList());
+	}
+
+	@Test
+	public void rewardRulesApplyPerAttractionAndCategory() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = rewardsService.getAttractions();
+		Attraction park = attractions.get(0);
+		Attraction museum = attractions.get(1);
+
+		// Small default radius, doubled points for parks, and museum visits older than an hour don't count
+		rewardsService.setRewardRules(RewardRuleSet.withDefaultRule(RewardRule.withinMiles(0.5))
+				.withAttractionCategory(park.attractionName, "park")
+				.withCategoryRule("park", RewardRule.withinMiles(0.5).withPointsMultiplier(2))
+				.withAttractionRule(museum.attractionName, RewardRule.withinMiles(0.5).withTimeWindow(Duration.ofHours(1))));
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), park, new Date()));
+		Date twoDaysAgo = new Date(System.currentTimeMillis() - Duration.ofDays(2).toMillis());
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), museum, twoDaysAgo));
+		rewardsService.calculateRewards(user);
+
+		List<UserReward> userRewards = user.getUserRewards();
+		assertEquals(1, userRewards.size());
+		assertEquals(park.attractionName, userRewards.get(0).attraction.attractionName);
+		assertEquals(2 * rewardsService.getRewardPoints(park, user), userRewards.get(0).getRewardPoints());
+
+		// Changing the default radius keeps the other rules
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		assertEquals(2, rewardsService.getRewardRules().ruleFor(park).getPointsMultiplier());
+	}
+
+	@Test
+	public void spatialBatchesEarnTheSameRewardsAsPerUserCalculation() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.none()));
+		List<Attraction> attractions = rewardsService.getAttractions();
+		Random random = new Random(42);
+
+		for (int radius : new int[] { 10, Integer.MAX_VALUE }) {
+			rewardsService.setProximityBuffer(radius);
+			// Twin users with the same locations: tourists around the attractions, and a few anywhere
+			List<User> batched = new ArrayList<>();
+			List<User> single = new ArrayList<>();
+			for (int i = 0; i < 300; i++) {
+				UUID userId = UUID.randomUUID();
+				User user = new User(userId, "batched" + i, "000", "batched" + i + "@tourGuide.com");
+				User twin = new User(userId, "single" + i, "000", "single" + i + "@tourGuide.com");
+				for (int j = 0; j < 3; j++) {
+					Location location;
+					if (i % 10 == 0) {
+						location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+					} else {
+						Attraction attraction = attractions.get(random.nextInt(attractions.size()));
+						location = new Location(attraction.latitude + random.nextGaussian() * 0.1,
+								attraction.longitude + random.nextGaussian() * 0.1);
+					}
+					VisitedLocation visitedLocation = new VisitedLocation(userId, location, new Date());
+					user.addToVisitedLocations(visitedLocation);
+					twin.addToVisitedLocations(visitedLocation);
+				}
+				batched.add(user);
+				single.add(twin);
+			}
+
+			rewardsService.calculateRewardsForUsers(batched);
+			single.forEach(rewardsService::calculateRewards);
+
+			for (int i = 0; i < batched.size(); i++) {
+				assertEquals(rewardsByAttraction(single.get(i)), rewardsByAttraction(batched.get(i)));
+			}
+		}
+		assertTrue(rewardsService.isSpatialBatching());
+	}
+
+	@Test
+	public void forkJoinEngineSplitsUsersAndAttractions() {
+		ForkJoinEngine engine = new ForkJoinEngine(new ForkJoinPool(4));
+		// Every pair once, whether split by users or, for the single user, by attractions
+		for (int users : new int[] { 1000, 1 }) {
+			int attractions = users == 1 ? 100_000 : 100;
+			AtomicIntegerArray visits = new AtomicIntegerArray(users * attractions);
+			List<Integer> items = IntStream.range(0, users).boxed().toList();
+			engine.forEach(items, attractions, (user, from, to) -> {
+				for (int i = from; i < to; i++) {
+					visits.incrementAndGet(user * attractions + i);
+				}
+			});
+			for (int i = 0; i < visits.length(); i++) {
+				assertEquals(1, visits.get(i));
+			}
+		}
+		assertTrue(engine.getParallelRuns() > 0);
+		engine.getPool().shutdown();
+
+		// A tiny workload runs in the calling thread. A new engine is used, as the time per pair measured
+		// above may be inflated by the preemption of the pool threads on a busy machine
+		ForkJoinEngine fresh = new ForkJoinEngine(new ForkJoinPool(4));
+		fresh.forEach(List.of(0), 1, (user, from, to) -> { });
+		assertEquals(1, fresh.getSequentialRuns());
+		assertEquals(0, fresh.getParallelRuns());
+		fresh.getPool().shutdown();
+	}
+
+	@Test
+	public void rewardCentralLatencyIsNotTimedAsEngineWork() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.fixed(20)));
+		List<Attraction> attractions = rewardsService.getAttractions();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		attractions.forEach(a -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(), a, new Date())));
+
+		rewardsService.calculateRewards(user);
+
+		assertEquals(attractions.size(), user.getUserRewards().size());
+		// Each pair blocked 20 ms in RewardCentral, none of it on the engine, which only timed the scan
+		assertTrue(rewardsService.getForkJoinEngine().getNanosPerPair() < 1_000_000,
+				"nanosPerPair " + rewardsService.getForkJoinEngine().getNanosPerPair());
+	}
+
+	@Test
+	public void rewardCentralCallsOfDifferentPairsOverlap() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		FakeRewardCentral rewardCentral = new FakeRewardCentral(LatencyProfile.fixed(200));
+		RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		List<User> users = IntStream.range(0, 128)
+				.mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+				.toList();
+		ExecutorService executor = Executors.newFixedThreadPool(users.size());
+
+		// Loaded under the locks of the cache, the calls of a bin would run one after the other: 1.6 s at least
+		long start = System.nanoTime();
+		List<Future<Integer>> points = new ArrayList<>();
+		for (User user : users) {
+			points.add(executor.submit(() -> rewardsService.getRewardPoints(attraction, user)));
+		}
+		for (Future<Integer> point : points) {
+			point.get();
+		}
+		long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+		executor.shutdown();
+
+		assertTrue(elapsedMillis < 1000, "elapsed " + elapsedMillis + " ms");
+		assertEquals(users.size(), rewardCentral.getCallCount());
+		// Cached: no more calls
+		users.forEach(user -> rewardsService.getRewardPoints(attraction, user));
+		assertEquals(users.size(), rewardCentral.getCallCount());
+	}
+
+	@Test
+	public void evictionReachesEveryKey() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(1000);
+		for (int key = 0; key < 100_000; key++) {
+			cache.put(key, key);
+		}
+
+		// No early key is kept for good, whatever the bin it hashes to
+		assertTrue(cache.size() <= 1000);
+		assertTrue(IntStream.range(0, 2048).noneMatch(cache::containsKey));
+	}
+
+	@Test
+	public void failedLoadReleasesTheThreadsWaitingForIt() throws Exception {
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		Future<Integer> loader = executor.submit(() -> cache.load("key", key -> {
+			loading.countDown();
+			awaitQuietly(release);
+			throw new StackOverflowError();
+		}));
+		assertTrue(loading.await(5, TimeUnit.SECONDS));
+		Future<Integer> waiter = executor.submit(() -> cache.load("key", key -> 1));
+		Thread.sleep(100);
+		release.countDown();
+
+		// An Error completes the load like an exception: the waiting thread gets it instead of waiting for good
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+		assertTrue(failure.getCause() instanceof StackOverflowError);
+		assertThrows(ExecutionException.class, () -> loader.get(5, TimeUnit.SECONDS));
+		assertEquals(2, cache.load("key", key -> 2));
+		executor.shutdown();
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void interruptingTheCallerCancelsTheSweep() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		// A hung RewardCentral
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.fixed(60_000)));
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		List<User> users = IntStream.range(0, 20)
+				.mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+				.toList();
+		users.forEach(user -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date())));
+
+		AtomicBoolean interrupted = new AtomicBoolean();
+		Thread caller = new Thread(() -> {
+			rewardsService.calculateRewardsForUsers(users);
+			interrupted.set(Thread.currentThread().isInterrupted());
+		});
+		caller.start();
+		Thread.sleep(300);
+		caller.interrupt();
+		caller.join(5000);
+
+		assertFalse(caller.isAlive());
+		assertTrue(interrupted.get());
+		// The batches were cancelled: the calls in progress were interrupted long before the 60 s latency
+		long deadline = System.currentTimeMillis() + 5000;
+		while (users.stream().allMatch(user -> user.getUserRewards().isEmpty())
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(users.stream().anyMatch(user -> !user.getUserRewards().isEmpty()));
+	}
+
+	@Test
+	public void bulkNearbySearchMatchesSingleSearches() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.none()));
+		Random random = new Random(7);
+		List<NearbyRequest> requests = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+			requests.add(new NearbyRequest(location, new NearbyQuery(NearbyQuery.UNBOUNDED, 1 + i % 8, Set.of())));
+		}
+
+		List<List<NearbyMatch>> results = rewardsService.findNearbyAttractions(requests);
+
+		assertEquals(requests.size(), results.size());
+		for (int i = 0; i < requests.size(); i++) {
+			assertEquals(rewardsService.findNearbyAttractions(requests.get(i).location(), requests.get(i).query()),
+					results.get(i));
+		}
+	}
+
+	@Test
+	public void nearbySearchAllocationDoesNotGrowWithAttractions() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		NearbyQuery query = new NearbyQuery(NearbyQuery.UNBOUNDED, 5, Set.of());
+		long small = bytesPerSearch(threads, syntheticTable(1_000), query);
+		long large = bytesPerSearch(threads, syntheticTable(50_000), query);
+
+		// Only the 5 matches returned are allocated, whatever the number of attractions scanned
+		assertTrue(small < 1024, small + " bytes per search");
+		assertTrue(large <= small + 64, large + " bytes per search over 50000 attractions, " + small + " over 1000");
+	}
+
+	private static long bytesPerSearch(com.sun.management.ThreadMXBean threads, RewardRuleTable table,
+			NearbyQuery query) {
+		Location location = new Location(40, -100);
+		// Warms up the search and the scratch arrays of this thread
+		for (int i = 0; i < 200; i++) {
+			NearbySearch.search(table, location, query);
+		}
+		int searches = 100;
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < searches; i++) {
+			NearbySearch.search(table, location, query);
+		}
+		return (threads.getCurrentThreadAllocatedBytes() - before) / searches;
+	}
+
+	private static RewardRuleTable syntheticTable(int size) {
+		Random random = new Random(size);
+		List<Attraction> attractions = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			attractions.add(new Attraction("Attraction " + i, "City", "State", random.nextDouble() * 170 - 85,
+					random.nextDouble() * 360 - 180));
+		}
+		return RewardRuleSet.withDefaultRule(RewardRule.withinMiles(10)).compile(attractions);
+	}
+
+	private static List<String> rewardsByAttraction(User user) {
+		return user.getUserRewards().stream()
+				.map(reward -> reward.attraction.attractionName + "@" + reward.visitedLocation.location.latitude
+						+ "," + reward.visitedLocation.location.longitude + ":" + reward.getRewardPoints())
+				.sorted()
+				.toList();
+	}
+
 }
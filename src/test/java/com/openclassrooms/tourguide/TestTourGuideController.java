@@ -0,0 +1,246 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.lifecycle.ExecutorRegistry;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TestTourGuideController {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	TourGuideService tourGuideService;
+
+	@Autowired
+	RewardsService rewardsService;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	ExecutorRegistry executorRegistry;
+
+	@Test
+	public void getRewardsAnswersNotModifiedUntilUserChanges() throws Exception {
+		User user = new User(UUID.randomUUID(), "etagUser", "000", "etagUser@tourGuide.com");
+		tourGuideService.addUser(user);
+
+		String etag = performStreamed(get("/getRewards").param("userName", "etagUser"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		performStreamed(get("/getRewards").param("userName", "etagUser").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+		user.addUserReward(new UserReward(visitedLocation, attraction, 42));
+
+		String newEtag = performStreamed(get("/getRewards").param("userName", "etagUser")
+						.header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].rewardPoints").value(42))
+				.andExpect(jsonPath("$[0].attraction.attractionName").value(attraction.attractionName))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotEquals(etag, newEtag);
+	}
+
+	@Test
+	public void handWrittenJsonMatchesObjectMapper() throws Exception {
+		User user = new User(UUID.randomUUID(), "jsonUser", "000", "jsonUser@tourGuide.com");
+		tourGuideService.addUser(user);
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+		user.addToVisitedLocations(visitedLocation);
+		user.addUserReward(new UserReward(visitedLocation, attraction, 42));
+
+		String rewards = performStreamed(get("/getRewards").param("userName", "jsonUser"))
+				.andReturn().getResponse().getContentAsString();
+		assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(user.getUserRewards())),
+				objectMapper.readTree(rewards));
+
+		String nearby = performStreamed(get("/getNearbyAttractions").param("userName", "jsonUser"))
+				.andReturn().getResponse().getContentAsString();
+		assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(
+						tourGuideService.getNearByAttractions(user, visitedLocation))),
+				objectMapper.readTree(nearby));
+	}
+
+	@Test
+	public void nearbyAttractionsPageIsStreamedWithSelectedFields() throws Exception {
+		User user = new User(UUID.randomUUID(), "pageUser", "000", "pageUser@tourGuide.com");
+		tourGuideService.addUser(user);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), rewardsService.getAttractions().get(0), new Date()));
+
+		performStreamed(get("/getNearbyAttractions").param("userName", "pageUser")
+						.param("offset", "1").param("limit", "2").param("fields", "attractionName,distance"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].attractionName").exists())
+				.andExpect(jsonPath("$[0].distance").exists())
+				.andExpect(jsonPath("$[0].rewardPoints").doesNotExist());
+
+		performStreamed(get("/getNearbyAttractions").param("userName", "pageUser").param("offset", "-1"))
+				.andExpect(status().isBadRequest());
+		performStreamed(get("/getRewards").param("userName", "pageUser").param("limit", "-1"))
+				.andExpect(status().isBadRequest());
+
+		// "Aa" and "BB" have the same String hash code, the projections still get their own ETags
+		String aa = performStreamed(get("/getNearbyAttractions").param("userName", "pageUser")
+						.param("limit", "2").param("fields", "Aa"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		String bb = performStreamed(get("/getNearbyAttractions").param("userName", "pageUser")
+						.param("limit", "2").param("fields", "BB"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotEquals(aa, bb);
+	}
+	@Test
+	public void getNearbyAttractionsWithinRadius() throws Exception {
+		User user = new User(UUID.randomUUID(), "radiusUser", "000", "radiusUser@tourGuide.com");
+		tourGuideService.addUser(user);
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+
+		performStreamed(get("/getNearbyAttractions").param("userName", "radiusUser").param("radius", "0"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].attractionName").value(attraction.attractionName));
+		performStreamed(get("/getNearbyAttractions").param("userName", "radiusUser").param("count", "8")
+						.param("offset", "5"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(3));
+	}
+
+	@Test
+	public void healthShowsTrackerAndExecutors() throws Exception {
+		mockMvc.perform(get("/actuator/health"))
+				.andExpect(jsonPath("$.components.lifecycle.status").value("UP"))
+				.andExpect(jsonPath("$.components.lifecycle.details.tracker.tracking").value(true))
+				.andExpect(jsonPath("$.components.lifecycle.details.executors.tracking").exists());
+	}
+
+	@Test
+	public void tuningChangesPoolsAndTrackerInterval() throws Exception {
+		int trackingThreads = executorRegistry.getExecutors().get("tracking").getMaximumPoolSize();
+		Duration pollingInterval = tourGuideService.tracker.getPollingInterval();
+		try {
+			mockMvc.perform(post("/actuator/tuning/pools.tracking").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"value\": \"8\"}"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$['pools.tracking']").value(8));
+			mockMvc.perform(post("/actuator/tuning/tracker.polling-interval").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"value\": \"10m\"}"))
+					.andExpect(status().isOk());
+
+			assertEquals(8, executorRegistry.getExecutors().get("tracking").getMaximumPoolSize());
+			assertEquals(Duration.ofMinutes(10), tourGuideService.tracker.getPollingInterval());
+			mockMvc.perform(get("/actuator/tuning"))
+					.andExpect(jsonPath("$['tracker.polling-interval']").value("PT10M"))
+					// Fixed-size pools are not listed as settings
+					.andExpect(jsonPath("$['pools.tracker']").doesNotExist());
+			mockMvc.perform(post("/actuator/tuning/testMode").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"value\": \"false\"}"))
+					.andExpect(status().isBadRequest());
+		} finally {
+			mockMvc.perform(post("/actuator/tuning/pools.tracking").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"value\": \"" + trackingThreads + "\"}"));
+			tourGuideService.tracker.setPollingInterval(pollingInterval);
+		}
+	}
+
+	@Test
+	public void recalculationIsThrottledThroughActuator() throws Exception {
+		mockMvc.perform(post("/actuator/recalculation/throttle").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"usersPerSecond\": 500}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.usersPerSecond").value(500.0));
+		mockMvc.perform(post("/actuator/recalculation/throttle").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"usersPerSecond\": 0}"))
+				.andExpect(status().isOk());
+		mockMvc.perform(post("/actuator/recalculation/restart").contentType(MediaType.APPLICATION_JSON)
+						.content("{}"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/actuator/recalculation"))
+				.andExpect(jsonPath("$.partitions").value(64));
+	}
+
+	@Test
+	public void streamUpdatesPushesNewLocationsAndRewards() throws Exception {
+		User user = new User(UUID.randomUUID(), "streamUser", "000", "streamUser@tourGuide.com");
+		tourGuideService.addUser(user);
+		MockHttpServletResponse response = mockMvc.perform(get("/streamUpdates").param("userName", "streamUser"))
+				.andExpect(request().asyncStarted())
+				.andReturn().getResponse();
+
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+		user.addToVisitedLocations(visitedLocation);
+		user.addUserReward(new UserReward(visitedLocation, attraction, 42));
+
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (!response.getContentAsString().contains("event:reward") && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		String events = response.getContentAsString();
+		assertTrue(events.contains("event:location\ndata:{\"userId\":\"" + user.getUserId()), events);
+		assertTrue(events.contains("\"rewardPoints\":42"), events);
+		assertTrue(events.indexOf("event:location") < events.indexOf("event:reward"), events);
+	}
+
+	@Test
+	public void trajectoryAndVisitorsAreReadFromTheTimeline() throws Exception {
+		User user = new User(UUID.randomUUID(), "timelineUser", "000", "timelineUser@tourGuide.com");
+		tourGuideService.addUser(user);
+		Attraction attraction = rewardsService.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+
+		mockMvc.perform(get("/getTrajectory").param("userName", "timelineUser"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].location.latitude").value(attraction.latitude));
+		mockMvc.perform(get("/getVisitors").param("attractionName", attraction.attractionName).param("radius", "0.1")
+						.param("limit", "1000"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[?(@.userName == 'timelineUser')].visits").value(1));
+		mockMvc.perform(get("/getVisitors").param("attractionName", "Disneyland Paris"))
+				.andExpect(status().isNotFound());
+	}
+
+	// Responses of the read endpoints are streamed asynchronously, 304 answers are not
+	private ResultActions performStreamed(RequestBuilder requestBuilder) throws Exception {
+		ResultActions actions = mockMvc.perform(requestBuilder);
+		MvcResult result = actions.andReturn();
+		return result.getRequest().isAsyncStarted() ? mockMvc.perform(asyncDispatch(result)) : actions;
+	}
+}
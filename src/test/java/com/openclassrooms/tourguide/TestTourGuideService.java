@@ -1,19 +1,38 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.openclassrooms.tourguide.config.TourGuideProperties;
 import com.openclassrooms.tourguide.dto.NearByAttractionDTO;
 import org.junit.jupiter.api.Test;
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.lifecycle.ExecutorRegistry;
+import com.openclassrooms.tourguide.loadgen.FakeGpsUtil;
+import com.openclassrooms.tourguide.loadgen.FakeRewardCentral;
+import com.openclassrooms.tourguide.loadgen.LatencyProfile;
+import com.openclassrooms.tourguide.loadgen.MovementModel;
+import com.openclassrooms.tourguide.nearby.NearbyQuery;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
 import tripPricer.Provider;
+import tripPricer.TripPricer;
 
 public class TestTourGuideService {
 
@@ -105,6 +124,168 @@ public class TestTourGuideService {
 		assertEquals(5, attractions.size(), "The list of should contain exactly five closest attractions to the user's last visited location");
 	}
 
+	@Test
+	public void getNearbyAttractionsOnlyFetchesReturnedRewardPoints() {
+		GpsUtil gpsUtil = new GpsUtil();
+		FakeRewardCentral rewardCentral = new FakeRewardCentral(LatencyProfile.none());
+		RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+		rewardsService.setPrefetchEnabled(false);
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.setDisableAutoRewardCalculation(true);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user);
+
+		List<NearByAttractionDTO> attractions = tourGuideService.getNearByAttractions(user, visitedLocation);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(5, attractions.size());
+		assertEquals(5, rewardCentral.getCallCount());
+		for (int i = 1; i < attractions.size(); i++) {
+			assertTrue(attractions.get(i - 1).getDistance() <= attractions.get(i).getDistance());
+		}
+	}
+
+	@Test
+	public void getNearbyAttractionsHonorsProximityAndCategories() {
+		GpsUtil gpsUtil = new GpsUtil();
+		FakeRewardCentral rewardCentral = new FakeRewardCentral(LatencyProfile.none());
+		RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+		rewardsService.setPrefetchEnabled(false);
+		List<Attraction> attractions = rewardsService.getAttractions();
+		rewardsService.setRewardRules(rewardsService.getRewardRules()
+				.withAttractionCategory(attractions.get(0).attractionName, "park")
+				.withAttractionCategory(attractions.get(1).attractionName, "park"));
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attractions.get(0), new Date());
+		user.addToVisitedLocations(visitedLocation);
+
+		// Only the attraction the user stands on is within the proximity preference
+		user.setUserPreferences(new UserPreferences().withAttractionProximity(0));
+		List<NearByAttractionDTO> nearby = tourGuideService.getNearByAttractions(user, visitedLocation);
+		assertEquals(1, nearby.size());
+		assertEquals(attractions.get(0).attractionName, nearby.get(0).getAttractionName());
+
+		// All the attractions of the category, at any distance
+		nearby = tourGuideService.getNearByAttractions(user, visitedLocation,
+				new NearbyQuery(NearbyQuery.UNBOUNDED, NearbyQuery.NO_LIMIT, Set.of("park")));
+		assertEquals(2, nearby.size());
+		assertEquals(attractions.get(1).attractionName, nearby.get(1).getAttractionName());
+
+		// The search agrees with a full sort on the distance
+		List<Double> expected = attractions.stream()
+				.map(attraction -> rewardsService.getDistance(attraction, visitedLocation.location))
+				.filter(distance -> distance <= 1000)
+				.sorted()
+				.limit(7)
+				.toList();
+		nearby = tourGuideService.getNearByAttractions(user, visitedLocation, new NearbyQuery(1000, 7, Set.of()));
+		assertEquals(expected.size(), nearby.size());
+		for (int i = 1; i < nearby.size(); i++) {
+			assertEquals(expected.get(i), nearby.get(i).getDistance(), 1e-9);
+		}
+	}
+
+	@Test
+	public void trackerFollowsServiceLifecycle() throws Exception {
+		FakeGpsUtil gpsUtil = FakeGpsUtil.withRealAttractions(MovementModel.uniform(), LatencyProfile.none());
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.none()));
+		InternalTestHelper.setInternalUserNumber(10);
+		ExecutorRegistry executorRegistry = new ExecutorRegistry(Duration.ofSeconds(5));
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, new TripPricer(),
+				executorRegistry);
+
+		// Nothing runs before the service is started
+		assertFalse(tourGuideService.tracker.isTracking());
+		assertEquals(0, gpsUtil.getCallCount());
+
+		tourGuideService.start();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (tourGuideService.tracker.getLastRoundUsers() < 10 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		tourGuideService.stop();
+
+		assertEquals(10, tourGuideService.tracker.getLastRoundUsers());
+		assertFalse(tourGuideService.isRunning());
+		assertFalse(tourGuideService.tracker.isRoundRunning());
+		assertTrue(executorRegistry.drain(Duration.ofSeconds(5)));
+	}
+
+	@Test
+	public void drainLetsScheduledProducersSubmitTheirLastTasks() throws Exception {
+		ExecutorRegistry executorRegistry = new ExecutorRegistry(Duration.ofSeconds(5));
+		ThreadPoolExecutor workers = executorRegistry.getExecutor("workers", 1);
+		AtomicInteger completed = new AtomicInteger();
+		CountDownLatch producing = new CountDownLatch(1);
+		// Like a tracking round still running when the application stops
+		executorRegistry.getScheduledExecutor("producer", 1).execute(() -> {
+			producing.countDown();
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			workers.execute(completed::incrementAndGet);
+		});
+		producing.await();
+
+		assertTrue(executorRegistry.drain(Duration.ofSeconds(5)));
+		assertEquals(1, completed.get());
+	}
+
+	@Test
+	public void trackerRoundSurvivesFailingUsers() throws Exception {
+		FakeGpsUtil gpsUtil = FakeGpsUtil.withRealAttractions(MovementModel.uniform(),
+				LatencyProfile.none().withErrorRate(0.5));
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.none()));
+		InternalTestHelper.setInternalUserNumber(20);
+		ExecutorRegistry executorRegistry = new ExecutorRegistry(Duration.ofSeconds(5));
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, new TripPricer(),
+				executorRegistry);
+
+		tourGuideService.start();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (tourGuideService.tracker.getLastRoundUsers() + tourGuideService.tracker.getLastRoundFailures() < 20
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		tourGuideService.stop();
+
+		// Every user was tried, the failing ones did not end the round
+		assertEquals(20, tourGuideService.tracker.getLastRoundUsers() + tourGuideService.tracker.getLastRoundFailures());
+		assertTrue(tourGuideService.tracker.getLastRoundFailures() > 0);
+		assertTrue(tourGuideService.tracker.getLastRoundUsers() > 0);
+	}
+
+	@Test
+	public void internalUsersAreGeneratedFromTheBaseTime() {
+		FakeGpsUtil gpsUtil = FakeGpsUtil.withRealAttractions(MovementModel.uniform(), LatencyProfile.none());
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.none()));
+		InternalTestHelper.setInternalUserNumber(10);
+		TourGuideProperties properties = new TourGuideProperties();
+		Instant baseTime = Instant.parse("2024-01-01T00:00:00Z");
+		properties.getInternalUsers().setBaseTime(baseTime);
+
+		// Two starts with the same settings generate the same visits, none after the base time
+		List<List<VisitedLocation>> starts = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, new TripPricer(),
+					ExecutorRegistry.shared(), properties);
+			tourGuideService.tracker.stopTracking();
+			starts.add(tourGuideService.getUser("internalUser0").getVisitedLocations());
+		}
+		List<Date> times = starts.get(0).stream().map(visitedLocation -> visitedLocation.timeVisited).toList();
+		assertEquals(times, starts.get(1).stream().map(visitedLocation -> visitedLocation.timeVisited).toList());
+		assertTrue(times.stream().noneMatch(time -> time.toInstant().isAfter(baseTime)));
+	}
+
 	@Test
 	public void getTripDeals() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -0,0 +1,60 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import gpsUtil.GpsUtil;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.loadgen.FakeRewardCentral;
+import com.openclassrooms.tourguide.loadgen.LatencyProfile;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracing.Span;
+import com.openclassrooms.tourguide.tracing.TraceView;
+import com.openclassrooms.tourguide.tracing.Tracer;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestTracing {
+
+	@AfterEach
+	public void resetTracer() {
+		Tracer.setSampleRate(0);
+		Tracer.setSlowThresholdMillis(1000);
+		Tracer.clearSlowTraces();
+	}
+
+	@Test
+	public void slowTrackingJourneyIsRecorded() {
+		Tracer.setSampleRate(1);
+		Tracer.setSlowThresholdMillis(0);
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new FakeRewardCentral(LatencyProfile.none()));
+		rewardsService.setPrefetchEnabled(false);
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.trackUserLocation(user);
+		tourGuideService.tracker.stopTracking();
+
+		List<TraceView> traces = Tracer.getSlowTraces();
+		TraceView trace = traces.stream().filter(t -> user.getUserId().equals(t.userId())).findFirst().orElseThrow();
+		assertEquals("trackUserLocation", trace.name());
+		List<String> spanNames = trace.spans().stream().map(TraceView.SpanView::name).toList();
+		assertTrue(spanNames.contains("gpsUtil.getUserLocation"));
+		assertTrue(spanNames.contains("calculateRewards"));
+		assertEquals(gpsUtil.getAttractions().size(), spanNames.stream().filter("processAttraction"::equals).count());
+	}
+
+	@Test
+	public void noSpanIsRecordedWhenSamplingIsOff() {
+		Tracer.setSlowThresholdMillis(0);
+		try (Span span = Tracer.startTrace("trackUserLocation", UUID.randomUUID())) {
+			assertTrue(span == Span.NOOP);
+		}
+		assertTrue(Tracer.getSlowTraces().isEmpty());
+	}
+}
@@ -0,0 +1,164 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserEvent;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserRegistry;
+import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.UserState;
+
+public class TestUser {
+
+	@Test
+	public void concurrentWritesAreNotLost() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		List<Long> deliveredVersions = Collections.synchronizedList(new ArrayList<>());
+		user.setEventListener((u, event, state) -> deliveredVersions.add(state.getVersion()));
+
+		List<CompletableFuture<Void>> futures = IntStream.range(0, 1000)
+				.mapToObj(i -> CompletableFuture.runAsync(() -> {
+					VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(i, i), new Date());
+					user.addToVisitedLocations(visitedLocation);
+					user.addUserReward(new UserReward(visitedLocation, attraction, i));
+				}))
+				.toList();
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+		assertEquals(1000, user.getVisitedLocations().size());
+		// Only the first reward of an attraction is kept, even when added concurrently
+		assertEquals(1, user.getUserRewards().size());
+		// Listeners get the events in the order they were applied
+		assertEquals(LongStream.rangeClosed(1, 1001).boxed().toList(), deliveredVersions);
+		// The ledger is compacted, but still rebuilds the state
+		List<UserEvent> ledger = user.getLedger();
+		assertTrue(ledger.size() <= 65, ledger.size() + " events");
+		assertInstanceOf(UserEvent.Compacted.class, ledger.get(0));
+		UserState replayed = UserState.replay(ledger);
+		assertEquals(1001, replayed.getVersion());
+		assertEquals(user.getVisitedLocations(), replayed.getVisitedLocations());
+	}
+
+	@Test
+	public void listenerCanWriteToItsUser() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<UserEvent> delivered = new ArrayList<>();
+		// A listener stamping each new location: its write is delivered after the event being delivered
+		user.setEventListener((u, event, state) -> {
+			delivered.add(event);
+			if (event instanceof UserEvent.LocationRecorded recorded) {
+				u.setLatestLocationTimestamp(recorded.visitedLocation().timeVisited);
+			}
+		});
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date());
+
+		user.addToVisitedLocations(visitedLocation);
+
+		assertEquals(visitedLocation.timeVisited, user.getLatestLocationTimestamp());
+		assertEquals(2, delivered.size());
+		assertInstanceOf(UserEvent.LocationRecorded.class, delivered.get(0));
+		assertInstanceOf(UserEvent.LatestLocationTimestampUpdated.class, delivered.get(1));
+	}
+
+	@Test
+	public void replayRebuildsState() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+		user.addToVisitedLocations(visitedLocation);
+		assertTrue(user.addUserReward(new UserReward(visitedLocation, attraction, 100)));
+		assertFalse(user.addUserReward(new UserReward(visitedLocation, attraction, 200)));
+		user.setTripDeals(List.of());
+
+		List<UserEvent> ledger = user.getLedger();
+		assertEquals(3, ledger.size());
+		assertInstanceOf(UserEvent.LocationRecorded.class, ledger.get(0));
+		assertInstanceOf(UserEvent.RewardEarned.class, ledger.get(1));
+		assertInstanceOf(UserEvent.DealsPriced.class, ledger.get(2));
+
+		User restored = new User(user.getUserId(), "jon", "000", "jon@tourGuide.com");
+		List<UserEvent> replayedEvents = new ArrayList<>();
+		restored.setEventListener((u, event, s) -> replayedEvents.add(event));
+		restored.replay(ledger);
+		assertEquals(ledger, replayedEvents);
+		assertThrows(IllegalStateException.class, () -> restored.replay(ledger));
+		UserState state = restored.getState();
+		assertEquals(user.getState().getVersion(), state.getVersion());
+		assertEquals(visitedLocation, restored.getLastVisitedLocation());
+		assertEquals(100, state.getUserRewards().get(0).getRewardPoints());
+		assertEquals(visitedLocation.timeVisited, restored.getLatestLocationTimestamp());
+	}
+
+	@Test
+	public void preferencesAndRewardsCannotBeChangedBehindTheState() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		UserPreferences preferences = new UserPreferences().withAttractionProximity(10);
+		user.setUserPreferences(preferences);
+		long version = user.getState().getVersion();
+
+		// Changes are new instances, applied only when set on the user
+		UserPreferences changed = user.getUserPreferences().withTripDuration(3);
+		assertEquals(1, user.getUserPreferences().getTripDuration());
+		assertEquals(version, user.getState().getVersion());
+		user.setUserPreferences(changed);
+		assertEquals(3, user.getUserPreferences().getTripDuration());
+		assertEquals(10, user.getUserPreferences().getAttractionProximity());
+		assertEquals(version + 1, user.getState().getVersion());
+
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		UserReward reward = new UserReward(new VisitedLocation(user.getUserId(), attraction, new Date()), attraction);
+		reward.setRewardPoints(100);
+		user.addUserReward(reward);
+		assertThrows(IllegalStateException.class, () -> reward.setRewardPoints(200));
+		assertEquals(100, user.getUserRewards().get(0).getRewardPoints());
+	}
+
+	@Test
+	public void registryGivesDenseSlotsAndStableViews() {
+		UserRegistry registry = new UserRegistry();
+		// Concurrent registrations, then a bulk load with a taken name and a duplicate inside the batch
+		CompletableFuture.allOf(IntStream.range(0, 4).mapToObj(thread -> CompletableFuture.runAsync(() -> {
+			for (int i = 0; i < 2500; i++) {
+				registry.add(new User(UUID.randomUUID(), "user" + thread + "-" + i, "000", "user@tourGuide.com"));
+			}
+		})).toArray(CompletableFuture[]::new)).join();
+		List<User> beforeImport = registry.asList();
+		List<User> imported = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			imported.add(new User(UUID.randomUUID(), "imported" + i, "000", "imported@tourGuide.com"));
+		}
+		imported.add(new User(UUID.randomUUID(), "user0-0", "000", "taken@tourGuide.com"));
+		imported.add(new User(UUID.randomUUID(), "imported0", "000", "duplicate@tourGuide.com"));
+		assertEquals(5000, registry.addAll(imported).size());
+
+		assertEquals(15_000, registry.size());
+		assertEquals(10_000, beforeImport.size());
+		assertEquals(15_000, registry.parallelStream().distinct().count());
+		for (int slot = 0; slot < registry.size(); slot++) {
+			User user = registry.get(slot);
+			assertEquals(slot, registry.slotOf(user.getUserId()));
+			assertEquals(user, registry.getByName(user.getUserName()));
+			assertEquals(user, registry.getById(user.getUserId()));
+		}
+		assertEquals("imported@tourGuide.com", registry.getByName("imported0").getEmailAddress());
+		assertEquals(-1, registry.add(imported.get(0)));
+	}
+
+}
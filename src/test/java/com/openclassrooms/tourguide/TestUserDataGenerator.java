@@ -0,0 +1,67 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.helper.LocationDistribution;
+import com.openclassrooms.tourguide.helper.UserDataGenerator;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestUserDataGenerator {
+
+	private static final long BASE_TIME = 1_700_000_000_000L;
+
+	@Test
+	public void sameSeedGivesSamePopulationWhateverTheParallelism() {
+		UserDataGenerator generator = new UserDataGenerator(7, LocationDistribution.uniform(), 3, BASE_TIME);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<User> parallel = generator.generate(5_000, pool);
+			List<User> sequential = IntStream.range(0, 5_000).mapToObj(generator::generate).toList();
+
+			assertEquals(describe(sequential), describe(parallel));
+			assertEquals(5_000, parallel.stream().map(User::getUserId).distinct().count());
+			assertEquals("internalUser42", parallel.get(42).getUserName());
+			assertEquals(4, parallel.get(0).getUserId().version());
+		} finally {
+			pool.shutdown();
+		}
+
+		UserDataGenerator otherSeed = new UserDataGenerator(8, LocationDistribution.uniform(), 3, BASE_TIME);
+		assertNotEquals(describe(List.of(generator.generate(0))), describe(List.of(otherSeed.generate(0))));
+	}
+
+	@Test
+	public void locationsAreDrawnAroundThePlaces() {
+		List<Location> places = List.of(new Location(48.85, 2.35), new Location(40.71, -74.0));
+		UserDataGenerator generator = new UserDataGenerator(1, LocationDistribution.around(places, 10), 5, BASE_TIME);
+
+		for (int i = 0; i < 1_000; i++) {
+			for (VisitedLocation visitedLocation : generator.generate(i).getVisitedLocations()) {
+				// Within 10 standard deviations of one of the places
+				double closest = places.stream()
+						.mapToDouble(place -> Math.hypot(place.latitude - visitedLocation.location.latitude,
+								place.longitude - visitedLocation.location.longitude))
+						.min().getAsDouble();
+				assertTrue(closest < 100 / LocationDistribution.MILES_PER_DEGREE, closest + " degrees away");
+				long age = BASE_TIME - visitedLocation.timeVisited.getTime();
+				assertTrue(age >= 0 && age < 30 * 86_400_000L);
+			}
+		}
+	}
+
+	private static List<String> describe(List<User> users) {
+		return users.stream()
+				.map(user -> user.getUserId() + " " + user.getUserName() + " " + user.getVisitedLocations().stream()
+						.map(visitedLocation -> visitedLocation.location.latitude + "," + visitedLocation.location.longitude
+								+ "@" + visitedLocation.timeVisited.getTime())
+						.toList())
+				.toList();
+	}
+}
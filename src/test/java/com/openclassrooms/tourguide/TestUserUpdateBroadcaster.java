@@ -0,0 +1,101 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.stream.UserUpdateBroadcaster;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserEvent;
+
+public class TestUserUpdateBroadcaster {
+
+	ExecutorService sender = Executors.newSingleThreadExecutor();
+
+	@AfterEach
+	public void shutdownSender() {
+		sender.shutdownNow();
+	}
+
+	@Test
+	public void slowSubscriberDropsOldestUpdatesWithoutBlockingTheTracker() throws InterruptedException {
+		UserUpdateBroadcaster broadcaster = new UserUpdateBroadcaster(sender, 4);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.setEventListener(broadcaster);
+		CountDownLatch firstSend = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Double> received = new CopyOnWriteArrayList<>();
+		UserUpdateBroadcaster.Subscription subscription = broadcaster.subscribe(user.getUserId(), event -> {
+			firstSend.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			received.add(((UserEvent.LocationRecorded) event).visitedLocation().location.latitude);
+		});
+
+		visit(user, 0);
+		assertTrue(firstSend.await(5, TimeUnit.SECONDS));
+		// The subscriber is stuck on the first update, the next ones are buffered without waiting
+		long start = System.nanoTime();
+		for (int i = 1; i <= 20; i++) {
+			visit(user, i);
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		release.countDown();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (received.size() < 5 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(List.of(0d, 17d, 18d, 19d, 20d), received);
+		assertEquals(16, subscription.getDropped());
+		assertEquals(5, subscription.getSent());
+	}
+
+	@Test
+	public void failedSendEndsTheSubscription() throws InterruptedException {
+		UserUpdateBroadcaster broadcaster = new UserUpdateBroadcaster(sender, 4);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.setEventListener(broadcaster);
+		AtomicBoolean closed = new AtomicBoolean();
+		UserUpdateBroadcaster.Subscription subscription = broadcaster.subscribe(user.getUserId(),
+				new UserUpdateBroadcaster.UpdateSink() {
+					@Override
+					public void send(UserEvent event) throws IOException {
+						throw new IOException("Client gone");
+					}
+
+					@Override
+					public void close() {
+						closed.set(true);
+					}
+				});
+		assertEquals(1, broadcaster.getSubscriberCount());
+
+		visit(user, 0);
+		sender.shutdown();
+		assertTrue(sender.awaitTermination(5, TimeUnit.SECONDS));
+
+		assertTrue(subscription.isClosed());
+		assertTrue(closed.get());
+		assertEquals(0, broadcaster.getSubscriberCount());
+	}
+
+	private void visit(User user, double latitude) {
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(latitude, 0), new Date()));
+	}
+}
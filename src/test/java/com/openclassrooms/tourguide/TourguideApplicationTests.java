@@ -1,13 +1,49 @@
 package com.openclassrooms.tourguide;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.time.Duration;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import com.openclassrooms.tourguide.config.TourGuideProperties;
+import com.openclassrooms.tourguide.lifecycle.ExecutorRegistry;
 
 @SpringBootTest
 class TourguideApplicationTests {
 
+	@Autowired
+	ExecutorRegistry executorRegistry;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void testContextsDrainQuickly() {
+		// From src/test/resources/config/application.properties, instead of the 30 seconds of production
+		assertEquals(Duration.ofSeconds(2), executorRegistry.getDrainTimeout());
+	}
+
+	@Test
+	void invalidSettingsFailTheStartup() {
+		ApplicationContextRunner runner = new ApplicationContextRunner()
+				.withUserConfiguration(PropertiesOnly.class);
+
+		runner.withPropertyValues("tourguide.pools.tracking=8", "tourguide.tracker.polling-interval=30s")
+				.run(context -> assertNull(context.getStartupFailure()));
+		for (String invalid : new String[] { "tourguide.pools.tracking=0", "tourguide.cache.response-max-entries=-1",
+				"tourguide.tracker.polling-interval=0s", "tourguide.tracing.sample-rate=2" }) {
+			runner.withPropertyValues(invalid)
+					.run(context -> assertNotNull(context.getStartupFailure(), invalid));
+		}
+	}
+
+	@EnableConfigurationProperties(TourGuideProperties.class)
+	static class PropertiesOnly {
+	}
+
 }
@@ -0,0 +1,75 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.nearby.NearbyMatch;
+import com.openclassrooms.tourguide.nearby.NearbyQuery;
+import com.openclassrooms.tourguide.nearby.NearbySearch;
+import com.openclassrooms.tourguide.rules.RewardRule;
+import com.openclassrooms.tourguide.rules.RewardRuleSet;
+import com.openclassrooms.tourguide.rules.RewardRuleTable;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Top-k nearby search over tables of growing size. With the gc profiler of the benchmark profile,
+ * gc.alloc.rate.norm (bytes per search) stays the same whatever the number of attractions:
+ * scanning an attraction allocates nothing, only the k matches returned are allocated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearbySearchBenchmark {
+
+	@Param({ "100", "10000", "100000" })
+	int attractions;
+
+	@Param({ "5", "50" })
+	int limit;
+
+	private RewardRuleTable table;
+	private Location[] locations;
+	private NearbyQuery query;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		List<Attraction> list = new ArrayList<>(attractions);
+		for (int i = 0; i < attractions; i++) {
+			list.add(new Attraction("Attraction " + i, "City", "State", random.nextDouble() * 170 - 85,
+					random.nextDouble() * 360 - 180));
+		}
+		table = RewardRuleSet.withDefaultRule(RewardRule.withinMiles(10)).compile(list);
+		locations = new Location[1024];
+		for (int i = 0; i < locations.length; i++) {
+			locations[i] = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+		}
+		query = new NearbyQuery(NearbyQuery.UNBOUNDED, limit, Set.of());
+	}
+
+	@Benchmark
+	public List<NearbyMatch> closestAttractions() {
+		Location location = locations[next++ & (locations.length - 1)];
+		return NearbySearch.search(table, location, query);
+	}
+}
@@ -0,0 +1,49 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import com.openclassrooms.tourguide.spatial.GeoMath;
+
+/**
+ * Speed of the machine running the performance scenarios, measured in the same JVM, so that results recorded
+ * on one machine can be compared on another. The workload is the arithmetic of the hot paths, great-circle
+ * distances, on a single thread: it corrects for the speed of a core, not for the number of cores.
+ * @param score Distances computed per microsecond, the best of several runs
+ * @param cores Available processors
+ */
+public record Calibration(double score, int cores) {
+
+	private static final int DISTANCES_PER_RUN = 2_000_000;
+	private static final int WARMUP_RUNS = 3;
+	private static final int MEASURED_RUNS = 5;
+
+	// Keeps the result alive, so the JIT cannot remove the workload
+	private static volatile double sink;
+
+	public static Calibration measure() {
+		for (int run = 0; run < WARMUP_RUNS; run++) {
+			sink = distances();
+		}
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < MEASURED_RUNS; run++) {
+			long start = System.nanoTime();
+			sink = distances();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return new Calibration(DISTANCES_PER_RUN * 1000.0 / best, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @return How much faster this machine is than the reference one, below 1 when slower
+	 */
+	public double speedupOver(Calibration reference) {
+		return score / reference.score;
+	}
+
+	// Distances as computed by RewardsService.getDistance, over a fixed walk around the globe
+	private static double distances() {
+		double total = 0;
+		for (int i = 0; i < DISTANCES_PER_RUN; i++) {
+			total += GeoMath.distance((i % 170) - 85, (i % 360) - 180, ((i * 7) % 170) - 85, ((i * 13) % 360) - 180);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GpsUtil replacement driven by a {@link MovementModel} and a {@link LatencyProfile}.
+ * Does not go through the rate limiter of the real implementation.
+ */
+public class FakeGpsUtil extends GpsUtil {
+
+	private static volatile List<Attraction> realAttractions;
+
+	private final List<Attraction> attractions;
+	private final MovementModel movementModel;
+	private final LatencyProfile latencyProfile;
+	private final Map<UUID, Location> lastLocations = new ConcurrentHashMap<>();
+	private final Map<UUID, AtomicLong> steps = new ConcurrentHashMap<>();
+	private final AtomicLong calls = new AtomicLong();
+
+	public FakeGpsUtil(List<Attraction> attractions, MovementModel movementModel, LatencyProfile latencyProfile) {
+		this.attractions = Collections.unmodifiableList(new ArrayList<>(attractions));
+		this.movementModel = movementModel;
+		this.latencyProfile = latencyProfile;
+	}
+
+	/**
+	 * @return Fake using the attraction catalog of the real gpsUtil
+	 */
+	public static FakeGpsUtil withRealAttractions(MovementModel movementModel, LatencyProfile latencyProfile) {
+		return new FakeGpsUtil(realAttractions(), movementModel, latencyProfile);
+	}
+
+	/**
+	 * The real catalog is fetched once per JVM, its latency is not part of the simulation.
+	 */
+	public static List<Attraction> realAttractions() {
+		if (realAttractions == null) {
+			synchronized (FakeGpsUtil.class) {
+				if (realAttractions == null) {
+					realAttractions = new GpsUtil().getAttractions();
+				}
+			}
+		}
+		return realAttractions;
+	}
+
+	/**
+	 * Builds a synthetic catalog, used to measure behaviour against catalogs larger than the real one.
+	 */
+	public static List<Attraction> generatedAttractions(int count, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		List<Attraction> generated = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			generated.add(new Attraction("Attraction " + i, "City " + (i % 100), "State " + (i % 50),
+					random.nextDouble(-MovementModel.MAX_LATITUDE, MovementModel.MAX_LATITUDE),
+					random.nextDouble(-180, 180)));
+		}
+		return generated;
+	}
+
+	@Override
+	public VisitedLocation getUserLocation(UUID userId) {
+		calls.incrementAndGet();
+		latencyProfile.apply("getUserLocation");
+		long step = steps.computeIfAbsent(userId, id -> new AtomicLong()).getAndIncrement();
+		Location location = lastLocations.compute(userId, (id, previous) -> movementModel.next(id, previous, step));
+		return new VisitedLocation(userId, location, new Date());
+	}
+
+	@Override
+	public List<Attraction> getAttractions() {
+		return new ArrayList<>(attractions);
+	}
+
+	public long getCallCount() {
+		return calls.get();
+	}
+}
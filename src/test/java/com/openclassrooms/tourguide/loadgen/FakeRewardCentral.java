@@ -0,0 +1,31 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * RewardCentral replacement with a configurable {@link LatencyProfile}.
+ * Points are derived from the ids so that repeated runs return the same values.
+ */
+public class FakeRewardCentral extends RewardCentral {
+
+	private final LatencyProfile latencyProfile;
+	private final AtomicLong calls = new AtomicLong();
+
+	public FakeRewardCentral(LatencyProfile latencyProfile) {
+		this.latencyProfile = latencyProfile;
+	}
+
+	@Override
+	public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+		calls.incrementAndGet();
+		latencyProfile.apply("getAttractionRewardPoints");
+		return 1 + Math.floorMod(attractionId.hashCode() * 31 + userId.hashCode(), 1000);
+	}
+
+	public long getCallCount() {
+		return calls.get();
+	}
+}
@@ -0,0 +1,43 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * TripPricer replacement with a configurable {@link LatencyProfile}. Returns 5 providers like the real one.
+ */
+public class FakeTripPricer extends TripPricer {
+
+	private static final int PROVIDER_COUNT = 5;
+
+	private final LatencyProfile latencyProfile;
+	private final AtomicLong calls = new AtomicLong();
+
+	public FakeTripPricer(LatencyProfile latencyProfile) {
+		this.latencyProfile = latencyProfile;
+	}
+
+	@Override
+	public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+			int rewardsPoints) {
+		calls.incrementAndGet();
+		latencyProfile.apply("getPrice");
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		List<Provider> providers = new ArrayList<>(PROVIDER_COUNT);
+		for (int i = 0; i < PROVIDER_COUNT; i++) {
+			double price = Math.max(0, (adults + children * 0.5) * nightsStay * random.nextInt(100, 700) - rewardsPoints);
+			providers.add(new Provider(UUID.randomUUID(), "Provider " + i, price));
+		}
+		return providers;
+	}
+
+	public long getCallCount() {
+		return calls.get();
+	}
+}
@@ -0,0 +1,121 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution and error rate applied by the fake downstream services.
+ * A profile with zero latency and zero error rate costs nothing, which isolates TourGuide's own overhead.
+ */
+public class LatencyProfile {
+
+	public enum Distribution { NONE, FIXED, UNIFORM, LOG_NORMAL }
+
+	private final Distribution distribution;
+	private final long minMicros;
+	private final long maxMicros;
+	private final double sigma;
+	private final double errorRate;
+
+	private LatencyProfile(Distribution distribution, long minMicros, long maxMicros, double sigma, double errorRate) {
+		this.distribution = distribution;
+		this.minMicros = minMicros;
+		this.maxMicros = maxMicros;
+		this.sigma = sigma;
+		this.errorRate = errorRate;
+	}
+
+	public static LatencyProfile none() {
+		return new LatencyProfile(Distribution.NONE, 0, 0, 0, 0);
+	}
+
+	public static LatencyProfile fixed(long millis) {
+		return new LatencyProfile(Distribution.FIXED, millis * 1000, millis * 1000, 0, 0);
+	}
+
+	public static LatencyProfile uniform(long minMillis, long maxMillis) {
+		return new LatencyProfile(Distribution.UNIFORM, minMillis * 1000, maxMillis * 1000, 0, 0);
+	}
+
+	/**
+	 * Log-normal latency: most calls are close to the median, with a long tail capped at maxMillis.
+	 */
+	public static LatencyProfile logNormal(long medianMillis, double sigma, long maxMillis) {
+		return new LatencyProfile(Distribution.LOG_NORMAL, medianMillis * 1000, maxMillis * 1000, sigma, 0);
+	}
+
+	// Profiles mimicking the sleeps of the real gpsUtil, RewardCentral and TripPricer jars
+	public static LatencyProfile realisticGps() {
+		return uniform(30, 100);
+	}
+
+	public static LatencyProfile realisticRewards() {
+		return uniform(1, 1000);
+	}
+
+	public static LatencyProfile realisticTripPricer() {
+		return uniform(1, 50);
+	}
+
+	/**
+	 * @param errorRate Probability (0 to 1) that a call fails with a {@link DownstreamException}
+	 * @return A copy of this profile with the given error rate
+	 */
+	public LatencyProfile withErrorRate(double errorRate) {
+		return new LatencyProfile(distribution, minMicros, maxMicros, sigma, errorRate);
+	}
+
+	public double getErrorRate() {
+		return errorRate;
+	}
+
+	/**
+	 * Draws a latency in microseconds from the distribution.
+	 */
+	public long sampleMicros() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		switch (distribution) {
+			case FIXED:
+				return minMicros;
+			case UNIFORM:
+				return minMicros == maxMicros ? minMicros : random.nextLong(minMicros, maxMicros + 1);
+			case LOG_NORMAL:
+				long micros = (long) (minMicros * Math.exp(sigma * random.nextGaussian()));
+				return Math.min(micros, maxMicros);
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * Simulates a downstream call: sleeps for a sampled latency, then fails according to the error rate.
+	 * @param operation Name of the simulated call, used in the error message
+	 */
+	public void apply(String operation) {
+		long micros = sampleMicros();
+		if (micros > 0) {
+			try {
+				TimeUnit.MICROSECONDS.sleep(micros);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+			throw new DownstreamException(operation + " failed (simulated)");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return distribution + "[" + minMicros / 1000 + "-" + maxMicros / 1000 + "ms, errors=" + errorRate + "]";
+	}
+
+	/**
+	 * Error raised by the fake services to simulate a failing downstream call.
+	 */
+	public static class DownstreamException extends RuntimeException {
+		public DownstreamException(String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drives a {@link LoadOperation} either at a target rate (open loop) or as fast as possible (closed loop),
+ * and records latencies in an HdrHistogram.
+ */
+public class LoadDriver {
+	private Logger logger = LoggerFactory.getLogger(LoadDriver.class);
+
+	// Highest trackable latency: 10 minutes, in microseconds
+	private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+	private final int concurrency;
+
+	/**
+	 * @param concurrency Number of worker threads issuing operations
+	 */
+	public LoadDriver(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Issues operations at a fixed rate for the given duration. Latency is measured from the intended start time,
+	 * so a stalled system is not hidden by the driver slowing down (coordinated omission).
+	 * @param ratePerSecond Target number of operations per second
+	 * @param durationMillis Length of the run
+	 */
+	public LoadReport runAtRate(String name, LoadOperation operation, double ratePerSecond, long durationMillis) {
+		long intervalNanos = (long) (1e9 / ratePerSecond);
+		long total = Math.max(1, (long) (ratePerSecond * durationMillis / 1000));
+		Histogram histogram = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+		AtomicLong errors = new AtomicLong();
+
+		ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+		long start = System.nanoTime();
+		try {
+			for (long i = 0; i < total; i++) {
+				long intendedStart = start + i * intervalNanos;
+				long wait = intendedStart - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+				long sequence = i;
+				workers.execute(() -> execute(operation, sequence, intendedStart, histogram, errors));
+			}
+		} finally {
+			awaitCompletion(workers);
+		}
+		return new LoadReport(name, total, errors.get(), System.nanoTime() - start, histogram);
+	}
+
+	/**
+	 * Issues the given number of operations as fast as the workers can take them.
+	 */
+	public LoadReport runClosed(String name, LoadOperation operation, long total) {
+		Histogram histogram = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+		AtomicLong errors = new AtomicLong();
+		AtomicLong next = new AtomicLong();
+
+		ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+		long start = System.nanoTime();
+		try {
+			for (int worker = 0; worker < concurrency; worker++) {
+				workers.execute(() -> {
+					long sequence;
+					while ((sequence = next.getAndIncrement()) < total) {
+						execute(operation, sequence, System.nanoTime(), histogram, errors);
+					}
+				});
+			}
+		} finally {
+			awaitCompletion(workers);
+		}
+		return new LoadReport(name, total, errors.get(), System.nanoTime() - start, histogram);
+	}
+
+	private void execute(LoadOperation operation, long sequence, long intendedStart, Histogram histogram,
+			AtomicLong errors) {
+		try {
+			operation.execute(sequence);
+		} catch (Exception e) {
+			errors.incrementAndGet();
+		}
+		long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+		histogram.recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+	}
+
+	private void awaitCompletion(ExecutorService workers) {
+		workers.shutdown();
+		try {
+			if (!workers.awaitTermination(MAX_LATENCY_MICROS, TimeUnit.MICROSECONDS)) {
+				logger.warn("Load run did not complete in time, abandoning remaining operations");
+				workers.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package com.openclassrooms.tourguide.loadgen;
+
+/**
+ * A unit of work issued by the {@link LoadDriver}.
+ */
+@FunctionalInterface
+public interface LoadOperation {
+
+	/**
+	 * @param sequence Index of the operation in the run, used to pick the target user
+	 */
+	void execute(long sequence) throws Exception;
+}
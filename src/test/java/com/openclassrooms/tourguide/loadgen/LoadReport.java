@@ -0,0 +1,75 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Result of a load run: throughput, error count and latency histogram (recorded in microseconds).
+ */
+public class LoadReport {
+
+	private final String name;
+	private final long operations;
+	private final long errors;
+	private final long elapsedNanos;
+	private final Histogram histogram;
+
+	public LoadReport(String name, long operations, long errors, long elapsedNanos, Histogram histogram) {
+		this.name = name;
+		this.operations = operations;
+		this.errors = errors;
+		this.elapsedNanos = elapsedNanos;
+		this.histogram = histogram;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getOperations() {
+		return operations;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	/**
+	 * @return Completed operations per second, errors included
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+	}
+
+	public double getP50Millis() {
+		return percentileMillis(50);
+	}
+
+	public double getP99Millis() {
+		return percentileMillis(99);
+	}
+
+	public double getP999Millis() {
+		return percentileMillis(99.9);
+	}
+
+	public double percentileMillis(double percentile) {
+		return histogram.getValueAtPercentile(percentile) / 1000.0;
+	}
+
+	public Histogram getHistogram() {
+		return histogram;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d ops (%d errors) in %d ms, %.1f ops/s, p50=%.2f ms, p99=%.2f ms, p999=%.2f ms",
+				name, operations, errors, getElapsedMillis(), getThroughput(), getP50Millis(), getP99Millis(),
+				getP999Millis());
+	}
+}
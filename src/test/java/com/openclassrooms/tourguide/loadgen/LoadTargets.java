@@ -0,0 +1,57 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Ready-made {@link LoadOperation}s for the tracker, the rewards and the REST endpoints.
+ * Users are picked round-robin by operation sequence.
+ */
+public final class LoadTargets {
+
+	private LoadTargets() {
+	}
+
+	public static LoadOperation trackUserLocation(TourGuideService tourGuideService, List<User> users) {
+		return sequence -> tourGuideService.trackUserLocation(pick(users, sequence));
+	}
+
+	public static LoadOperation calculateRewards(RewardsService rewardsService, List<User> users) {
+		return sequence -> rewardsService.calculateRewards(pick(users, sequence));
+	}
+
+	public static LoadOperation getNearByAttractions(TourGuideService tourGuideService, List<User> users) {
+		return sequence -> {
+			User user = pick(users, sequence);
+			tourGuideService.getNearByAttractions(user, tourGuideService.getUserLocation(user));
+		};
+	}
+
+	/**
+	 * Calls a REST endpoint taking a userName parameter, e.g. "/getNearbyAttractions".
+	 * Any non 2xx or 304 status counts as an error.
+	 * @param baseUrl Base URL of a running TourGuide instance, e.g. "http://localhost:8080"
+	 */
+	public static LoadOperation rest(HttpClient client, String baseUrl, String path, List<User> users) {
+		return sequence -> {
+			URI uri = URI.create(baseUrl + path + "?userName=" + pick(users, sequence).getUserName());
+			HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+					HttpResponse.BodyHandlers.discarding());
+			int status = response.statusCode();
+			if ((status < 200 || status >= 300) && status != 304) {
+				throw new IllegalStateException("Unexpected status " + status + " for " + uri);
+			}
+		};
+	}
+
+	private static User pick(List<User> users, long sequence) {
+		return users.get((int) (sequence % users.size()));
+	}
+}
@@ -0,0 +1,117 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.openclassrooms.tourguide.spatial.GeoMath;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Generates the next location of a simulated user. Used by {@link FakeGpsUtil}.
+ */
+@FunctionalInterface
+public interface MovementModel {
+
+	double MILES_PER_DEGREE = GeoMath.MILES_PER_DEGREE_OF_LATITUDE;
+	double MAX_LATITUDE = 85.05112878;
+
+	/**
+	 * @param userId User being moved
+	 * @param previous Last location returned for this user, or null on the first call
+	 * @param step Number of locations already generated for this user
+	 * @return The next location of the user
+	 */
+	Location next(UUID userId, Location previous, long step);
+
+	/**
+	 * Uniformly random coordinates, like the internal test users.
+	 */
+	static MovementModel uniform() {
+		return (userId, previous, step) -> {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			return new Location(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE), random.nextDouble(-180, 180));
+		};
+	}
+
+	/**
+	 * Tourists clustered around attractions: each location is drawn around an attraction with a gaussian spread.
+	 * Users stay around the same attraction with the given probability, otherwise they move to another one.
+	 * @param spreadMiles Standard deviation of the distance to the attraction
+	 * @param stickiness Probability to stay near the previous attraction
+	 */
+	static MovementModel clustered(List<Attraction> attractions, double spreadMiles, double stickiness) {
+		return (userId, previous, step) -> {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			Location center = previous != null && random.nextDouble() < stickiness
+					? nearest(attractions, previous)
+					: attractions.get(random.nextInt(attractions.size()));
+			double spreadDegrees = spreadMiles / MILES_PER_DEGREE;
+			return clamp(center.latitude + random.nextGaussian() * spreadDegrees,
+					center.longitude + random.nextGaussian() * spreadDegrees);
+		};
+	}
+
+	/**
+	 * Random walk: each location is a gaussian step away from the previous one.
+	 * @param stepMiles Standard deviation of a step
+	 */
+	static MovementModel randomWalk(double stepMiles) {
+		MovementModel start = uniform();
+		return (userId, previous, step) -> {
+			if (previous == null) {
+				return start.next(userId, null, step);
+			}
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			double stepDegrees = stepMiles / MILES_PER_DEGREE;
+			return clamp(previous.latitude + random.nextGaussian() * stepDegrees,
+					previous.longitude + random.nextGaussian() * stepDegrees);
+		};
+	}
+
+	/**
+	 * Commuters: every user alternates between a home and a work place derived from its id,
+	 * switching every periodSteps locations, with a small jitter around each place.
+	 * @param commuteMiles Maximum distance between home and work
+	 * @param periodSteps Number of consecutive locations spent at each place
+	 */
+	static MovementModel commuter(double commuteMiles, int periodSteps) {
+		return (userId, previous, step) -> {
+			SplittableRandom places = new SplittableRandom(userId.getMostSignificantBits() ^ userId.getLeastSignificantBits());
+			double homeLatitude = places.nextDouble(-60, 60);
+			double homeLongitude = places.nextDouble(-180, 180);
+			double commuteDegrees = commuteMiles / MILES_PER_DEGREE;
+			double workLatitude = homeLatitude + places.nextDouble(-commuteDegrees, commuteDegrees);
+			double workLongitude = homeLongitude + places.nextDouble(-commuteDegrees, commuteDegrees);
+
+			boolean atWork = (step / periodSteps) % 2 == 1;
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			double jitter = 0.1 / MILES_PER_DEGREE;
+			return clamp((atWork ? workLatitude : homeLatitude) + random.nextGaussian() * jitter,
+					(atWork ? workLongitude : homeLongitude) + random.nextGaussian() * jitter);
+		};
+	}
+
+	private static Location nearest(List<Attraction> attractions, Location location) {
+		Attraction nearest = attractions.get(0);
+		double best = Double.MAX_VALUE;
+		for (Attraction attraction : attractions) {
+			double dLat = attraction.latitude - location.latitude;
+			double dLon = attraction.longitude - location.longitude;
+			double squared = dLat * dLat + dLon * dLon;
+			if (squared < best) {
+				best = squared;
+				nearest = attraction;
+			}
+		}
+		return nearest;
+	}
+
+	private static Location clamp(double latitude, double longitude) {
+		double clampedLatitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+		double wrappedLongitude = ((longitude + 540) % 360) - 180;
+		return new Location(clampedLatitude, wrappedLongitude);
+	}
+}
@@ -0,0 +1,173 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Reference results of the performance scenarios, stored as JSON by scenario key, e.g. "trackLocation/none/1000",
+ * with the calibration of the machine they were recorded on.
+ * A run regresses when its throughput falls, or its p99 latency grows, beyond the tolerance. The CPU-bound
+ * measurements are first scaled by the calibration of the machine running the gate against the recorded one;
+ * the others wait on stub latencies and are compared as they are. The calibration does not account for the
+ * number of cores, so the file holds one baseline per number of cores, and a machine is only compared with the
+ * baseline of its own number of cores.
+ */
+public class PerformanceBaseline {
+
+	/**
+	 * @param throughput Operations per second
+	 * @param p99Millis 99th percentile of the operation latency
+	 * @param cpuBound True when the operations never wait on a stub latency
+	 */
+	public record Measurement(double throughput, double p99Millis, boolean cpuBound) {
+
+		public static Measurement of(LoadReport report, boolean cpuBound) {
+			return new Measurement(report.getThroughput(), report.getP99Millis(), cpuBound);
+		}
+
+		/**
+		 * @return The lowest throughput and the highest p99 of two measurements of the same scenario
+		 */
+		public static Measurement weakest(Measurement first, Measurement second) {
+			return new Measurement(Math.min(first.throughput(), second.throughput()),
+					Math.max(first.p99Millis(), second.p99Millis()), first.cpuBound());
+		}
+	}
+
+	// A baseline of the JSON file, which maps the numbers of cores to their baseline
+	private record Content(Calibration calibration, Map<String, Measurement> measurements) {
+	}
+
+	private static final TypeReference<Map<Integer, Content>> FILE_TYPE = new TypeReference<>() {
+	};
+
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private final Calibration calibration;
+	private final Map<String, Measurement> measurements;
+
+	/**
+	 * @param calibration Calibration of the machine the measurements were recorded on, null if unknown
+	 */
+	public PerformanceBaseline(Calibration calibration, Map<String, Measurement> measurements) {
+		this.calibration = calibration;
+		this.measurements = new TreeMap<>(measurements);
+	}
+
+	/**
+	 * @return The baseline of the classpath resource recorded with the given number of cores, empty, without
+	 * calibration, if there is none
+	 */
+	public static PerformanceBaseline fromResource(String resource, int cores) {
+		try (InputStream in = PerformanceBaseline.class.getResourceAsStream(resource)) {
+			if (in == null) {
+				return new PerformanceBaseline(null, Map.of());
+			}
+			Content content = MAPPER.readValue(in, FILE_TYPE).get(cores);
+			if (content == null) {
+				return new PerformanceBaseline(null, Map.of());
+			}
+			return new PerformanceBaseline(content.calibration(),
+					content.measurements() == null ? Map.of() : content.measurements());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes this baseline to the file under its number of cores, keeping the baselines of the other numbers.
+	 */
+	public void write(Path file) {
+		try {
+			Map<Integer, Content> baselines = new TreeMap<>();
+			if (Files.exists(file)) {
+				baselines.putAll(MAPPER.readValue(file.toFile(), FILE_TYPE));
+			}
+			baselines.put(calibration.cores(), new Content(calibration, measurements));
+			Files.createDirectories(file.getParent());
+			MAPPER.writeValue(file.toFile(), baselines);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public Measurement get(String key) {
+		return measurements.get(key);
+	}
+
+	public Calibration getCalibration() {
+		return calibration;
+	}
+
+	/**
+	 * @return True when nothing was recorded, e.g. with this number of cores
+	 */
+	public boolean isEmpty() {
+		return calibration == null;
+	}
+
+	/**
+	 * @return This baseline updated with the results measured on a machine of the given calibration, keeping
+	 * the measurements of the scenarios not run
+	 */
+	public PerformanceBaseline with(Calibration current, Map<String, Measurement> results) {
+		Map<String, Measurement> updated = new TreeMap<>(measurements);
+		updated.putAll(results);
+		return new PerformanceBaseline(current, updated);
+	}
+
+	/**
+	 * @param current Calibration of the machine the results were measured on
+	 * @param tolerance Allowed relative throughput regression, e.g. 0.25 for 25%
+	 * @param p99Tolerance Allowed relative p99 growth, wider than the throughput one: the tail of a run
+	 * depends on the thread scheduling far more than its throughput
+	 * @param p99SlackMillis Allowed absolute p99 growth on top of the tolerance, as sub-millisecond
+	 * latencies are too noisy to be compared relatively
+	 * @return A description of each regression of the results against this baseline, none when there is no
+	 * regression. A result without baseline is a regression, so that a scenario is never skipped silently.
+	 */
+	public List<String> regressions(Map<String, Measurement> results, Calibration current, double tolerance,
+			double p99Tolerance, double p99SlackMillis) {
+		List<String> regressions = new ArrayList<>();
+		if (calibration == null) {
+			regressions.add("The baseline has no calibration: record it again with -Dperf.updateBaseline=true");
+			return regressions;
+		}
+		if (calibration.cores() != current.cores()) {
+			throw new IllegalArgumentException("Baseline of " + calibration.cores() + " cores compared with results of "
+					+ current.cores() + " cores");
+		}
+		for (Map.Entry<String, Measurement> result : results.entrySet()) {
+			Measurement baseline = measurements.get(result.getKey());
+			if (baseline == null) {
+				regressions.add(result.getKey() + ": no baseline, record it with -Dperf.updateBaseline=true");
+				continue;
+			}
+			// What the baseline would have measured on this machine
+			double speedup = baseline.cpuBound() ? current.speedupOver(calibration) : 1;
+			double expectedThroughput = baseline.throughput() * speedup;
+			double expectedP99Millis = baseline.p99Millis() / speedup;
+			Measurement measured = result.getValue();
+			if (measured.throughput() < expectedThroughput * (1 - tolerance)) {
+				regressions.add(String.format("%s: throughput %.1f ops/s, baseline %.1f ops/s on this machine",
+						result.getKey(), measured.throughput(), expectedThroughput));
+			}
+			if (measured.p99Millis() > expectedP99Millis * (1 + p99Tolerance) + p99SlackMillis) {
+				regressions.add(String.format("%s: p99 %.2f ms, baseline %.2f ms on this machine", result.getKey(),
+						measured.p99Millis(), expectedP99Millis));
+			}
+		}
+		return regressions;
+	}
+}
@@ -0,0 +1,68 @@
+package com.openclassrooms.tourguide.loadgen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time per user of each scenario against the population size. A scenario that scales linearly keeps the same
+ * time per user: the last column shows how it grew from the smallest population.
+ */
+public class ScalingReport {
+
+	private record Row(String scenario, int users, LoadReport report, PerformanceBaseline.Measurement baseline) {
+
+		double microsPerUser() {
+			return report.getElapsedMillis() * 1000.0 / users;
+		}
+	}
+
+	private final List<Row> rows = new ArrayList<>();
+
+	/**
+	 * @param scenario Scenario and latency profile, e.g. "trackLocation/none"
+	 * @param baseline Baseline of the scenario at this population, null if there is none
+	 */
+	public void add(String scenario, int users, LoadReport report, PerformanceBaseline.Measurement baseline) {
+		rows.add(new Row(scenario, users, report, baseline));
+	}
+
+	@Override
+	public String toString() {
+		Map<String, List<Row>> byScenario = new LinkedHashMap<>();
+		for (Row row : rows) {
+			byScenario.computeIfAbsent(row.scenario(), scenario -> new ArrayList<>()).add(row);
+		}
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, List<Row>> scenario : byScenario.entrySet()) {
+			text.append(scenario.getKey()).append('\n');
+			text.append(String.format("%10s %12s %14s %12s %10s %16s %12s %8s%n", "users", "elapsed ms", "us per user",
+					"ops/s", "p99 ms", "baseline ops/s", "baseline p99", "scaling"));
+			double first = scenario.getValue().get(0).microsPerUser();
+			for (Row row : scenario.getValue()) {
+				text.append(String.format("%10d %12d %14.1f %12.1f %10.2f %16s %12s %7.2fx%n", row.users(),
+						row.report().getElapsedMillis(), row.microsPerUser(), row.report().getThroughput(),
+						row.report().getP99Millis(),
+						row.baseline() == null ? "-" : String.format("%.1f", row.baseline().throughput()),
+						row.baseline() == null ? "-" : String.format("%.2f", row.baseline().p99Millis()),
+						first == 0 ? 1 : row.microsPerUser() / first));
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	public void write(Path file) {
+		try {
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, toString());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}